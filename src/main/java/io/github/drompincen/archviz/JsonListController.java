@@ -1,35 +1,47 @@
 package io.github.drompincen.archviz;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import io.github.drompincen.archviz.model.DiagramManifest;
+import io.github.drompincen.archviz.model.DiagramManifestEntry;
+import io.github.drompincen.archviz.service.StaticFileService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
 
 @RestController
 public class JsonListController {
 
-    @GetMapping(value = "/json/", produces = "text/html")
-    public String listJsonFiles() throws IOException {
-        var resolver = new PathMatchingResourcePatternResolver();
-        Resource[] resources = resolver.getResources("classpath:/static/json/*.json");
-        List<String> files = new ArrayList<>();
-        for (Resource r : resources) {
-            String filename = r.getFilename();
-            if (filename != null) {
-                files.add(filename);
-            }
-        }
+    // Clients may reuse the manifest briefly, then revalidate with If-None-Match (304 when unchanged)
+    private static final CacheControl MANIFEST_CACHE = CacheControl.maxAge(Duration.ofSeconds(60)).mustRevalidate();
+
+    private final StaticFileService staticFileService;
+
+    public JsonListController(StaticFileService staticFileService) {
+        this.staticFileService = staticFileService;
+    }
 
+    @GetMapping(value = "/json/", produces = "text/html")
+    public String listJsonFiles() {
         // Return an HTML page with links — the JS parses href filenames from this
         var sb = new StringBuilder("<html><body>");
-        for (String f : files) {
-            sb.append("<a href=\"").append(f).append("\">").append(f).append("</a><br>");
+        for (DiagramManifestEntry f : staticFileService.getManifest().files()) {
+            if (f.bundled()) {
+                sb.append("<a href=\"").append(f.file()).append("\">").append(f.file()).append("</a><br>");
+            }
         }
         sb.append("</body></html>");
         return sb.toString();
     }
+
+    @GetMapping(value = "/json/manifest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DiagramManifest> manifest() {
+        DiagramManifest manifest = staticFileService.getManifest();
+        return ResponseEntity.ok()
+                .eTag(manifest.etag())
+                .cacheControl(MANIFEST_CACHE)
+                .body(manifest);
+    }
 }
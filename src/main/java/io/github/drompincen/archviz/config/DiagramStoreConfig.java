@@ -2,16 +2,26 @@ package io.github.drompincen.archviz.config;
 
 import io.github.drompincen.archviz.repository.DiagramRepository;
 import io.github.drompincen.archviz.repository.DynamoDiagramRepository;
+import io.github.drompincen.archviz.repository.DynamoMetricsInterceptor;
 import io.github.drompincen.archviz.repository.InMemoryDiagramRepository;
+import io.github.drompincen.archviz.repository.MeteredDiagramRepository;
+import io.github.drompincen.archviz.repository.WriteBehindDiagramRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 
 import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class DiagramStoreConfig {
@@ -26,9 +36,34 @@ public class DiagramStoreConfig {
     @ConditionalOnProperty(name = "diagram.store", havingValue = "dynamodb")
     public DynamoDbClient dynamoDbClient(
             @Value("${aws.region:us-east-1}") String region,
-            @Value("${aws.dynamodb.endpoint:}") String endpoint) {
+            @Value("${aws.dynamodb.endpoint:}") String endpoint,
+            @Value("${aws.dynamodb.metrics:true}") boolean metrics,
+            MeterRegistry meterRegistry) {
         DynamoDbClientBuilder builder = DynamoDbClient.builder()
                 .region(Region.of(region));
+        if (metrics) {
+            builder.overrideConfiguration(c -> c.addExecutionInterceptor(new DynamoMetricsInterceptor(meterRegistry)));
+        }
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${diagram.store:inMemory}' == 'dynamodb' and ${aws.dynamodb.async:false}")
+    public DynamoDbAsyncClient dynamoDbAsyncClient(
+            @Value("${aws.region:us-east-1}") String region,
+            @Value("${aws.dynamodb.endpoint:}") String endpoint,
+            @Value("${aws.dynamodb.max-connections:200}") int maxConnections,
+            @Value("${aws.dynamodb.metrics:true}") boolean metrics,
+            MeterRegistry meterRegistry) {
+        DynamoDbAsyncClientBuilder builder = DynamoDbAsyncClient.builder()
+                .region(Region.of(region))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConnections));
+        if (metrics) {
+            builder.overrideConfiguration(c -> c.addExecutionInterceptor(new DynamoMetricsInterceptor(meterRegistry)));
+        }
         if (endpoint != null && !endpoint.isBlank()) {
             builder.endpointOverride(URI.create(endpoint));
         }
@@ -39,7 +74,20 @@ public class DiagramStoreConfig {
     @ConditionalOnProperty(name = "diagram.store", havingValue = "dynamodb")
     public DiagramRepository dynamoDiagramRepository(
             DynamoDbClient dynamoDbClient,
-            @Value("${aws.dynamodb.table-name:archviz-diagrams}") String tableName) {
-        return new DynamoDiagramRepository(dynamoDbClient, tableName);
+            ObjectProvider<DynamoDbAsyncClient> dynamoDbAsyncClient,
+            @Value("${aws.dynamodb.table-name:archviz-diagrams}") String tableName,
+            @Value("${aws.dynamodb.scan-segments:4}") int scanSegments,
+            @Value("${diagram.write-behind.enabled:false}") boolean writeBehind,
+            @Value("${diagram.write-behind.window-ms:500}") long writeBehindWindowMs,
+            @Value("${diagram.write-behind.max-pending:1000}") int writeBehindMaxPending,
+            @Value("${aws.dynamodb.metrics:true}") boolean metrics,
+            MeterRegistry meterRegistry) {
+        DiagramRepository repository = new DynamoDiagramRepository(dynamoDbClient,
+                dynamoDbAsyncClient.getIfAvailable(), tableName, scanSegments);
+        if (writeBehind) {
+            repository = new WriteBehindDiagramRepository(repository, Duration.ofMillis(writeBehindWindowMs),
+                    writeBehindMaxPending, meterRegistry);
+        }
+        return metrics ? new MeteredDiagramRepository(repository, meterRegistry) : repository;
     }
 }
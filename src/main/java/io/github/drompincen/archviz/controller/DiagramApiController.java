@@ -1,10 +1,24 @@
 package io.github.drompincen.archviz.controller;
 
+import io.github.drompincen.archviz.dto.DiagramBatchOperation;
+import io.github.drompincen.archviz.dto.DiagramBatchRequest;
+import io.github.drompincen.archviz.dto.DiagramBatchResult;
 import io.github.drompincen.archviz.dto.DiagramCreateRequest;
 import io.github.drompincen.archviz.dto.DiagramUpdateRequest;
+import io.github.drompincen.archviz.filter.FilterParseException;
+import io.github.drompincen.archviz.index.CompletionIndex;
+import io.github.drompincen.archviz.model.Completion;
+import io.github.drompincen.archviz.model.ComponentUsage;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramFacets;
 import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.GraphMatch;
+import io.github.drompincen.archviz.model.Page;
+import io.github.drompincen.archviz.model.SearchHit;
+import io.github.drompincen.archviz.model.SimilarDiagram;
+import io.github.drompincen.archviz.repository.VersionConflictException;
 import io.github.drompincen.archviz.service.DiagramService;
+import io.github.drompincen.archviz.service.InvalidCursorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -12,7 +26,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/diagrams")
@@ -26,17 +42,81 @@ public class DiagramApiController {
         this.diagramService = diagramService;
     }
 
+    /**
+     * Every matching diagram as an array, or, when {@code limit} or
+     * {@code cursor} is given, one {@link Page} of at most {@code limit}
+     * (default 100, max 1000) whose {@code next} continues the listing.
+     */
     @GetMapping
-    public List<DiagramSummary> listDiagrams(
+    public CompletableFuture<?> listDiagrams(
             @RequestParam(name = "tag", required = false) String tag,
-            @RequestParam(name = "query", required = false) String query) {
-        return diagramService.listAll(Optional.ofNullable(tag), Optional.ofNullable(query));
+            @RequestParam(name = "query", required = false) String query,
+            @RequestParam(name = "filter", required = false) String filter,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            return CompletableFuture.completedFuture(diagramService.listAll(
+                    Optional.ofNullable(tag), Optional.ofNullable(query), Optional.ofNullable(filter)));
+        }
+        return diagramService.listPage(Optional.ofNullable(tag), Optional.ofNullable(query), Optional.ofNullable(filter),
+                Optional.ofNullable(cursor), Math.min(Math.max(limit != null ? limit : 100, 1), 1000));
+    }
+
+    @GetMapping(params = "facets=true")
+    public DiagramFacets listFacets(
+            @RequestParam(name = "tag", required = false) String tag,
+            @RequestParam(name = "query", required = false) String query,
+            @RequestParam(name = "filter", required = false) String filter) {
+        return diagramService.facets(Optional.ofNullable(tag), Optional.ofNullable(query), Optional.ofNullable(filter));
+    }
+
+    @GetMapping("/search")
+    public List<SearchHit> searchDiagrams(
+            @RequestParam(name = "q") String q,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return diagramService.search(q, Math.min(Math.max(limit, 1), 200));
+    }
+
+    @GetMapping("/autocomplete")
+    public List<Completion> autocomplete(
+            @RequestParam(name = "prefix", defaultValue = "") String prefix,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return diagramService.autocomplete(prefix, Math.min(Math.max(limit, 1), CompletionIndex.MAX_LIMIT));
+    }
+
+    @GetMapping("/graph")
+    public List<GraphMatch> graphQuery(
+            @RequestParam(name = "pattern") String pattern,
+            @RequestParam(name = "phase", required = false) String phase,
+            @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return diagramService.graphQuery(pattern, Optional.ofNullable(phase), Math.min(Math.max(limit, 1), 500));
+    }
+
+    @GetMapping("/components")
+    public List<ComponentUsage> componentUsage(@RequestParam(name = "name") String name) {
+        return diagramService.componentUsage(name);
+    }
+
+    @PostMapping("/similar")
+    public List<SimilarDiagram> similarToUpload(
+            @RequestBody DiagramCreateRequest request,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return diagramService.similarTo(request, Math.min(Math.max(limit, 1), 100));
+    }
+
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<SimilarDiagram>> similarTo(
+            @PathVariable("id") String id,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        return diagramService.similarTo(id, Math.min(Math.max(limit, 1), 100))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Diagram> getDiagram(@PathVariable("id") String id) {
+    public CompletableFuture<ResponseEntity<Diagram>> getDiagram(@PathVariable("id") String id) {
         log.info("DOWNLOAD | id={}", id);
-        return diagramService.getById(id)
+        return diagramService.getById(id).thenApply(found -> found
                 .map(d -> {
                     log.info("DOWNLOAD | source={} | title={}", d.getSource(), d.getTitle());
                     return ResponseEntity.ok(d);
@@ -44,21 +124,40 @@ public class DiagramApiController {
                 .orElseGet(() -> {
                     log.warn("DOWNLOAD | id={} | NOT FOUND", id);
                     return ResponseEntity.notFound().build();
-                });
+                }));
     }
 
     @PostMapping
-    public ResponseEntity<Diagram> createDiagram(@RequestBody DiagramCreateRequest request) {
-        Diagram created = diagramService.create(request);
-        log.info("SAVE | action=create | id={} | title={} | tags={}", created.getId(), created.getTitle(), created.getTags());
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+    public CompletableFuture<ResponseEntity<Diagram>> createDiagram(@RequestBody DiagramCreateRequest request) {
+        return diagramService.create(request).thenApply(created -> {
+            log.info("SAVE | action=create | id={} | title={} | tags={}", created.getId(), created.getTitle(), created.getTags());
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        });
+    }
+
+    /**
+     * Up to {@value DiagramService#MAX_BATCH} gets, creates and updates in
+     * one request, answered with one result per entry, each carrying the
+     * status its own call would have had.
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<DiagramBatchResult>>> batch(@RequestBody DiagramBatchRequest request) {
+        List<DiagramBatchOperation> operations = request.operations() != null ? request.operations() : List.of();
+        if (operations.size() > DiagramService.MAX_BATCH) {
+            log.warn("BATCH | operations={} | TOO MANY", operations.size());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return diagramService.batch(operations).thenApply(results -> {
+            log.info("BATCH | operations={}", results.size());
+            return ResponseEntity.ok(results);
+        });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Diagram> updateDiagram(
+    public CompletableFuture<ResponseEntity<Diagram>> updateDiagram(
             @PathVariable("id") String id,
             @RequestBody DiagramUpdateRequest request) {
-        return diagramService.update(id, request)
+        return diagramService.update(id, request).thenApply(updated -> updated
                 .map(d -> {
                     log.info("SAVE | action=update | id={} | title={} | version={} | tags={}", d.getId(), d.getTitle(), d.getVersion(), d.getTags());
                     return ResponseEntity.ok(d);
@@ -66,6 +165,22 @@ public class DiagramApiController {
                 .orElseGet(() -> {
                     log.warn("SAVE | action=update | id={} | NOT FOUND", id);
                     return ResponseEntity.notFound().build();
-                });
+                }));
+    }
+
+    @ExceptionHandler(FilterParseException.class)
+    public ResponseEntity<Map<String, String>> invalidFilter(FilterParseException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> invalidCursor(InvalidCursorException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<Map<String, String>> versionConflict(VersionConflictException e) {
+        log.warn("SAVE | action=update | {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
     }
 }
@@ -0,0 +1,20 @@
+package io.github.drompincen.archviz.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * One entry of a batch: {@code get} and {@code update} name a diagram by
+ * {@code id}; {@code create} and {@code update} carry the fields of
+ * {@link DiagramCreateRequest} and {@link DiagramUpdateRequest}.
+ */
+public record DiagramBatchOperation(
+        String op,
+        String id,
+        String title,
+        String description,
+        List<String> tags,
+        JsonNode flow,
+        Integer expectedVersion
+) {}
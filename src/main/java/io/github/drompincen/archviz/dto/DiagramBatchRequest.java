@@ -0,0 +1,7 @@
+package io.github.drompincen.archviz.dto;
+
+import java.util.List;
+
+public record DiagramBatchRequest(
+        List<DiagramBatchOperation> operations
+) {}
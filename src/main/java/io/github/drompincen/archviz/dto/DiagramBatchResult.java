@@ -0,0 +1,27 @@
+package io.github.drompincen.archviz.dto;
+
+import io.github.drompincen.archviz.model.Diagram;
+
+/**
+ * Outcome of one batch entry, with the HTTP status the single-diagram call
+ * would have answered.
+ *
+ * @param diagram the diagram read or written, or null on error
+ * @param error   why the entry failed, or null
+ */
+public record DiagramBatchResult(
+        String op,
+        String id,
+        int status,
+        Diagram diagram,
+        String error
+) {
+
+    public static DiagramBatchResult ok(String op, int status, Diagram diagram) {
+        return new DiagramBatchResult(op, diagram.getId(), status, diagram, null);
+    }
+
+    public static DiagramBatchResult error(String op, String id, int status, String error) {
+        return new DiagramBatchResult(op, id, status, null, error);
+    }
+}
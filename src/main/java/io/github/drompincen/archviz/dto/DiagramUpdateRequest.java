@@ -4,9 +4,19 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.List;
 
+/**
+ * @param expectedVersion if set, the update is refused unless the stored
+ *                        diagram is still at this version
+ */
 public record DiagramUpdateRequest(
         String title,
         String description,
         List<String> tags,
-        JsonNode flow
-) {}
+        JsonNode flow,
+        Integer expectedVersion
+) {
+
+    public DiagramUpdateRequest(String title, String description, List<String> tags, JsonNode flow) {
+        this(title, description, tags, flow, null);
+    }
+}
@@ -0,0 +1,390 @@
+package io.github.drompincen.archviz.filter;
+
+import io.github.drompincen.archviz.filter.FilterExpression.And;
+import io.github.drompincen.archviz.filter.FilterExpression.Comparison;
+import io.github.drompincen.archviz.filter.FilterExpression.Not;
+import io.github.drompincen.archviz.filter.FilterExpression.Or;
+import io.github.drompincen.archviz.model.DiagramStats;
+import io.github.drompincen.archviz.model.DiagramSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Listing filter such as
+ * {@code nodes.type == lambda AND phases >= 3 AND tag in (aws, core)}.
+ *
+ * <p>Comparisons are {@code field op value}, with {@code == != < <= > >=},
+ * {@code ~} (case-insensitive substring, text fields only) and
+ * {@code in (a, b, ...)}; they combine with {@code AND}, {@code OR},
+ * {@code NOT} and parentheses. Values are bare words or quoted strings. The
+ * expression is parsed and compiled to a predicate once; the predicate only
+ * reads the summary and its precomputed {@link DiagramStats}, so a diagram
+ * without stats never matches a stats comparison.
+ */
+public final class DiagramFilter {
+
+    private final String text;
+    private final FilterExpression expression;
+    private final Predicate<DiagramSummary> predicate;
+
+    private DiagramFilter(String text, FilterExpression expression) {
+        this.text = text;
+        this.expression = expression;
+        this.predicate = compile(expression);
+    }
+
+    /**
+     * @throws FilterParseException if the text is not a valid filter
+     */
+    public static DiagramFilter parse(String text) {
+        return new DiagramFilter(text, new Parser(text).parse());
+    }
+
+    public boolean test(DiagramSummary summary) {
+        return predicate.test(summary);
+    }
+
+    public FilterExpression expression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static Predicate<DiagramSummary> compile(FilterExpression e) {
+        if (e instanceof And and) {
+            List<Predicate<DiagramSummary>> terms = compileAll(and.terms());
+            return s -> {
+                for (Predicate<DiagramSummary> p : terms) {
+                    if (!p.test(s)) return false;
+                }
+                return true;
+            };
+        }
+        if (e instanceof Or or) {
+            List<Predicate<DiagramSummary>> terms = compileAll(or.terms());
+            return s -> {
+                for (Predicate<DiagramSummary> p : terms) {
+                    if (p.test(s)) return true;
+                }
+                return false;
+            };
+        }
+        if (e instanceof Not not) {
+            return compile(not.term()).negate();
+        }
+        return compileComparison((Comparison) e);
+    }
+
+    private static List<Predicate<DiagramSummary>> compileAll(List<FilterExpression> terms) {
+        return terms.stream().map(DiagramFilter::compile).collect(Collectors.toList());
+    }
+
+    private static Predicate<DiagramSummary> compileComparison(Comparison c) {
+        List<String> values = c.values();
+        String value = values.get(0);
+        return switch (c.field()) {
+            case TAG -> set(s -> s.tags(), c.op(), values);
+            case NODE_TYPE -> set(s -> s.stats() != null ? s.stats().nodesByType().keySet() : null, c.op(), values);
+            case ZONE_TYPE -> set(s -> s.stats() != null ? s.stats().zoneTypes() : null, c.op(), values);
+            case TITLE -> text(DiagramSummary::title, c.op(), values);
+            case SOURCE -> text(DiagramSummary::source, c.op(), values);
+            case VERSION -> {
+                IntPredicate test = number(c.op(), values);
+                yield s -> test.test(s.version());
+            }
+            case NODES -> stat(DiagramStats::nodes, c.op(), values);
+            case CONNECTIONS -> stat(DiagramStats::connections, c.op(), values);
+            case PHASES -> stat(DiagramStats::phases, c.op(), values);
+            case FLOWS -> stat(DiagramStats::flows, c.op(), values);
+            case STORY -> {
+                boolean expected = Boolean.parseBoolean(value) == (c.op() == FilterOp.EQ);
+                yield s -> s.stats() != null && s.stats().story() == expected;
+            }
+        };
+    }
+
+    private static Predicate<DiagramSummary> set(Function<DiagramSummary, Collection<String>> getter,
+                                                 FilterOp op, List<String> values) {
+        String value = values.get(0);
+        return switch (op) {
+            case EQ -> s -> {
+                Collection<String> actual = getter.apply(s);
+                return actual != null && actual.contains(value);
+            };
+            case NE -> s -> {
+                Collection<String> actual = getter.apply(s);
+                return actual == null || !actual.contains(value);
+            };
+            default -> {
+                Set<String> wanted = Set.copyOf(values);
+                yield s -> {
+                    Collection<String> actual = getter.apply(s);
+                    return actual != null && actual.stream().anyMatch(wanted::contains);
+                };
+            }
+        };
+    }
+
+    private static Predicate<DiagramSummary> text(Function<DiagramSummary, String> getter,
+                                                  FilterOp op, List<String> values) {
+        String value = values.get(0);
+        return switch (op) {
+            case EQ -> s -> value.equals(getter.apply(s));
+            case NE -> s -> !value.equals(getter.apply(s));
+            case CONTAINS -> {
+                String lower = value.toLowerCase(Locale.ROOT);
+                yield s -> {
+                    String actual = getter.apply(s);
+                    return actual != null && actual.toLowerCase(Locale.ROOT).contains(lower);
+                };
+            }
+            default -> {
+                Set<String> wanted = Set.copyOf(values);
+                yield s -> {
+                    String actual = getter.apply(s);
+                    return actual != null && wanted.contains(actual);
+                };
+            }
+        };
+    }
+
+    private static Predicate<DiagramSummary> stat(ToIntFunction<DiagramStats> getter,
+                                                  FilterOp op, List<String> values) {
+        IntPredicate test = number(op, values);
+        return s -> s.stats() != null && test.test(getter.applyAsInt(s.stats()));
+    }
+
+    private static IntPredicate number(FilterOp op, List<String> values) {
+        int v = Integer.parseInt(values.get(0));
+        return switch (op) {
+            case EQ -> n -> n == v;
+            case NE -> n -> n != v;
+            case LT -> n -> n < v;
+            case LE -> n -> n <= v;
+            case GT -> n -> n > v;
+            case GE -> n -> n >= v;
+            default -> {
+                Set<Integer> wanted = values.stream().map(Integer::valueOf).collect(Collectors.toUnmodifiableSet());
+                yield wanted::contains;
+            }
+        };
+    }
+
+    /**
+     * Recursive-descent parser; {@code OR} binds loosest, then {@code AND},
+     * then {@code NOT}. Parentheses and {@code NOT} nest at most
+     * {@value #MAX_DEPTH} deep, which keeps parsing and evaluation well
+     * clear of the stack limit.
+     */
+    private static final class Parser {
+
+        static final int MAX_DEPTH = 32;
+
+        private enum Type { WORD, STRING, OP, LPAREN, RPAREN, COMMA, END }
+
+        private record Token(Type type, String text, int pos) {}
+
+        private final List<Token> tokens;
+        private int next;
+        private int depth;
+
+        Parser(String text) {
+            this.tokens = tokenize(text == null ? "" : text);
+        }
+
+        FilterExpression parse() {
+            FilterExpression e = or();
+            if (peek().type() != Type.END) {
+                throw error("Unexpected '" + peek().text() + "'", peek());
+            }
+            return e;
+        }
+
+        private FilterExpression or() {
+            List<FilterExpression> terms = new ArrayList<>(List.of(and()));
+            while (keyword("OR")) {
+                terms.add(and());
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(List.copyOf(terms));
+        }
+
+        private FilterExpression and() {
+            List<FilterExpression> terms = new ArrayList<>(List.of(unary()));
+            while (keyword("AND")) {
+                terms.add(unary());
+            }
+            return terms.size() == 1 ? terms.get(0) : new And(List.copyOf(terms));
+        }
+
+        private FilterExpression unary() {
+            Token start = peek();
+            if (keyword("NOT")) {
+                nest(start);
+                FilterExpression e = new Not(unary());
+                depth--;
+                return e;
+            }
+            if (start.type() == Type.LPAREN) {
+                next++;
+                nest(start);
+                FilterExpression e = or();
+                expect(Type.RPAREN, "')'");
+                depth--;
+                return e;
+            }
+            return comparison();
+        }
+
+        private void nest(Token at) {
+            if (++depth > MAX_DEPTH) {
+                throw error("Filter nests deeper than " + MAX_DEPTH + " levels", at);
+            }
+        }
+
+        private FilterExpression comparison() {
+            Token name = expect(Type.WORD, "field name");
+            FilterField field = FilterField.byName(name.text())
+                    .orElseThrow(() -> error("Unknown field '" + name.text() + "'", name));
+            Token opToken = peek();
+            FilterOp op;
+            List<String> values = new ArrayList<>();
+            if (keyword("IN")) {
+                op = FilterOp.IN;
+                expect(Type.LPAREN, "'('");
+                values.add(value());
+                while (peek().type() == Type.COMMA) {
+                    next++;
+                    values.add(value());
+                }
+                expect(Type.RPAREN, "')'");
+            } else {
+                expect(Type.OP, "operator");
+                op = switch (opToken.text()) {
+                    case "==", "=" -> FilterOp.EQ;
+                    case "!=" -> FilterOp.NE;
+                    case "<" -> FilterOp.LT;
+                    case "<=" -> FilterOp.LE;
+                    case ">" -> FilterOp.GT;
+                    case ">=" -> FilterOp.GE;
+                    default -> FilterOp.CONTAINS;
+                };
+                values.add(value());
+            }
+            if (!field.kind().ops.contains(op)) {
+                throw error("Operator '" + op + "' does not apply to " + field, opToken);
+            }
+            for (String v : values) {
+                validate(field, v, opToken);
+            }
+            return new Comparison(field, op, List.copyOf(values));
+        }
+
+        private void validate(FilterField field, String value, Token at) {
+            if (field.kind() == FilterField.Kind.NUMBER) {
+                try {
+                    Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw error(field + " expects a number, got '" + value + "'", at);
+                }
+            } else if (field.kind() == FilterField.Kind.BOOLEAN
+                    && !value.equals("true") && !value.equals("false")) {
+                throw error(field + " expects true or false, got '" + value + "'", at);
+            }
+        }
+
+        private String value() {
+            Token t = peek();
+            if (t.type() != Type.WORD && t.type() != Type.STRING) {
+                throw error("Expected a value", t);
+            }
+            next++;
+            return t.text();
+        }
+
+        private boolean keyword(String word) {
+            Token t = peek();
+            if (t.type() == Type.WORD && t.text().equalsIgnoreCase(word)) {
+                next++;
+                return true;
+            }
+            return false;
+        }
+
+        private Token expect(Type type, String what) {
+            Token t = peek();
+            if (t.type() != type) {
+                throw error("Expected " + what, t);
+            }
+            next++;
+            return t;
+        }
+
+        private Token peek() {
+            return tokens.get(next);
+        }
+
+        private static FilterParseException error(String message, Token at) {
+            return new FilterParseException(message, at.pos());
+        }
+
+        private static List<Token> tokenize(String s) {
+            List<Token> out = new ArrayList<>();
+            int i = 0;
+            while (i < s.length()) {
+                char c = s.charAt(i);
+                int start = i;
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(') {
+                    out.add(new Token(Type.LPAREN, "(", i++));
+                } else if (c == ')') {
+                    out.add(new Token(Type.RPAREN, ")", i++));
+                } else if (c == ',') {
+                    out.add(new Token(Type.COMMA, ",", i++));
+                } else if (c == '\'' || c == '"') {
+                    int end = s.indexOf(c, i + 1);
+                    if (end < 0) {
+                        throw new FilterParseException("Unterminated string", start);
+                    }
+                    out.add(new Token(Type.STRING, s.substring(i + 1, end), start));
+                    i = end + 1;
+                } else if ("=!<>~".indexOf(c) >= 0) {
+                    i++;
+                    if (i < s.length() && s.charAt(i) == '=' && c != '~') {
+                        i++;
+                    }
+                    String op = s.substring(start, i);
+                    if (op.equals("!")) {
+                        throw new FilterParseException("Expected '!='", start);
+                    }
+                    out.add(new Token(Type.OP, op, start));
+                } else if (isWordChar(c)) {
+                    while (i < s.length() && isWordChar(s.charAt(i))) {
+                        i++;
+                    }
+                    out.add(new Token(Type.WORD, s.substring(start, i), start));
+                } else {
+                    throw new FilterParseException("Unexpected character '" + c + "'", start);
+                }
+            }
+            out.add(new Token(Type.END, "end of filter", s.length()));
+            return out;
+        }
+
+        private static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-' || c == ':' || c == '/';
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.drompincen.archviz.filter;
+
+import java.util.List;
+
+/**
+ * Parsed filter, as produced by {@link DiagramFilter#parse}. Stores translate
+ * the parts they can evaluate natively; the compiled predicate always checks
+ * the whole expression.
+ */
+public sealed interface FilterExpression {
+
+    record And(List<FilterExpression> terms) implements FilterExpression {}
+
+    record Or(List<FilterExpression> terms) implements FilterExpression {}
+
+    record Not(FilterExpression term) implements FilterExpression {}
+
+    /**
+     * {@code values} holds one value, or the list for {@link FilterOp#IN}.
+     * Numeric and boolean values are validated when parsed.
+     */
+    record Comparison(FilterField field, FilterOp op, List<String> values) implements FilterExpression {}
+}
@@ -0,0 +1,64 @@
+package io.github.drompincen.archviz.filter;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Attributes a filter can test. All of them are read from a
+ * {@code DiagramSummary} and its precomputed {@code DiagramStats}.
+ */
+public enum FilterField {
+
+    TAG(Kind.SET, "tag", "tags"),
+    TITLE(Kind.TEXT, "title"),
+    SOURCE(Kind.TEXT, "source"),
+    VERSION(Kind.NUMBER, "version"),
+    NODES(Kind.NUMBER, "nodes"),
+    NODE_TYPE(Kind.SET, "nodes.type"),
+    CONNECTIONS(Kind.NUMBER, "connections"),
+    PHASES(Kind.NUMBER, "phases"),
+    FLOWS(Kind.NUMBER, "flows"),
+    ZONE_TYPE(Kind.SET, "zones.type"),
+    STORY(Kind.BOOLEAN, "story");
+
+    enum Kind {
+        SET(EnumSet.of(FilterOp.EQ, FilterOp.NE, FilterOp.IN)),
+        TEXT(EnumSet.of(FilterOp.EQ, FilterOp.NE, FilterOp.IN, FilterOp.CONTAINS)),
+        NUMBER(EnumSet.of(FilterOp.EQ, FilterOp.NE, FilterOp.IN,
+                FilterOp.LT, FilterOp.LE, FilterOp.GT, FilterOp.GE)),
+        BOOLEAN(EnumSet.of(FilterOp.EQ, FilterOp.NE));
+
+        final Set<FilterOp> ops;
+
+        Kind(Set<FilterOp> ops) {
+            this.ops = ops;
+        }
+    }
+
+    private final Kind kind;
+    private final String[] names;
+
+    FilterField(Kind kind, String... names) {
+        this.kind = kind;
+        this.names = names;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    static Optional<FilterField> byName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return Arrays.stream(values())
+                .filter(f -> Arrays.asList(f.names).contains(lower))
+                .findFirst();
+    }
+
+    @Override
+    public String toString() {
+        return names[0];
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.drompincen.archviz.filter;
+
+public enum FilterOp {
+    EQ("=="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="), IN("in"), CONTAINS("~");
+
+    private final String symbol;
+
+    FilterOp(String symbol) {
+        this.symbol = symbol;
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
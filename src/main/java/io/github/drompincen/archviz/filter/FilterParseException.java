@@ -0,0 +1,8 @@
+package io.github.drompincen.archviz.filter;
+
+public class FilterParseException extends RuntimeException {
+
+    public FilterParseException(String message, int position) {
+        super(message + " at position " + position);
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.drompincen.archviz.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Path pattern over diagram connections, e.g. {@code gateway -> database} or
+ * {@code lambda -> tag:aws -- storage}. Each step matches a node by type
+ * ({@code lambda} or {@code type:lambda}), by tag ({@code tag:aws}) or any
+ * node ({@code *}); {@code ->} follows a connection in its direction and
+ * {@code --} in either direction.
+ */
+public record GraphPattern(List<Step> steps, List<Boolean> directed) {
+
+    public static final int MAX_STEPS = 5;
+
+    /**
+     * @param key {@code type:<value>} or {@code tag:<value>}, or {@code null} for {@code *}
+     */
+    public record Step(String key) {
+
+        public boolean matches(String type, String tag) {
+            return key == null
+                    || key.equals("type:" + type)
+                    || key.equals("tag:" + tag);
+        }
+    }
+
+    /**
+     * @throws FilterParseException if the text is not a valid pattern
+     */
+    public static GraphPattern parse(String text) {
+        String s = text == null ? "" : text;
+        List<Step> steps = new ArrayList<>();
+        List<Boolean> directed = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int arrow = s.indexOf("->", start);
+            int line = s.indexOf("--", start);
+            int end = arrow < 0 ? line : line < 0 ? arrow : Math.min(arrow, line);
+            steps.add(step(s.substring(start, end < 0 ? s.length() : end), start));
+            if (end < 0) {
+                break;
+            }
+            directed.add(end == arrow);
+            start = end + 2;
+        }
+        if (steps.size() < 2) {
+            throw new FilterParseException("Pattern needs at least one '->' or '--'", s.length());
+        }
+        if (steps.size() > MAX_STEPS) {
+            throw new FilterParseException("Pattern has more than " + MAX_STEPS + " nodes", s.length());
+        }
+        return new GraphPattern(List.copyOf(steps), List.copyOf(directed));
+    }
+
+    private static Step step(String raw, int position) {
+        String s = raw.strip().toLowerCase(Locale.ROOT);
+        if (s.equals("*")) {
+            return new Step(null);
+        }
+        String key = s.startsWith("type:") || s.startsWith("tag:") ? s : "type:" + s;
+        String value = key.substring(key.indexOf(':') + 1);
+        if (value.isEmpty() || !value.chars().allMatch(c -> Character.isLetterOrDigit(c) || c == '-' || c == '_')) {
+            throw new FilterParseException("Invalid node pattern '" + raw.strip() + "'", position);
+        }
+        return new Step(key);
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Completion;
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefix trie over diagram titles, tags, node labels and node types. Titles
+ * and labels are also reachable from each later word, so "serv" completes
+ * "Order Service". Every node holds its top completions by diagram count.
+ *
+ * <p>Lookups take no lock. Published nodes are never changed: a write copies
+ * the nodes along the paths it touches, recomputes their top completions and
+ * then swaps in the new root, so a lookup sees either all of a write or none
+ * of it. Writes are serialized.
+ */
+@Component
+public class CompletionIndex implements DiagramIndex {
+
+    public static final int MAX_LIMIT = 25;
+
+    // Headroom for duplicates of one term reached through several word starts
+    private static final int CACHED_PER_NODE = MAX_LIMIT * 2;
+    private static final Comparator<Completion> RANKING = Comparator
+            .comparingInt(Completion::count).reversed()
+            .thenComparing(Completion::text, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Completion::kind);
+
+    private volatile Node root = new Node();
+    // Guarded by this
+    private final Map<String, Set<Term>> termsByDiagram = new HashMap<>();
+
+    @Override
+    public synchronized void index(Diagram diagram) {
+        Set<Term> terms = terms(diagram);
+        Set<Term> previous = termsByDiagram.put(diagram.getId(), terms);
+        Edit edit = new Edit(root);
+        if (previous != null) {
+            for (Term t : previous) {
+                if (!terms.contains(t)) edit.adjust(t, -1);
+            }
+        }
+        for (Term t : terms) {
+            if (previous == null || !previous.contains(t)) edit.adjust(t, 1);
+        }
+        root = edit.publish();
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        Set<Term> previous = termsByDiagram.remove(id);
+        if (previous != null) {
+            Edit edit = new Edit(root);
+            previous.forEach(t -> edit.adjust(t, -1));
+            root = edit.publish();
+        }
+    }
+
+    /**
+     * Most common completions of {@code prefix} (case-insensitive), at most
+     * {@link #MAX_LIMIT}.
+     */
+    public List<Completion> complete(String prefix, int limit) {
+        Node node = root;
+        String key = prefix == null ? "" : prefix.strip().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null || limit <= 0) {
+            return List.of();
+        }
+        List<Completion> top = node.top;
+        return top.subList(0, Math.min(Math.min(limit, MAX_LIMIT), top.size()));
+    }
+
+    public synchronized int size() {
+        return termsByDiagram.size();
+    }
+
+    /**
+     * One write: copies of the nodes it touches, which readers cannot reach
+     * until {@link #publish}.
+     */
+    private static final class Edit {
+        private final Set<Node> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Node root;
+
+        Edit(Node published) {
+            root = copy(published);
+        }
+
+        void adjust(Term term, int delta) {
+            String text = term.text().toLowerCase(Locale.ROOT);
+            boolean wordStart = true;
+            for (int i = 0; i < text.length(); i++) {
+                boolean letterOrDigit = Character.isLetterOrDigit(text.charAt(i));
+                if (wordStart && letterOrDigit && (i == 0 || term.splitWords())) {
+                    adjustKey(text.substring(i), term, delta);
+                }
+                wordStart = !letterOrDigit;
+            }
+        }
+
+        private void adjustKey(String key, Term term, int delta) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.children.get(key.charAt(i));
+                child = child == null ? copy(new Node()) : copies.contains(child) ? child : copy(child);
+                node.children.put(key.charAt(i), child);
+                node = child;
+                path.add(node);
+            }
+            node.counts.merge(term, delta, Integer::sum);
+            node.counts.remove(term, 0);
+
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node n = path.get(i);
+                n.top = null;
+                if (i > 0 && n.counts.isEmpty() && n.children.isEmpty()) {
+                    path.get(i - 1).children.remove(key.charAt(i - 1));
+                }
+            }
+        }
+
+        private Node copy(Node node) {
+            Node copy = new Node(node);
+            copies.add(copy);
+            return copy;
+        }
+
+        /** Recomputes the top completions cleared by this write and returns the new root. */
+        Node publish() {
+            root.rank();
+            return root;
+        }
+    }
+
+    private static Set<Term> terms(Diagram diagram) {
+        Set<Term> terms = new LinkedHashSet<>();
+        add(terms, "title", diagram.getTitle());
+        if (diagram.getTags() != null) {
+            diagram.getTags().forEach(tag -> add(terms, "tag", tag));
+        }
+        JsonNode flow = diagram.getFlow();
+        if (flow != null && flow.isObject()) {
+            for (JsonNode node : DiagramText.array(flow.get("nodes"))) {
+                add(terms, "label", DiagramText.text(node.get("label")));
+                add(terms, "type", DiagramText.text(node.get("type")));
+            }
+        }
+        return terms;
+    }
+
+    private static void add(Set<Term> terms, String kind, String text) {
+        if (text != null && !text.isBlank()) {
+            terms.add(new Term(kind, text.strip()));
+        }
+    }
+
+    private record Term(String kind, String text) {
+        boolean splitWords() {
+            return kind.equals("title") || kind.equals("label");
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children;
+        final Map<Term, Integer> counts;
+        // Null only while an Edit has invalidated it
+        List<Completion> top;
+
+        Node() {
+            children = new HashMap<>(4);
+            counts = new HashMap<>(2);
+            top = List.of();
+        }
+
+        Node(Node from) {
+            children = new HashMap<>(from.children);
+            counts = new HashMap<>(from.counts);
+            top = from.top;
+        }
+
+        List<Completion> rank() {
+            if (top == null) {
+                List<Completion> candidates = new ArrayList<>();
+                counts.forEach((t, n) -> candidates.add(new Completion(t.text(), t.kind(), n)));
+                children.values().forEach(child -> candidates.addAll(child.rank()));
+                candidates.sort(RANKING);
+                Set<Completion> distinct = new LinkedHashSet<>();
+                for (Completion c : candidates) {
+                    if (distinct.size() == CACHED_PER_NODE) break;
+                    distinct.add(c);
+                }
+                top = List.copyOf(distinct);
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.ComponentUsage;
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from a normalised node label, type or id ("Aurora\nPostgres"
+ * becomes {@code aurora postgres}) to the diagrams that use it. Each key keeps
+ * its result list prebuilt, so a lookup is one hash probe however many
+ * diagrams are indexed; writes drop the lists of the keys they touch and the
+ * next lookup of such a key rebuilds it.
+ */
+@Component
+public class ComponentIndex implements DiagramIndex {
+
+    private final Map<String, Posting> postings = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> keysByDiagram = new HashMap<>();
+
+    @Override
+    public void index(Diagram diagram) {
+        Map<String, ComponentUsage> usages = usages(diagram);
+        synchronized (this) {
+            Set<String> previous = keysByDiagram.put(diagram.getId(), Set.copyOf(usages.keySet()));
+            if (previous != null) {
+                for (String key : previous) {
+                    if (!usages.containsKey(key)) unpost(key, diagram.getId());
+                }
+            }
+            usages.forEach((key, usage) -> postings.computeIfAbsent(key, k -> new Posting()).put(usage));
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        Set<String> previous = keysByDiagram.remove(id);
+        if (previous != null) {
+            previous.forEach(key -> unpost(key, id));
+        }
+    }
+
+    /**
+     * Diagrams with a node whose label, type or id normalises to the same key
+     * as {@code name}.
+     */
+    public List<ComponentUsage> lookup(String name) {
+        Posting posting = postings.get(normalise(name));
+        if (posting == null) {
+            return List.of();
+        }
+        List<ComponentUsage> list = posting.list;
+        if (list == null) {
+            synchronized (this) {
+                list = posting.snapshot();
+            }
+        }
+        return list;
+    }
+
+    static String normalise(String s) {
+        if (s == null) {
+            return "";
+        }
+        return s.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").strip();
+    }
+
+    private void unpost(String key, String id) {
+        Posting posting = postings.get(key);
+        if (posting != null && posting.remove(id)) {
+            postings.remove(key);
+        }
+    }
+
+    private static Map<String, ComponentUsage> usages(Diagram diagram) {
+        JsonNode flow = diagram.getFlow();
+        if (flow == null || !flow.isObject()) {
+            return Map.of();
+        }
+
+        // node id -> flows whose steps start or end there
+        Map<String, Set<String>> flowsByNode = new HashMap<>();
+        for (JsonNode f : DiagramText.array(flow.get("flows"))) {
+            String flowId = DiagramText.text(f.get("id"));
+            if (flowId == null) continue;
+            for (JsonNode step : DiagramText.array(f.get("sequence"))) {
+                for (String end : new String[] {"from", "to"}) {
+                    String nodeId = DiagramText.text(step.get(end));
+                    if (nodeId != null) flowsByNode.computeIfAbsent(nodeId, k -> new LinkedHashSet<>()).add(flowId);
+                }
+            }
+        }
+
+        Map<String, Builder> byKey = new LinkedHashMap<>();
+        for (JsonNode node : DiagramText.array(flow.get("nodes"))) {
+            String nodeId = DiagramText.text(node.get("id"));
+            if (nodeId == null) continue;
+            Set<String> keys = new LinkedHashSet<>();
+            for (String field : new String[] {"label", "type", "id"}) {
+                String key = normalise(DiagramText.text(node.get(field)));
+                if (!key.isEmpty()) keys.add(key);
+            }
+            for (String key : keys) {
+                Builder b = byKey.computeIfAbsent(key, k -> new Builder());
+                b.nodes.add(nodeId);
+                JsonNode phase = node.get("phase");
+                if (phase != null && phase.isArray()) {
+                    phase.forEach(p -> b.phases.add(p.asText()));
+                } else if (phase != null && phase.isValueNode()) {
+                    b.phases.add(phase.asText());
+                }
+                b.flows.addAll(flowsByNode.getOrDefault(nodeId, Set.of()));
+            }
+        }
+
+        Map<String, ComponentUsage> result = new HashMap<>();
+        byKey.forEach((key, b) -> result.put(key, new ComponentUsage(diagram.getId(), diagram.getTitle(),
+                diagram.getSource(), List.copyOf(b.nodes), List.copyOf(b.phases), List.copyOf(b.flows))));
+        return result;
+    }
+
+    private static final class Builder {
+        final Set<String> nodes = new LinkedHashSet<>();
+        final Set<String> phases = new LinkedHashSet<>();
+        final Set<String> flows = new LinkedHashSet<>();
+    }
+
+    /**
+     * Usages of one key. All methods run under the index lock; readers only
+     * touch {@code list}, which is either null or an immutable snapshot.
+     */
+    private static final class Posting {
+        private final Map<String, ComponentUsage> byDiagram = new LinkedHashMap<>();
+        volatile List<ComponentUsage> list;
+
+        void put(ComponentUsage usage) {
+            byDiagram.put(usage.id(), usage);
+            list = null;
+        }
+
+        /**
+         * @return whether the posting is now empty
+         */
+        boolean remove(String id) {
+            if (byDiagram.remove(id) != null) {
+                list = null;
+            }
+            return byDiagram.isEmpty();
+        }
+
+        List<ComponentUsage> snapshot() {
+            if (list == null) {
+                list = List.copyOf(byDiagram.values());
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+
+/**
+ * An in-process secondary index over diagrams. Implementations are kept up to
+ * date by {@code DiagramIndexer}, which feeds them every stored and static
+ * diagram at startup and every subsequent write. Both methods must be safe to
+ * call concurrently with queries.
+ */
+public interface DiagramIndex {
+
+    /**
+     * Adds the diagram, replacing anything previously indexed under its id.
+     */
+    void index(Diagram diagram);
+
+    void remove(String id);
+}
@@ -0,0 +1,78 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pulls the human-readable text out of a diagram, each piece tagged with a
+ * reference to where it came from: {@code node:<id>}, {@code sequence:<n>},
+ * {@code flow:<id>} / {@code flow:<id>:<n>}, {@code notes},
+ * {@code story.problem}, {@code story.vision}, {@code title} and
+ * {@code description}.
+ */
+public final class DiagramText {
+
+    private DiagramText() {}
+
+    public record Passage(String ref, String text) {}
+
+    public static List<Passage> passages(Diagram diagram) {
+        List<Passage> out = new ArrayList<>();
+        add(out, "title", diagram.getTitle());
+        add(out, "description", diagram.getDescription());
+
+        JsonNode flow = diagram.getFlow();
+        if (flow == null || !flow.isObject()) {
+            return out;
+        }
+        add(out, "notes", text(flow.get("notes")));
+
+        for (JsonNode node : array(flow.get("nodes"))) {
+            add(out, "node:" + text(node.get("id")), text(node.get("label")));
+        }
+        int step = 0;
+        for (JsonNode s : array(flow.get("sequence"))) {
+            add(out, "sequence:" + step++, text(s.get("text")));
+        }
+        for (JsonNode f : array(flow.get("flows"))) {
+            String flowRef = "flow:" + text(f.get("id"));
+            add(out, flowRef, text(f.get("name")));
+            int flowStep = 0;
+            for (JsonNode s : array(f.get("sequence"))) {
+                add(out, flowRef + ":" + flowStep++, text(s.get("text")));
+            }
+        }
+
+        JsonNode story = flow.get("story");
+        if (story != null && story.isObject()) {
+            JsonNode problem = story.get("problem");
+            if (problem != null) {
+                add(out, "story.problem", text(problem.get("headline")));
+                add(out, "story.problem", text(problem.get("description")));
+            }
+            JsonNode vision = story.get("vision");
+            if (vision != null) {
+                add(out, "story.vision", text(vision.get("summary")));
+                add(out, "story.vision", text(vision.get("description")));
+            }
+        }
+        return out;
+    }
+
+    static Iterable<JsonNode> array(JsonNode node) {
+        return node != null && node.isArray() ? node : List.of();
+    }
+
+    static String text(JsonNode node) {
+        return node != null && node.isValueNode() ? node.asText() : null;
+    }
+
+    private static void add(List<Passage> out, String ref, String text) {
+        if (text != null && !text.isBlank()) {
+            out.add(new Passage(ref, text));
+        }
+    }
+}
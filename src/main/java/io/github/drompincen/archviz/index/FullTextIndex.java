@@ -0,0 +1,168 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.SearchHit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * BM25-ranked inverted index over diagram text (titles, notes, node labels,
+ * sequence and flow steps, story problem/vision; see {@link DiagramText}).
+ * Each posting remembers which passages contained the term so results can
+ * point at the matching nodes and steps.
+ */
+@Component
+public class FullTextIndex implements DiagramIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_REFS_PER_POSTING = 20;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "to", "with");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<String, Posting>> postings = new HashMap<>();
+    private final Map<String, Doc> docs = new HashMap<>();
+    private long totalLength;
+
+    @Override
+    public void index(Diagram diagram) {
+        // Tokenise outside the lock; postings are never modified once published
+        Map<String, Posting> terms = new HashMap<>();
+        int length = 0;
+        for (DiagramText.Passage passage : DiagramText.passages(diagram)) {
+            for (String token : tokenize(passage.text())) {
+                length++;
+                terms.computeIfAbsent(token, t -> new Posting()).add(passage.ref());
+            }
+        }
+        Doc doc = new Doc(diagram.getTitle(), diagram.getSource(), length, terms.keySet());
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(diagram.getId());
+            docs.put(diagram.getId(), doc);
+            totalLength += length;
+            terms.forEach((term, posting) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(diagram.getId(), posting));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            if (n == 0) {
+                return List.of();
+            }
+            double avgLength = Math.max(1.0, (double) totalLength / n);
+            Map<String, Double> scores = new HashMap<>();
+            Map<String, Set<String>> matches = new HashMap<>();
+            for (String term : queryTerms) {
+                Map<String, Posting> list = postings.get(term);
+                if (list == null) continue;
+                double idf = Math.log(1 + (n - list.size() + 0.5) / (list.size() + 0.5));
+                list.forEach((id, posting) -> {
+                    double norm = K1 * (1 - B + B * docs.get(id).length() / avgLength);
+                    double score = idf * posting.tf * (K1 + 1) / (posting.tf + norm);
+                    scores.merge(id, score, Double::sum);
+                    matches.computeIfAbsent(id, k -> new LinkedHashSet<>()).addAll(posting.refs);
+                });
+            }
+
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder())
+                    .thenComparing(Map.Entry.comparingByKey()));
+            List<SearchHit> hits = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (Map.Entry<String, Double> e : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                Doc doc = docs.get(e.getKey());
+                hits.add(new SearchHit(e.getKey(), doc.title(), doc.source(), e.getValue(),
+                        List.copyOf(matches.get(e.getKey()))));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void removeLocked(String id) {
+        Doc previous = docs.remove(id);
+        if (previous == null) {
+            return;
+        }
+        totalLength -= previous.length();
+        for (String term : previous.terms()) {
+            Map<String, Posting> list = postings.get(term);
+            if (list != null) {
+                list.remove(id);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private record Doc(String title, String source, int length, Set<String> terms) {}
+
+    private static final class Posting {
+        private int tf;
+        private final Set<String> refs = new LinkedHashSet<>();
+
+        void add(String ref) {
+            tf++;
+            if (refs.size() < MAX_REFS_PER_POSTING) {
+                refs.add(ref);
+            }
+        }
+    }
+}
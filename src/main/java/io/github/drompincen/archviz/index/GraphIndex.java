@@ -0,0 +1,332 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.filter.GraphPattern;
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.GraphMatch;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact adjacency lists of every diagram's nodes and connections, with the
+ * phase visibility of each node and edge, plus an inverted index from
+ * {@code fromKey>toKey} edge keys ({@code type:gateway>tag:data} and so on)
+ * to diagram ids. A {@link GraphPattern} query intersects the postings of its
+ * hops to find candidate diagrams and then walks only their graphs.
+ */
+@Component
+public class GraphIndex implements DiagramIndex {
+
+    public static final int MAX_PATHS_PER_DIAGRAM = 10;
+
+    private final Map<String, Graph> graphs = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByEdgeKey = new HashMap<>();
+    private final Map<String, Set<String>> idsByNodeKey = new HashMap<>();
+
+    @Override
+    public void index(Diagram diagram) {
+        Graph graph = Graph.of(diagram);
+        synchronized (this) {
+            Graph previous = graphs.put(diagram.getId(), graph);
+            if (previous != null) {
+                unpost(previous);
+            }
+            post(graph);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        Graph previous = graphs.remove(id);
+        if (previous != null) {
+            unpost(previous);
+        }
+    }
+
+    /**
+     * Diagrams containing {@code pattern}, in id order, with up to
+     * {@link #MAX_PATHS_PER_DIAGRAM} matching paths each. With a phase, only
+     * nodes and connections visible at that phase are used, and diagrams
+     * without a phase of that id are skipped.
+     */
+    public List<GraphMatch> match(GraphPattern pattern, Optional<String> phase, int limit) {
+        List<GraphMatch> result = new ArrayList<>();
+        for (String id : new TreeSet<>(candidates(pattern))) {
+            if (result.size() >= limit) break;
+            Graph graph = graphs.get(id);
+            if (graph == null) continue;
+            int phaseIndex = -1;
+            if (phase.isPresent()) {
+                Integer i = graph.phaseIndex.get(phase.get());
+                if (i == null) continue;
+                phaseIndex = i;
+            }
+            List<List<String>> paths = graph.paths(pattern, phaseIndex);
+            if (!paths.isEmpty()) {
+                result.add(new GraphMatch(id, graph.title, graph.source, paths));
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return graphs.size();
+    }
+
+    private synchronized Collection<String> candidates(GraphPattern pattern) {
+        Set<String> result = null;
+        List<GraphPattern.Step> steps = pattern.steps();
+        for (int i = 0; i + 1 < steps.size(); i++) {
+            String from = steps.get(i).key();
+            String to = steps.get(i + 1).key();
+            Set<String> hop;
+            if (from != null && to != null) {
+                hop = new HashSet<>(idsByEdgeKey.getOrDefault(from + ">" + to, Set.of()));
+                if (!pattern.directed().get(i)) {
+                    hop.addAll(idsByEdgeKey.getOrDefault(to + ">" + from, Set.of()));
+                }
+            } else if (from != null || to != null) {
+                hop = idsByNodeKey.getOrDefault(from != null ? from : to, Set.of());
+            } else {
+                continue;
+            }
+            if (result == null) {
+                result = new HashSet<>(hop);
+            } else {
+                result.retainAll(hop);
+            }
+        }
+        return result != null ? result : new ArrayList<>(graphs.keySet());
+    }
+
+    private void post(Graph graph) {
+        graph.edgeKeys().forEach(k -> idsByEdgeKey.computeIfAbsent(k, x -> new HashSet<>()).add(graph.id));
+        graph.nodeKeys().forEach(k -> idsByNodeKey.computeIfAbsent(k, x -> new HashSet<>()).add(graph.id));
+    }
+
+    private void unpost(Graph graph) {
+        graph.edgeKeys().forEach(k -> unpost(idsByEdgeKey, k, graph.id));
+        graph.nodeKeys().forEach(k -> unpost(idsByNodeKey, k, graph.id));
+    }
+
+    private static void unpost(Map<String, Set<String>> postings, String key, String id) {
+        Set<String> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Phase visibility of a node or connection, following the JSON spec: no
+     * phase is always visible, a phase id is visible from that phase onward,
+     * and a list is visible only at the listed phases.
+     */
+    private record Visibility(int from, Set<Integer> only) {
+
+        static final Visibility ALWAYS = new Visibility(-1, null);
+
+        boolean visibleAt(int phase) {
+            if (phase < 0) return true;
+            return only != null ? only.contains(phase) : from <= phase;
+        }
+
+        static Visibility of(JsonNode phase, Map<String, Integer> phaseIndex) {
+            if (phase == null || phase.isNull()) {
+                return ALWAYS;
+            }
+            if (phase.isArray()) {
+                Set<Integer> only = new HashSet<>();
+                phase.forEach(p -> {
+                    Integer i = phaseIndex.get(p.asText());
+                    if (i != null) only.add(i);
+                });
+                return new Visibility(-1, Set.copyOf(only));
+            }
+            Integer i = phaseIndex.get(phase.asText());
+            return i != null ? new Visibility(i, null) : ALWAYS;
+        }
+    }
+
+    private static final class Graph {
+        final String id;
+        final String title;
+        final String source;
+        final Map<String, Integer> phaseIndex;
+        final String[] nodeIds;
+        final String[] types;
+        final String[] tags;
+        final Visibility[] nodeVisibility;
+        // Edges as parallel arrays; out/in hold edge indexes per node
+        final int[] edgeFrom;
+        final int[] edgeTo;
+        final Visibility[] edgeVisibility;
+        final int[][] out;
+        final int[][] in;
+
+        private Graph(Diagram diagram) {
+            this.id = diagram.getId();
+            this.title = diagram.getTitle();
+            this.source = diagram.getSource();
+            JsonNode flow = diagram.getFlow() != null && diagram.getFlow().isObject() ? diagram.getFlow() : null;
+
+            Map<String, Integer> phases = new HashMap<>();
+            if (flow != null) {
+                for (JsonNode p : DiagramText.array(flow.get("phases"))) {
+                    String phaseId = DiagramText.text(p.get("id"));
+                    if (phaseId != null) phases.putIfAbsent(phaseId, phases.size());
+                }
+            }
+            this.phaseIndex = Map.copyOf(phases);
+
+            List<JsonNode> nodes = new ArrayList<>();
+            Map<String, Integer> nodeIndex = new HashMap<>();
+            if (flow != null) {
+                for (JsonNode n : DiagramText.array(flow.get("nodes"))) {
+                    String nodeId = DiagramText.text(n.get("id"));
+                    if (nodeId != null && nodeIndex.putIfAbsent(nodeId, nodes.size()) == null) {
+                        nodes.add(n);
+                    }
+                }
+            }
+            int n = nodes.size();
+            this.nodeIds = new String[n];
+            this.types = new String[n];
+            this.tags = new String[n];
+            this.nodeVisibility = new Visibility[n];
+            for (int i = 0; i < n; i++) {
+                JsonNode node = nodes.get(i);
+                nodeIds[i] = DiagramText.text(node.get("id"));
+                types[i] = lower(DiagramText.text(node.get("type")));
+                tags[i] = lower(DiagramText.text(node.get("tag")));
+                nodeVisibility[i] = Visibility.of(node.get("phase"), phaseIndex);
+            }
+
+            List<int[]> edges = new ArrayList<>();
+            List<Visibility> visibility = new ArrayList<>();
+            if (flow != null) {
+                for (JsonNode c : DiagramText.array(flow.get("connections"))) {
+                    Integer from = nodeIndex.get(DiagramText.text(c.get("from")));
+                    Integer to = nodeIndex.get(DiagramText.text(c.get("to")));
+                    if (from != null && to != null) {
+                        edges.add(new int[] {from, to});
+                        visibility.add(Visibility.of(c.get("phase"), phaseIndex));
+                    }
+                }
+            }
+            this.edgeFrom = edges.stream().mapToInt(e -> e[0]).toArray();
+            this.edgeTo = edges.stream().mapToInt(e -> e[1]).toArray();
+            this.edgeVisibility = visibility.toArray(new Visibility[0]);
+            this.out = adjacency(n, edgeFrom);
+            this.in = adjacency(n, edgeTo);
+        }
+
+        static Graph of(Diagram diagram) {
+            return new Graph(diagram);
+        }
+
+        Set<String> nodeKeys() {
+            Set<String> keys = new HashSet<>();
+            for (int i = 0; i < nodeIds.length; i++) {
+                keys.addAll(keys(i));
+            }
+            return keys;
+        }
+
+        Set<String> edgeKeys() {
+            Set<String> keys = new HashSet<>();
+            for (int e = 0; e < edgeFrom.length; e++) {
+                for (String from : keys(edgeFrom[e])) {
+                    for (String to : keys(edgeTo[e])) {
+                        keys.add(from + ">" + to);
+                    }
+                }
+            }
+            return keys;
+        }
+
+        List<List<String>> paths(GraphPattern pattern, int phase) {
+            List<List<String>> found = new ArrayList<>();
+            int[] path = new int[pattern.steps().size()];
+            for (int start = 0; start < nodeIds.length && found.size() < MAX_PATHS_PER_DIAGRAM; start++) {
+                if (nodeVisibility[start].visibleAt(phase) && matches(pattern.steps().get(0), start)) {
+                    path[0] = start;
+                    extend(pattern, phase, path, 1, found);
+                }
+            }
+            return found;
+        }
+
+        private void extend(GraphPattern pattern, int phase, int[] path, int depth, List<List<String>> found) {
+            if (depth == path.length) {
+                List<String> ids = new ArrayList<>(path.length);
+                for (int node : path) ids.add(nodeIds[node]);
+                // Undirected hops can reach the same path through parallel edges
+                if (!found.contains(ids)) found.add(List.copyOf(ids));
+                return;
+            }
+            int current = path[depth - 1];
+            boolean directed = pattern.directed().get(depth - 1);
+            GraphPattern.Step step = pattern.steps().get(depth);
+            for (int pass = 0; pass < (directed ? 1 : 2); pass++) {
+                for (int e : pass == 0 ? out[current] : in[current]) {
+                    int next = pass == 0 ? edgeTo[e] : edgeFrom[e];
+                    if (found.size() >= MAX_PATHS_PER_DIAGRAM) return;
+                    if (edgeVisibility[e].visibleAt(phase) && nodeVisibility[next].visibleAt(phase)
+                            && matches(step, next) && !onPath(path, depth, next)) {
+                        path[depth] = next;
+                        extend(pattern, phase, path, depth + 1, found);
+                    }
+                }
+            }
+        }
+
+        private boolean matches(GraphPattern.Step step, int node) {
+            return step.matches(types[node], tags[node]);
+        }
+
+        private List<String> keys(int node) {
+            List<String> keys = new ArrayList<>(2);
+            if (types[node] != null) keys.add("type:" + types[node]);
+            if (tags[node] != null) keys.add("tag:" + tags[node]);
+            return keys;
+        }
+
+        private static boolean onPath(int[] path, int depth, int node) {
+            for (int i = 0; i < depth; i++) {
+                if (path[i] == node) return true;
+            }
+            return false;
+        }
+
+        private static int[][] adjacency(int nodes, int[] endpoint) {
+            int[] counts = new int[nodes];
+            for (int node : endpoint) counts[node]++;
+            int[][] lists = new int[nodes][];
+            for (int i = 0; i < nodes; i++) lists[i] = new int[counts[i]];
+            Arrays.fill(counts, 0);
+            for (int e = 0; e < endpoint.length; e++) {
+                lists[endpoint[e]][counts[endpoint[e]]++] = e;
+            }
+            return lists;
+        }
+
+        private static String lower(String s) {
+            return s != null ? s.toLowerCase(Locale.ROOT) : null;
+        }
+    }
+}
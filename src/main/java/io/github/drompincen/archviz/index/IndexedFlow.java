@@ -0,0 +1,89 @@
+package io.github.drompincen.archviz.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The parts of a flow that the {@link DiagramIndex} implementations read:
+ * node ids, labels, types, tags and phases, connection ends, phase ids,
+ * flow steps, zone types, notes and the story text. Layout and styling are
+ * dropped. Every array keeps all its elements, so counts are unchanged.
+ * Indexing a diagram whose flow is {@link #project projected} gives the same
+ * result as indexing the full flow; an index that starts reading another
+ * field must add it here.
+ */
+public final class IndexedFlow {
+
+    private IndexedFlow() {}
+
+    public static JsonNode project(JsonNode flow) {
+        if (flow == null || !flow.isObject()) {
+            return flow;
+        }
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        copy(flow, out, "notes");
+        JsonNode story = flow.get("story");
+        if (story != null) {
+            ObjectNode kept = story.isObject() ? JsonNodeFactory.instance.objectNode() : null;
+            if (kept != null) {
+                set(kept, "problem", pick(story.get("problem"), "headline", "description"));
+                set(kept, "vision", pick(story.get("vision"), "summary", "description"));
+            }
+            out.set("story", kept != null ? kept : story);
+        }
+        set(out, "nodes", each(flow.get("nodes"), "id", "label", "type", "tag", "phase"));
+        set(out, "connections", each(flow.get("connections"), "from", "to", "phase"));
+        set(out, "phases", each(flow.get("phases"), "id"));
+        set(out, "sequence", each(flow.get("sequence"), "text"));
+        set(out, "zones", each(flow.get("zones"), "type"));
+        JsonNode flows = flow.get("flows");
+        if (flows != null && flows.isArray()) {
+            ArrayNode kept = out.putArray("flows");
+            for (JsonNode f : flows) {
+                JsonNode picked = pick(f, "id", "name");
+                if (picked.isObject()) {
+                    set((ObjectNode) picked, "sequence", each(f.get("sequence"), "text", "from", "to"));
+                }
+                kept.add(picked);
+            }
+        } else {
+            set(out, "flows", flows);
+        }
+        return out;
+    }
+
+    // Each element of array reduced to fields; anything but an array is kept as it is
+    private static JsonNode each(JsonNode array, String... fields) {
+        if (array == null || !array.isArray()) {
+            return array;
+        }
+        ArrayNode out = JsonNodeFactory.instance.arrayNode(array.size());
+        for (JsonNode element : array) {
+            out.add(pick(element, fields));
+        }
+        return out;
+    }
+
+    private static JsonNode pick(JsonNode node, String... fields) {
+        if (node == null || !node.isObject()) {
+            return node;
+        }
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        for (String field : fields) {
+            copy(node, out, field);
+        }
+        return out;
+    }
+
+    private static void copy(JsonNode from, ObjectNode to, String field) {
+        set(to, field, from.get(field));
+    }
+
+    private static void set(ObjectNode to, String field, JsonNode value) {
+        if (value != null) {
+            to.set(field, value);
+        }
+    }
+}
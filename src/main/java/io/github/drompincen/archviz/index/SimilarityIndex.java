@@ -0,0 +1,200 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.SimilarDiagram;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures of each diagram's features (node types, normalised node
+ * labels and typed connection pairs such as {@code lambda>storage}) in a
+ * banded LSH index. A query only compares signatures of diagrams sharing at
+ * least one band, which with {@value #BANDS} bands of {@value #ROWS} rows
+ * finds pairs above roughly 0.4 Jaccard similarity with high probability.
+ */
+@Component
+public class SimilarityIndex implements DiagramIndex {
+
+    static final int BANDS = 32;
+    static final int ROWS = 4;
+    static final int HASHES = BANDS * ROWS;
+
+    // Fixed seed: signatures must stay comparable for the life of the index
+    private static final long[] SEEDS = new SplittableRandom(0x5eedL).longs(HASHES).toArray();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Map<Integer, Set<String>>> buckets = new ArrayList<>(BANDS);
+
+    public SimilarityIndex() {
+        for (int b = 0; b < BANDS; b++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    public void index(Diagram diagram) {
+        int[] signature = signature(features(diagram));
+        synchronized (this) {
+            removeLocked(diagram.getId());
+            if (signature == null) {
+                return;
+            }
+            entries.put(diagram.getId(), new Entry(diagram.getTitle(), diagram.getSource(), signature));
+            for (int b = 0; b < BANDS; b++) {
+                buckets.get(b).computeIfAbsent(bandHash(signature, b), k -> new HashSet<>()).add(diagram.getId());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        removeLocked(id);
+    }
+
+    /**
+     * Diagrams most similar to the indexed diagram {@code id}, or empty when
+     * it is not indexed (unknown, or no nodes).
+     */
+    public synchronized Optional<List<SimilarDiagram>> similarTo(String id, int limit) {
+        Entry entry = entries.get(id);
+        return entry == null ? Optional.empty() : Optional.of(nearest(entry.signature(), id, limit));
+    }
+
+    /**
+     * Indexed diagrams most similar to {@code diagram}, which is not added.
+     */
+    public List<SimilarDiagram> similarTo(Diagram diagram, int limit) {
+        int[] signature = signature(features(diagram));
+        if (signature == null) {
+            return List.of();
+        }
+        synchronized (this) {
+            return nearest(signature, diagram.getId(), limit);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private List<SimilarDiagram> nearest(int[] signature, String self, int limit) {
+        Set<String> candidates = new HashSet<>();
+        for (int b = 0; b < BANDS; b++) {
+            candidates.addAll(buckets.get(b).getOrDefault(bandHash(signature, b), Set.of()));
+        }
+        candidates.remove(self);
+
+        List<SimilarDiagram> ranked = new ArrayList<>(candidates.size());
+        for (String id : candidates) {
+            Entry e = entries.get(id);
+            ranked.add(new SimilarDiagram(id, e.title(), e.source(), estimate(signature, e.signature())));
+        }
+        ranked.sort(Comparator.comparingDouble(SimilarDiagram::similarity).reversed()
+                .thenComparing(SimilarDiagram::id));
+        return ranked.subList(0, Math.min(limit, ranked.size()));
+    }
+
+    private void removeLocked(String id) {
+        Entry previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (int b = 0; b < BANDS; b++) {
+            Map<Integer, Set<String>> band = buckets.get(b);
+            int key = bandHash(previous.signature(), b);
+            Set<String> ids = band.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                band.remove(key);
+            }
+        }
+    }
+
+    static Set<String> features(Diagram diagram) {
+        Set<String> features = new HashSet<>();
+        JsonNode flow = diagram.getFlow();
+        if (flow == null || !flow.isObject()) {
+            return features;
+        }
+        Map<String, String> typeById = new HashMap<>();
+        for (JsonNode node : DiagramText.array(flow.get("nodes"))) {
+            String type = ComponentIndex.normalise(DiagramText.text(node.get("type")));
+            String label = ComponentIndex.normalise(DiagramText.text(node.get("label")));
+            String id = DiagramText.text(node.get("id"));
+            if (id != null) typeById.put(id, type.isEmpty() ? "default" : type);
+            if (!type.isEmpty()) features.add("type:" + type);
+            if (!label.isEmpty()) features.add("label:" + label);
+        }
+        for (JsonNode c : DiagramText.array(flow.get("connections"))) {
+            String from = typeById.get(DiagramText.text(c.get("from")));
+            String to = typeById.get(DiagramText.text(c.get("to")));
+            if (from != null && to != null) features.add("edge:" + from + ">" + to);
+        }
+        return features;
+    }
+
+    /**
+     * @return the MinHash signature, or {@code null} for an empty feature set
+     */
+    static int[] signature(Set<String> features) {
+        if (features.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String feature : features) {
+            long base = fnv1a(feature);
+            for (int i = 0; i < HASHES; i++) {
+                int h = (int) (mix(base ^ SEEDS[i]) >>> 33);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    static double estimate(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) equal++;
+        }
+        return (double) equal / HASHES;
+    }
+
+    private static int bandHash(int[] signature, int band) {
+        int h = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) {
+            h = 31 * h + signature[r];
+        }
+        return h;
+    }
+
+    private static long fnv1a(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // SplitMix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private record Entry(String title, String source, int[] signature) {}
+}
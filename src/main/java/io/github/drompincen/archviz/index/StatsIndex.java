@@ -0,0 +1,145 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramFacets;
+import io.github.drompincen.archviz.model.DiagramStats;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-diagram {@link DiagramStats} plus running facet totals over every
+ * indexed diagram. Totals are adjusted by the difference on each write, so
+ * the unfiltered facets never rescan; filtered facets sum the precomputed
+ * stats of the matching ids. Neither path reads a flow.
+ */
+@Component
+public class StatsIndex implements DiagramIndex {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> tagTotals = new HashMap<>();
+    private final Map<String, Integer> typeTotals = new HashMap<>();
+    private final Map<String, Integer> zoneTotals = new HashMap<>();
+    private int storyTotal;
+
+    @Override
+    public void index(Diagram diagram) {
+        Entry entry = new Entry(diagram.getTags() != null ? Set.copyOf(diagram.getTags()) : Set.of(),
+                compute(diagram.getFlow()));
+        synchronized (this) {
+            Entry previous = entries.put(diagram.getId(), entry);
+            if (previous != null) {
+                apply(previous, -1);
+            }
+            apply(entry, 1);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            apply(previous, -1);
+        }
+    }
+
+    public DiagramStats stats(String id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.stats() : null;
+    }
+
+    /**
+     * Facets over every indexed diagram, read from the running totals.
+     */
+    public synchronized DiagramFacets facets() {
+        return new DiagramFacets(entries.size(), sorted(tagTotals), sorted(typeTotals),
+                sorted(zoneTotals), storyTotal);
+    }
+
+    /**
+     * Facets over the given diagrams; ids that are not indexed are ignored.
+     */
+    public DiagramFacets facets(Collection<String> ids) {
+        Map<String, Integer> tags = new HashMap<>();
+        Map<String, Integer> types = new HashMap<>();
+        Map<String, Integer> zones = new HashMap<>();
+        int total = 0;
+        int story = 0;
+        for (String id : ids) {
+            Entry e = entries.get(id);
+            if (e == null) continue;
+            total++;
+            if (e.stats().story()) story++;
+            e.tags().forEach(t -> tags.merge(t, 1, Integer::sum));
+            e.stats().nodesByType().keySet().forEach(t -> types.merge(t, 1, Integer::sum));
+            e.stats().zoneTypes().forEach(z -> zones.merge(z, 1, Integer::sum));
+        }
+        return new DiagramFacets(total, sorted(tags), sorted(types), sorted(zones), story);
+    }
+
+    public static DiagramStats compute(JsonNode flow) {
+        if (flow == null || !flow.isObject()) {
+            return new DiagramStats(0, Map.of(), 0, 0, 0, List.of(), false);
+        }
+        Map<String, Integer> byType = new TreeMap<>();
+        int nodes = 0;
+        for (JsonNode node : DiagramText.array(flow.get("nodes"))) {
+            nodes++;
+            String type = DiagramText.text(node.get("type"));
+            if (type != null && !type.isBlank()) {
+                byType.merge(type, 1, Integer::sum);
+            }
+        }
+        Set<String> zoneTypes = new LinkedHashSet<>();
+        for (JsonNode zone : DiagramText.array(flow.get("zones"))) {
+            String type = DiagramText.text(zone.get("type"));
+            if (type != null && !type.isBlank()) {
+                zoneTypes.add(type);
+            }
+        }
+        JsonNode story = flow.get("story");
+        return new DiagramStats(nodes, Collections.unmodifiableMap(byType),
+                size(flow.get("connections")), size(flow.get("phases")), size(flow.get("flows")),
+                List.copyOf(zoneTypes), story != null && story.isObject());
+    }
+
+    private void apply(Entry entry, int delta) {
+        entry.tags().forEach(t -> adjust(tagTotals, t, delta));
+        entry.stats().nodesByType().keySet().forEach(t -> adjust(typeTotals, t, delta));
+        entry.stats().zoneTypes().forEach(z -> adjust(zoneTotals, z, delta));
+        if (entry.stats().story()) {
+            storyTotal += delta;
+        }
+    }
+
+    private static void adjust(Map<String, Integer> totals, String key, int delta) {
+        totals.merge(key, delta, Integer::sum);
+        totals.remove(key, 0);
+    }
+
+    private static int size(JsonNode node) {
+        return node != null && node.isArray() ? node.size() : 0;
+    }
+
+    // Largest first, then alphabetical, for a stable sidebar order
+    private static Map<String, Integer> sorted(Map<String, Integer> counts) {
+        List<Map.Entry<String, Integer>> list = new ArrayList<>(counts.entrySet());
+        list.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.<String, Integer>comparingByKey()));
+        Map<String, Integer> out = new LinkedHashMap<>();
+        list.forEach(e -> out.put(e.getKey(), e.getValue()));
+        return out;
+    }
+
+    private record Entry(Set<String> tags, DiagramStats stats) {}
+}
@@ -0,0 +1,122 @@
+package io.github.drompincen.archviz.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Case-insensitive substring index over short text fields. Each document's
+ * text is lower-cased once and split into overlapping three-character grams;
+ * a query intersects the posting sets of its own grams, smallest first, and
+ * confirms the survivors with a plain {@code contains}. Lookup cost depends on
+ * the rarest gram in the query, not on the number of documents.
+ *
+ * <p>Queries shorter than three characters have no grams and fall back to a
+ * scan of the stored text. Writes are serialised; reads are lock-free.
+ */
+public class TrigramIndex {
+
+    // Keeps grams from spanning two fields of the same document
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final Map<String, Set<String>> idsByGram = new ConcurrentHashMap<>();
+    private final Map<String, String> textById = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes (or re-indexes) a document. Null fields are ignored.
+     */
+    public synchronized void put(String id, String... fields) {
+        remove(id);
+        StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            if (field == null || field.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(FIELD_SEPARATOR);
+            sb.append(normalize(field));
+        }
+        String text = sb.toString();
+        textById.put(id, text);
+        for (String gram : grams(text)) {
+            idsByGram.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        String previous = textById.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : grams(previous)) {
+            idsByGram.computeIfPresent(gram, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Ids of all documents whose text contains {@code query}, ignoring case.
+     */
+    public Set<String> search(String query) {
+        String q = normalize(query);
+        Set<String> result = new HashSet<>();
+        if (q.isEmpty()) {
+            result.addAll(textById.keySet());
+            return result;
+        }
+        Set<String> queryGrams = grams(q);
+        if (queryGrams.isEmpty()) {
+            textById.forEach((id, text) -> {
+                if (text.contains(q)) result.add(id);
+            });
+            return result;
+        }
+
+        List<Set<String>> postings = new ArrayList<>(queryGrams.size());
+        for (String gram : queryGrams) {
+            Set<String> ids = idsByGram.get(gram);
+            if (ids == null) {
+                return result;
+            }
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        for (String id : postings.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < postings.size() && inAll; i++) {
+                inAll = postings.get(i).contains(id);
+            }
+            if (!inAll) continue;
+            // Grams can all be present without being adjacent; confirm the actual substring
+            String text = textById.get(id);
+            if (text != null && text.contains(q)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return textById.size();
+    }
+
+    static String normalize(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            String gram = text.substring(i, i + 3);
+            if (gram.indexOf(FIELD_SEPARATOR) < 0) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+}
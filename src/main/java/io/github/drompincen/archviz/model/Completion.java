@@ -0,0 +1,8 @@
+package io.github.drompincen.archviz.model;
+
+/**
+ * Autocomplete suggestion. {@code kind} is one of {@code title}, {@code tag},
+ * {@code label} (node label) or {@code type} (node type); {@code count} is the
+ * number of diagrams containing it.
+ */
+public record Completion(String text, String kind, int count) {}
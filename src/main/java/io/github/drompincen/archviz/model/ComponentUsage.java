@@ -0,0 +1,17 @@
+package io.github.drompincen.archviz.model;
+
+import java.util.List;
+
+/**
+ * Where a component appears in one diagram: the matching node ids, the
+ * phases those nodes are tied to (empty when always visible) and the flows
+ * whose steps pass through them.
+ */
+public record ComponentUsage(
+        String id,
+        String title,
+        String source,
+        List<String> nodes,
+        List<String> phases,
+        List<String> flows
+) {}
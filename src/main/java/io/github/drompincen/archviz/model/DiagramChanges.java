@@ -0,0 +1,37 @@
+package io.github.drompincen.archviz.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The edits of one update. Every field replaces the stored value, null
+ * included, except {@code tags}: null keeps the stored tags.
+ */
+public record DiagramChanges(
+        String title,
+        String description,
+        List<String> tags,
+        JsonNode flow,
+        Instant updatedAt
+) {
+
+    /**
+     * A copy of {@code current} with these edits applied and its version
+     * incremented; {@code current} itself is left as it was.
+     */
+    public Diagram applyTo(Diagram current) {
+        Diagram d = new Diagram();
+        d.setId(current.getId());
+        d.setTitle(title);
+        d.setDescription(description);
+        d.setTags(tags != null ? tags : current.getTags());
+        d.setVersion(current.getVersion() + 1);
+        d.setSource(current.getSource());
+        d.setCreatedAt(current.getCreatedAt());
+        d.setUpdatedAt(updatedAt);
+        d.setFlow(flow);
+        return d;
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.drompincen.archviz.model;
+
+import java.util.Map;
+
+/**
+ * Diagram counts per tag, node type and zone type for a listing filter. Each
+ * diagram counts once per value it contains.
+ */
+public record DiagramFacets(
+        int total,
+        Map<String, Integer> tags,
+        Map<String, Integer> nodeTypes,
+        Map<String, Integer> zoneTypes,
+        int withStory
+) {}
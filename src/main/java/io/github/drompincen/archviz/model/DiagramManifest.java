@@ -0,0 +1,14 @@
+package io.github.drompincen.archviz.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Machine-readable listing of the static diagram catalog. {@code etag} changes
+ * whenever any file is added, removed or edited.
+ */
+public record DiagramManifest(
+        String etag,
+        Instant generatedAt,
+        List<DiagramManifestEntry> files
+) {}
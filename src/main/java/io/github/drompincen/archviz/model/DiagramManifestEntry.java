@@ -0,0 +1,17 @@
+package io.github.drompincen.archviz.model;
+
+import java.time.Instant;
+
+public record DiagramManifestEntry(
+        String id,
+        String file,
+        boolean bundled,
+        String title,
+        long bytes,
+        int nodes,
+        int connections,
+        int phases,
+        int flows,
+        Instant lastModified,
+        String sha256
+) {}
@@ -0,0 +1,19 @@
+package io.github.drompincen.archviz.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shape of a diagram's flow, computed once when the diagram is saved or
+ * loaded. {@code nodesByType} counts nodes per {@code type}; {@code zoneTypes}
+ * lists the distinct zone types.
+ */
+public record DiagramStats(
+        int nodes,
+        Map<String, Integer> nodesByType,
+        int connections,
+        int phases,
+        int flows,
+        List<String> zoneTypes,
+        boolean story
+) {}
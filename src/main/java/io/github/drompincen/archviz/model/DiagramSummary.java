@@ -8,5 +8,11 @@ public record DiagramSummary(
         String description,
         List<String> tags,
         int version,
-        String source
-) {}
+        String source,
+        DiagramStats stats
+) {
+
+    public DiagramSummary withStats(DiagramStats stats) {
+        return new DiagramSummary(id, title, description, tags, version, source, stats);
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.drompincen.archviz.model;
+
+import java.util.List;
+
+/**
+ * A diagram matching a graph pattern. Each path lists the node ids that
+ * matched the pattern's steps, in order.
+ */
+public record GraphMatch(
+        String id,
+        String title,
+        String source,
+        List<List<String>> paths
+) {}
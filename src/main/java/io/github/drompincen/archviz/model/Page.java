@@ -0,0 +1,12 @@
+package io.github.drompincen.archviz.model;
+
+import java.util.List;
+
+/**
+ * One page of a listing. {@code next} is an opaque token to pass back to
+ * continue after the last item, or {@code null} when there is nothing more.
+ */
+public record Page<T>(
+        List<T> items,
+        String next
+) {}
@@ -0,0 +1,16 @@
+package io.github.drompincen.archviz.model;
+
+import java.util.List;
+
+/**
+ * One full-text search result. {@code matches} lists where the query terms
+ * occurred, e.g. {@code node:api-gw}, {@code sequence:3} or
+ * {@code flow:mobile-order:1}.
+ */
+public record SearchHit(
+        String id,
+        String title,
+        String source,
+        double score,
+        List<String> matches
+) {}
@@ -0,0 +1,13 @@
+package io.github.drompincen.archviz.model;
+
+/**
+ * A diagram close to the one queried. {@code similarity} is the MinHash
+ * estimate of the Jaccard similarity of their node and connection features,
+ * between 0 and 1.
+ */
+public record SimilarDiagram(
+        String id,
+        String title,
+        String source,
+        double similarity
+) {}
@@ -1,17 +1,159 @@
 package io.github.drompincen.archviz.repository;
 
+import io.github.drompincen.archviz.filter.DiagramFilter;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public interface DiagramRepository {
 
     Diagram save(Diagram diagram);
 
+    /**
+     * Saves each of {@code diagrams}, whose ids must be distinct. Stores that
+     * can write several items per round trip override this.
+     */
+    default void saveAll(Collection<Diagram> diagrams) {
+        diagrams.forEach(this::save);
+    }
+
     Optional<Diagram> findById(String id);
 
+    /**
+     * The stored diagrams among {@code ids}, in no particular order; ids
+     * without a diagram are left out. Stores that can read several items per
+     * round trip override this.
+     */
+    default List<Diagram> findAllById(Collection<String> ids) {
+        return new LinkedHashSet<>(ids).stream()
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
     List<Diagram> findAll(Optional<String> tag, Optional<String> query);
 
+    /**
+     * Like {@link #findAll(Optional, Optional)}, with a listing filter the store
+     * may use to narrow the read. The result only needs to be a superset of the
+     * matches; callers apply the filter themselves.
+     */
+    default List<Diagram> findAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        return findAll(tag, query);
+    }
+
+    /**
+     * Summaries of the diagrams {@link #findAll(Optional, Optional, Optional)}
+     * would return. Stores should avoid reading or parsing flows here;
+     * {@code stats} is whatever the store kept, possibly null.
+     */
+    default List<DiagramSummary> findSummaries(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        return findAll(tag, query, filter).stream()
+                .map(DiagramRepository::summarize)
+                .toList();
+    }
+
+    /**
+     * Summary counterpart of {@link #findPage}, with the same ordering and
+     * {@code next} tokens.
+     */
+    default Page<DiagramSummary> findSummaryPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                                 Optional<String> after, int limit) {
+        Page<Diagram> page = findPage(tag, query, filter, after, limit);
+        return new Page<>(page.items().stream().map(DiagramRepository::summarize).toList(), page.next());
+    }
+
+    private static DiagramSummary summarize(Diagram d) {
+        return new DiagramSummary(d.getId(), d.getTitle(), d.getDescription(), d.getTags(), d.getVersion(),
+                d.getSource(), null);
+    }
+
+    /**
+     * The diagrams {@link #findAll(Optional, Optional, Optional)} would return,
+     * for callers that visit every one (reindexing, export) and need not hold
+     * them all at once. The stream must be closed.
+     */
+    default Stream<Diagram> streamAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        return findAll(tag, query, filter).stream();
+    }
+
+    /**
+     * At most {@code limit} of the diagrams {@link #findAll(Optional, Optional, Optional)}
+     * would return, in an order that is stable between calls. The page's
+     * {@code next} is passed back as {@code after} to continue; a store may
+     * return a final empty page.
+     */
+    default Page<Diagram> findPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                   Optional<String> after, int limit) {
+        List<Diagram> rest = findAll(tag, query, filter).stream()
+                .filter(d -> after.map(a -> d.getId().compareTo(a) > 0).orElse(true))
+                .sorted(Comparator.comparing(Diagram::getId))
+                .toList();
+        if (rest.size() <= limit) {
+            return new Page<>(rest, null);
+        }
+        List<Diagram> items = rest.subList(0, limit);
+        return new Page<>(items, items.get(limit - 1).getId());
+    }
+
+    /**
+     * Applies {@code changes} to the stored diagram and increments its
+     * version as one atomic step, so concurrent updates never both build on
+     * the same version.
+     *
+     * @param expectedVersion if present, the update only applies while the
+     *                        stored diagram is at this version
+     * @return the updated diagram, or empty if there is no diagram {@code id}
+     * @throws VersionConflictException if the stored diagram is at another version
+     */
+    Optional<Diagram> update(String id, DiagramChanges changes, Optional<Integer> expectedVersion);
+
     void deleteById(String id);
+
+    /*
+     * Non-blocking counterparts of the calls a request handler makes. By
+     * default they make the blocking call and return it completed; stores
+     * with a non-blocking client override them.
+     */
+
+    default CompletableFuture<Optional<Diagram>> findByIdAsync(String id) {
+        return completed(() -> findById(id));
+    }
+
+    default CompletableFuture<List<Diagram>> findAllByIdAsync(Collection<String> ids) {
+        return completed(() -> findAllById(ids));
+    }
+
+    default CompletableFuture<Diagram> saveAsync(Diagram diagram) {
+        return completed(() -> save(diagram));
+    }
+
+    default CompletableFuture<Optional<Diagram>> updateAsync(String id, DiagramChanges changes,
+                                                             Optional<Integer> expectedVersion) {
+        return completed(() -> update(id, changes, expectedVersion));
+    }
+
+    default CompletableFuture<Page<DiagramSummary>> findSummaryPageAsync(Optional<String> tag, Optional<String> query,
+                                                                        Optional<DiagramFilter> filter,
+                                                                        Optional<String> after, int limit) {
+        return completed(() -> findSummaryPage(tag, query, filter, after, limit));
+    }
+
+    private static <T> CompletableFuture<T> completed(Supplier<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
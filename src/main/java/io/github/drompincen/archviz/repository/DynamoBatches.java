@@ -0,0 +1,201 @@
+package io.github.drompincen.archviz.repository;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchWriteItem and BatchGetItem over any number of requests: split into
+ * calls of the size DynamoDB accepts, each retried while anything is left
+ * unprocessed. Retries back off exponentially with full jitter, as DynamoDB
+ * asks, and give up after {@value #MAX_ATTEMPTS} calls with an
+ * {@link IllegalStateException}. The async variants issue the calls
+ * concurrently and wait without holding a thread.
+ */
+final class DynamoBatches {
+
+    static final int WRITE_LIMIT = 25;
+    static final int GET_LIMIT = 100;
+    static final int MAX_ATTEMPTS = 8;
+    static final long BASE_DELAY_MS = 25;
+    static final long MAX_DELAY_MS = 1_000;
+
+    private DynamoBatches() {
+    }
+
+    static void write(DynamoDbClient client, String table, List<WriteRequest> writes) {
+        for (int from = 0; from < writes.size(); from += WRITE_LIMIT) {
+            Map<String, List<WriteRequest>> pending = Map.of(table,
+                    writes.subList(from, Math.min(from + WRITE_LIMIT, writes.size())));
+            for (int attempt = 1; !pending.isEmpty(); attempt++) {
+                if (attempt > 1) {
+                    backOff(attempt, "BatchWriteItem", table, pending);
+                }
+                BatchWriteItemResponse response = client.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(pending)
+                        .build());
+                pending = response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of();
+            }
+        }
+    }
+
+    static CompletableFuture<Void> writeAsync(DynamoDbAsyncClient client, String table, List<WriteRequest> writes) {
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int from = 0; from < writes.size(); from += WRITE_LIMIT) {
+            calls.add(writeAsync(client, table, Map.of(table,
+                    writes.subList(from, Math.min(from + WRITE_LIMIT, writes.size()))), 1));
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static CompletableFuture<Void> writeAsync(DynamoDbAsyncClient client, String table,
+                                                      Map<String, List<WriteRequest>> pending, int attempt) {
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return after(attempt, "BatchWriteItem", table, pending)
+                .thenCompose(v -> client.batchWriteItem(BatchWriteItemRequest.builder().requestItems(pending).build()))
+                .thenCompose(response -> writeAsync(client, table,
+                        response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of(), attempt + 1));
+    }
+
+    /**
+     * @param projection projection expression, or null for whole items
+     * @param names      attribute name placeholders of {@code projection}, or null
+     * @return the items found, in no particular order
+     */
+    static List<Map<String, AttributeValue>> get(DynamoDbClient client, String table,
+                                                 List<Map<String, AttributeValue>> keys,
+                                                 String projection, Map<String, String> names) {
+        return get(client, table, keys, projection, names, false);
+    }
+
+    /**
+     * @param consistentRead whether the reads must reflect every write that
+     *                       completed before them
+     */
+    static List<Map<String, AttributeValue>> get(DynamoDbClient client, String table,
+                                                 List<Map<String, AttributeValue>> keys,
+                                                 String projection, Map<String, String> names,
+                                                 boolean consistentRead) {
+        List<Map<String, AttributeValue>> found = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += GET_LIMIT) {
+            Map<String, KeysAndAttributes> pending = Map.of(table,
+                    request(keys.subList(from, Math.min(from + GET_LIMIT, keys.size())), projection, names,
+                            consistentRead));
+            for (int attempt = 1; !pending.isEmpty(); attempt++) {
+                if (attempt > 1) {
+                    backOff(attempt, "BatchGetItem", table, pending);
+                }
+                BatchGetItemResponse response = client.batchGetItem(BatchGetItemRequest.builder()
+                        .requestItems(pending)
+                        .build());
+                found.addAll(response.responses().getOrDefault(table, List.of()));
+                pending = response.hasUnprocessedKeys() ? response.unprocessedKeys() : Map.of();
+            }
+        }
+        return found;
+    }
+
+    static CompletableFuture<List<Map<String, AttributeValue>>> getAsync(DynamoDbAsyncClient client, String table,
+                                                                         List<Map<String, AttributeValue>> keys,
+                                                                         String projection, Map<String, String> names) {
+        return getAsync(client, table, keys, projection, names, false);
+    }
+
+    static CompletableFuture<List<Map<String, AttributeValue>>> getAsync(DynamoDbAsyncClient client, String table,
+                                                                         List<Map<String, AttributeValue>> keys,
+                                                                         String projection, Map<String, String> names,
+                                                                         boolean consistentRead) {
+        List<Map<String, AttributeValue>> found = new ArrayList<>();
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += GET_LIMIT) {
+            calls.add(getAsync(client, table, Map.of(table,
+                    request(keys.subList(from, Math.min(from + GET_LIMIT, keys.size())), projection, names,
+                            consistentRead)),
+                    found, 1));
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).thenApply(v -> found);
+    }
+
+    private static CompletableFuture<Void> getAsync(DynamoDbAsyncClient client, String table,
+                                                    Map<String, KeysAndAttributes> pending,
+                                                    List<Map<String, AttributeValue>> found, int attempt) {
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return after(attempt, "BatchGetItem", table, pending)
+                .thenCompose(v -> client.batchGetItem(BatchGetItemRequest.builder().requestItems(pending).build()))
+                .thenCompose(response -> {
+                    synchronized (found) {
+                        found.addAll(response.responses().getOrDefault(table, List.of()));
+                    }
+                    return getAsync(client, table,
+                            response.hasUnprocessedKeys() ? response.unprocessedKeys() : Map.of(), found, attempt + 1);
+                });
+    }
+
+    // Sleeps before the given attempt, or throws if there are no attempts left
+    private static void backOff(int attempt, String operation, String table, Map<String, ?> pending) {
+        checkAttempts(attempt, operation, table, pending);
+        try {
+            Thread.sleep(delayMs(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted retrying " + operation + " on " + table, e);
+        }
+    }
+
+    private static CompletableFuture<Void> after(int attempt, String operation, String table, Map<String, ?> pending) {
+        if (attempt == 1) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            checkAttempts(attempt, operation, table, pending);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(delayMs(attempt), TimeUnit.MILLISECONDS));
+    }
+
+    private static void checkAttempts(int attempt, String operation, String table, Map<String, ?> pending) {
+        if (attempt > MAX_ATTEMPTS) {
+            int left = pending.values().stream().mapToInt(v -> keysOf(v).size()).sum();
+            throw new IllegalStateException(operation + " on " + table + " still had " + left
+                    + " unprocessed requests after " + MAX_ATTEMPTS + " attempts");
+        }
+    }
+
+    private static Collection<?> keysOf(Object pending) {
+        return pending instanceof KeysAndAttributes keys ? keys.keys() : (Collection<?>) pending;
+    }
+
+    /**
+     * A random delay before {@code attempt} (2 or later) of up to
+     * {@code BASE_DELAY_MS * 2^(attempt - 2)}, capped at {@code MAX_DELAY_MS}.
+     */
+    static long delayMs(int attempt) {
+        long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt - 2, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static KeysAndAttributes request(List<Map<String, AttributeValue>> keys,
+                                             String projection, Map<String, String> names,
+                                             boolean consistentRead) {
+        return KeysAndAttributes.builder()
+                .keys(keys)
+                .projectionExpression(projection)
+                .expressionAttributeNames(names)
+                .consistentRead(consistentRead)
+                .build();
+    }
+}
@@ -0,0 +1,206 @@
+package io.github.drompincen.archviz.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Flows too large to inline in a diagram item ({@code <diagrams table>-chunks},
+ * keyed on id and part). A chunked diagram item carries no {@code flow}; it
+ * names the chunk revision and count instead, and its chunks are written in
+ * the same transaction. Each save uses a new revision, so a reader never
+ * mixes chunks from two saves; the previous revision's chunks are deleted
+ * afterwards. Chunks are read consistently, but a reader holding an item
+ * that has since been replaced can still find its chunks gone; it gets a
+ * {@link MissingChunkException} and should read the item again.
+ */
+final class DynamoChunkTable {
+
+    static final String SUFFIX = "-chunks";
+
+    // Attributes of the diagram item
+    static final String REVISION = "flowRevision";
+    static final String CHUNKS = "flowChunks";
+
+    // Leaves room under the 400 KB item limit for the other attributes
+    static final int INLINE_LIMIT = 350_000;
+    static final int CHUNK_BYTES = 350_000;
+    // TransactWriteItems carries at most 4 MB, including the diagram item
+    static final int MAX_CHUNKS = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(DynamoChunkTable.class);
+
+    private final DynamoDbClient client;
+    private final DynamoDbAsyncClient asyncClient;
+    private final String tableName;
+
+    /**
+     * @param asyncClient client for the {@code *Async} methods; may be null if they are not used
+     */
+    DynamoChunkTable(DynamoDbClient client, DynamoDbAsyncClient asyncClient, String diagramsTable) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.tableName = diagramsTable + SUFFIX;
+    }
+
+    void ensureExists() {
+        try {
+            client.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+        } catch (ResourceNotFoundException e) {
+            log.info("DynamoDB table '{}' not found, creating...", tableName);
+            client.createTable(CreateTableRequest.builder()
+                    .tableName(tableName)
+                    .keySchema(
+                            KeySchemaElement.builder().attributeName("id").keyType(KeyType.HASH).build(),
+                            KeySchemaElement.builder().attributeName("part").keyType(KeyType.RANGE).build())
+                    .attributeDefinitions(
+                            AttributeDefinition.builder().attributeName("id").attributeType(ScalarAttributeType.S).build(),
+                            AttributeDefinition.builder().attributeName("part").attributeType(ScalarAttributeType.S).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            client.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+            log.info("DynamoDB table '{}' created successfully", tableName);
+        }
+    }
+
+    /**
+     * Puts for the chunks of {@code flow} under {@code revision}, to go in the
+     * same transaction as the diagram item; also sets the item's chunk
+     * attributes.
+     *
+     * @throws IllegalArgumentException if the flow needs more than {@link #MAX_CHUNKS}
+     */
+    List<TransactWriteItem> writes(Map<String, AttributeValue> diagramItem, String revision, byte[] flow) {
+        String id = diagramItem.get("id").s();
+        int count = (flow.length + CHUNK_BYTES - 1) / CHUNK_BYTES;
+        if (count > MAX_CHUNKS) {
+            throw new IllegalArgumentException("Flow of diagram " + id + " is " + flow.length
+                    + " bytes compressed; at most " + (long) MAX_CHUNKS * CHUNK_BYTES + " can be stored");
+        }
+        List<TransactWriteItem> writes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> chunk = new HashMap<>(key(id, revision, i));
+            byte[] data = Arrays.copyOfRange(flow, i * CHUNK_BYTES, Math.min((i + 1) * CHUNK_BYTES, flow.length));
+            chunk.put("data", AttributeValue.builder().b(SdkBytes.fromByteArray(data)).build());
+            writes.add(TransactWriteItem.builder()
+                    .put(Put.builder().tableName(tableName).item(chunk).build())
+                    .build());
+        }
+        diagramItem.put(REVISION, AttributeValue.builder().s(revision).build());
+        diagramItem.put(CHUNKS, AttributeValue.builder().n(String.valueOf(count)).build());
+        return writes;
+    }
+
+    /**
+     * The chunked flow of {@code diagramItem}, fetched in a single
+     * consistent BatchGetItem and reassembled in order.
+     *
+     * @throws MissingChunkException if a chunk of the item's revision is gone
+     */
+    byte[] read(Map<String, AttributeValue> diagramItem) {
+        return assemble(diagramItem, DynamoBatches.get(client, tableName, keys(diagramItem), null, null, true));
+    }
+
+    CompletableFuture<byte[]> readAsync(Map<String, AttributeValue> diagramItem) {
+        return DynamoBatches.getAsync(asyncClient, tableName, keys(diagramItem), null, null, true)
+                .thenApply(chunks -> assemble(diagramItem, chunks));
+    }
+
+    /**
+     * Whether {@code a} and {@code b} refer to the same chunks; false if
+     * either is inline.
+     */
+    static boolean sameRevision(Map<String, AttributeValue> a, Map<String, AttributeValue> b) {
+        return isChunked(a) && isChunked(b) && a.get(REVISION).s().equals(b.get(REVISION).s());
+    }
+
+    /**
+     * Deletes the chunks {@code diagramItem} referred to, if it was chunked.
+     */
+    void delete(Map<String, AttributeValue> diagramItem) {
+        if (isChunked(diagramItem)) {
+            DynamoBatches.write(client, tableName, deletes(diagramItem));
+        }
+    }
+
+    CompletableFuture<Void> deleteAsync(Map<String, AttributeValue> diagramItem) {
+        return isChunked(diagramItem)
+                ? DynamoBatches.writeAsync(asyncClient, tableName, deletes(diagramItem))
+                : CompletableFuture.completedFuture(null);
+    }
+
+    private static boolean isChunked(Map<String, AttributeValue> diagramItem) {
+        return diagramItem != null && diagramItem.containsKey(REVISION);
+    }
+
+    private static List<Map<String, AttributeValue>> keys(Map<String, AttributeValue> diagramItem) {
+        String id = diagramItem.get("id").s();
+        String revision = diagramItem.get(REVISION).s();
+        int count = Integer.parseInt(diagramItem.get(CHUNKS).n());
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(key(id, revision, i));
+        }
+        return keys;
+    }
+
+    private static List<WriteRequest> deletes(Map<String, AttributeValue> diagramItem) {
+        List<WriteRequest> deletes = new ArrayList<>();
+        for (Map<String, AttributeValue> key : keys(diagramItem)) {
+            deletes.add(WriteRequest.builder()
+                    .deleteRequest(DeleteRequest.builder().key(key).build())
+                    .build());
+        }
+        return deletes;
+    }
+
+    private static byte[] assemble(Map<String, AttributeValue> diagramItem, List<Map<String, AttributeValue>> chunks) {
+        String id = diagramItem.get("id").s();
+        String revision = diagramItem.get(REVISION).s();
+        int count = Integer.parseInt(diagramItem.get(CHUNKS).n());
+        Map<String, byte[]> parts = new HashMap<>();
+        for (Map<String, AttributeValue> chunk : chunks) {
+            parts.put(chunk.get("part").s(), chunk.get("data").b().asByteArray());
+        }
+        ByteArrayOutputStream flow = new ByteArrayOutputStream(count * CHUNK_BYTES);
+        for (int i = 0; i < count; i++) {
+            byte[] part = parts.get(part(revision, i));
+            if (part == null) {
+                throw new MissingChunkException("Chunk " + i + " of diagram " + id + " is missing");
+            }
+            flow.writeBytes(part);
+        }
+        return flow.toByteArray();
+    }
+
+    private static Map<String, AttributeValue> key(String id, String revision, int index) {
+        return Map.of("id", AttributeValue.builder().s(id).build(),
+                "part", AttributeValue.builder().s(part(revision, index)).build());
+    }
+
+    private static String part(String revision, int index) {
+        return revision + "#" + index;
+    }
+
+    /**
+     * A chunk of the revision an item named could not be found, usually
+     * because a later save or a delete removed it.
+     */
+    static final class MissingChunkException extends IllegalStateException {
+
+        MissingChunkException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,33 +1,117 @@
 package io.github.drompincen.archviz.repository;
 
+import io.github.drompincen.archviz.filter.DiagramFilter;
+import io.github.drompincen.archviz.index.StatsIndex;
 import io.github.drompincen.archviz.model.Diagram;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramStats;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class DynamoDiagramRepository implements DiagramRepository {
+public class DynamoDiagramRepository implements DiagramRepository, AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(DynamoDiagramRepository.class);
 
+    /** Everything a listing needs; notably not {@code flow}. */
+    static final List<String> SUMMARY_ATTRIBUTES = List.of("id", "title", "description", "tags", "version", "source",
+            DynamoFilterTranslator.NODE_COUNT, DynamoFilterTranslator.NODE_TYPE_COUNTS,
+            DynamoFilterTranslator.CONNECTION_COUNT, DynamoFilterTranslator.PHASE_COUNT,
+            DynamoFilterTranslator.FLOW_COUNT, DynamoFilterTranslator.ZONE_TYPES, DynamoFilterTranslator.HAS_STORY);
+    // What cleaning up after an overwrite needs of the previous item
+    private static final String PREVIOUS_PROJECTION = "id, tags, " + DynamoChunkTable.REVISION + ", "
+            + DynamoChunkTable.CHUNKS;
+    /** Everything an update may change; the rest is fixed at creation. */
+    private static final List<String> UPDATED_ATTRIBUTES = List.of("title", "description", "tags", "updatedAt",
+            FlowCodec.FLOW, FlowCodec.CODEC, DynamoChunkTable.REVISION, DynamoChunkTable.CHUNKS,
+            DynamoFilterTranslator.NODE_COUNT, DynamoFilterTranslator.NODE_TYPES, DynamoFilterTranslator.NODE_TYPE_COUNTS,
+            DynamoFilterTranslator.CONNECTION_COUNT, DynamoFilterTranslator.PHASE_COUNT,
+            DynamoFilterTranslator.FLOW_COUNT, DynamoFilterTranslator.ZONE_TYPES, DynamoFilterTranslator.HAS_STORY);
+    // Placeholders throughout, since several of these are reserved words
+    // Reads of a chunked item whose chunks a concurrent save removed, and saves that lost a race
+    private static final int CHUNK_READ_ATTEMPTS = 3;
+    private static final int CHUNKED_SAVE_ATTEMPTS = 5;
+    private static final Map<String, String> SUMMARY_NAMES = SUMMARY_ATTRIBUTES.stream()
+            .collect(Collectors.toUnmodifiableMap(a -> "#p_" + a, a -> a));
+    private static final String SUMMARY_PROJECTION = SUMMARY_ATTRIBUTES.stream()
+            .map(a -> "#p_" + a)
+            .collect(Collectors.joining(", "));
+
     private final DynamoDbClient client;
+    // Null unless the non-blocking calls are wanted
+    private final DynamoDbAsyncClient asyncClient;
     private final String tableName;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int scanSegments;
+    // Shared by all full-table reads, so concurrent scans queue rather than multiply threads
+    private final ExecutorService scanExecutor;
+    private final DynamoTagTable tagTable;
+    private final DynamoChunkTable chunkTable;
+    private final FlowCodec flowCodec = new FlowCodec(new ObjectMapper());
 
     public DynamoDiagramRepository(DynamoDbClient client, String tableName) {
+        this(client, tableName, 1);
+    }
+
+    /**
+     * @param scanSegments parallel scan segments used by {@link #findAll} and
+     *                     {@link #streamAll}; 1 scans sequentially
+     */
+    public DynamoDiagramRepository(DynamoDbClient client, String tableName, int scanSegments) {
+        this(client, null, tableName, scanSegments);
+    }
+
+    /**
+     * With an {@code asyncClient}, {@link #findByIdAsync}, {@link #saveAsync}
+     * and {@link #findSummaryPageAsync} use it and never block the caller;
+     * everything else, including table setup, uses {@code client}.
+     */
+    public DynamoDiagramRepository(DynamoDbClient client, DynamoDbAsyncClient asyncClient, String tableName,
+                                   int scanSegments) {
         this.client = client;
+        this.asyncClient = asyncClient;
         this.tableName = tableName;
+        this.scanSegments = Math.max(scanSegments, 1);
+        this.scanExecutor = this.scanSegments > 1 ? Executors.newFixedThreadPool(this.scanSegments, scanThreads()) : null;
+        this.tagTable = new DynamoTagTable(client, asyncClient, tableName);
+        this.chunkTable = new DynamoChunkTable(client, asyncClient, tableName);
         ensureTableExists();
     }
 
+    private static ThreadFactory scanThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "dynamo-scan-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public void close() {
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+        }
+    }
+
     private void ensureTableExists() {
         try {
             client.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
@@ -51,63 +135,866 @@ public class DynamoDiagramRepository implements DiagramRepository {
                     DescribeTableRequest.builder().tableName(tableName).build());
             log.info("DynamoDB table '{}' created successfully", tableName);
         }
+        tagTable.ensureExists();
+        if (!tagTable.isBackfilled()) {
+            backfillTags();
+            tagTable.markBackfilled();
+        }
+        chunkTable.ensureExists();
+    }
+
+    // Diagrams saved before the tag table existed, or while a backfill was cut short, may lack rows
+    private void backfillTags() {
+        ScanRequest request = ScanRequest.builder()
+                .tableName(tableName)
+                .projectionExpression("id, tags")
+                .build();
+        int count = 0;
+        try (Stream<Map<String, AttributeValue>> items = sequentialScan(request)) {
+            for (Iterator<Map<String, AttributeValue>> it = items.iterator(); it.hasNext(); ) {
+                Map<String, AttributeValue> item = it.next();
+                List<String> tags = tagsOf(item);
+                if (!tags.isEmpty()) {
+                    tagTable.add(item.get("id").s(), tags);
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            log.info("Backfilled tags of {} diagrams into '{}'", count, tagTable.tableName());
+        }
     }
 
+    /**
+     * A flow that compresses to more than {@link DynamoChunkTable#INLINE_LIMIT}
+     * bytes is split into chunks written in one transaction with the item;
+     * anything smaller is a single PutItem. The transaction is conditioned on
+     * the chunk revision read before it, so of two racing saves the loser
+     * reads again rather than leave the winner's chunks behind.
+     *
+     * @throws IllegalArgumentException if the flow is too large even for chunking
+     */
     @Override
     public Diagram save(Diagram diagram) {
         Map<String, AttributeValue> item = toItem(diagram);
-        client.putItem(PutItemRequest.builder()
+        byte[] flow = diagram.getFlow() != null ? flowCodec.compress(diagram.getFlow()) : null;
+        List<String> tags = tagsOf(item);
+        tagTable.add(diagram.getId(), tags);
+        Map<String, AttributeValue> previous;
+        if (isInline(flow)) {
+            previous = client.putItem(putRequest(item, flow)).attributes();
+        } else {
+            previous = writeChunked(item, flow);
+        }
+        tagTable.remove(diagram.getId(), dropped(previous, tags));
+        chunkTable.delete(previous);
+        return diagram;
+    }
+
+    @Override
+    public CompletableFuture<Diagram> saveAsync(Diagram diagram) {
+        if (asyncClient == null) {
+            return DiagramRepository.super.saveAsync(diagram);
+        }
+        Map<String, AttributeValue> item = toItem(diagram);
+        byte[] flow = diagram.getFlow() != null ? flowCodec.compress(diagram.getFlow()) : null;
+        List<String> tags = tagsOf(item);
+        return tagTable.addAsync(diagram.getId(), tags)
+                .thenCompose(v -> writeAsync(item, flow))
+                .thenCompose((Map<String, AttributeValue> previous) -> CompletableFuture.allOf(
+                        tagTable.removeAsync(diagram.getId(), dropped(previous, tags)),
+                        chunkTable.deleteAsync(previous)))
+                .thenApply(v -> diagram);
+    }
+
+    // Completes with the item it replaced
+    private CompletableFuture<Map<String, AttributeValue>> writeAsync(Map<String, AttributeValue> item, byte[] flow) {
+        if (isInline(flow)) {
+            return asyncClient.putItem(putRequest(item, flow)).thenApply(PutItemResponse::attributes);
+        }
+        return writeChunkedAsync(item, flow, 1);
+    }
+
+    // Transactions cannot return the old item, so it is read first for cleanup; returns it
+    private Map<String, AttributeValue> writeChunked(Map<String, AttributeValue> item, byte[] flow) {
+        for (int attempt = 1; ; attempt++) {
+            Map<String, AttributeValue> previous = client.getItem(previousRequest(item.get("id").s())).item();
+            try {
+                client.transactWriteItems(chunkedRequest(item, flow, previous));
+                return previous;
+            } catch (TransactionCanceledException e) {
+                if (!conditionFailed(e) || attempt == CHUNKED_SAVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<Map<String, AttributeValue>> writeChunkedAsync(Map<String, AttributeValue> item,
+                                                                           byte[] flow, int attempt) {
+        return asyncClient.getItem(previousRequest(item.get("id").s())).thenCompose(response -> asyncClient
+                .transactWriteItems(chunkedRequest(item, flow, response.item()))
+                .thenApply(r -> response.item())
+                .exceptionallyCompose(e -> unwrap(e) instanceof TransactionCanceledException
+                        && conditionFailed((TransactionCanceledException) unwrap(e))
+                        && attempt < CHUNKED_SAVE_ATTEMPTS
+                        ? writeChunkedAsync(item, flow, attempt + 1)
+                        : CompletableFuture.failedFuture(e)));
+    }
+
+    /**
+     * Inline items go out in BatchWriteItem calls of
+     * {@value DynamoBatches#WRITE_LIMIT}. Batch writes cannot return the
+     * items they replace, so the previous tags and chunk revisions are read
+     * first, in BatchGetItem calls. Tag rows of the whole group share
+     * BatchWriteItem calls too. Diagrams whose flow needs chunking are saved
+     * one at a time.
+     */
+    @Override
+    public void saveAll(Collection<Diagram> diagrams) {
+        Map<String, Map<String, AttributeValue>> items = new LinkedHashMap<>();
+        for (Diagram diagram : diagrams) {
+            byte[] flow = diagram.getFlow() != null ? flowCodec.compress(diagram.getFlow()) : null;
+            if (!isInline(flow)) {
+                save(diagram);
+                continue;
+            }
+            Map<String, AttributeValue> item = toItem(diagram);
+            if (flow != null) {
+                flowCodec.write(flow, item);
+            }
+            items.put(diagram.getId(), item);
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<String, Map<String, AttributeValue>> previous = new HashMap<>();
+        for (Map<String, AttributeValue> item : DynamoBatches.get(client, tableName, keys(List.copyOf(items.keySet())),
+                PREVIOUS_PROJECTION, null, true)) {
+            previous.put(item.get("id").s(), item);
+        }
+        List<WriteRequest> puts = new ArrayList<>();
+        Map<String, List<String>> added = new HashMap<>();
+        Map<String, List<String>> removed = new HashMap<>();
+        items.forEach((id, item) -> {
+            added.put(id, tagsOf(item));
+            removed.put(id, dropped(previous.get(id), tagsOf(item)));
+            puts.add(WriteRequest.builder()
+                    .putRequest(PutRequest.builder().item(item).build())
+                    .build());
+        });
+        tagTable.addAll(added);
+        DynamoBatches.write(client, tableName, puts);
+        tagTable.removeAll(removed);
+        for (Map<String, AttributeValue> item : previous.values()) {
+            chunkTable.delete(item);
+        }
+    }
+
+    private static boolean isInline(byte[] flow) {
+        return flow == null || flow.length <= DynamoChunkTable.INLINE_LIMIT;
+    }
+
+    private PutItemRequest putRequest(Map<String, AttributeValue> item, byte[] flow) {
+        if (flow != null) {
+            flowCodec.write(flow, item);
+        }
+        return PutItemRequest.builder()
                 .tableName(tableName)
                 .item(item)
+                .returnValues(ReturnValue.ALL_OLD)
+                .build();
+    }
+
+    private GetItemRequest previousRequest(String id) {
+        return GetItemRequest.builder()
+                .tableName(tableName)
+                .key(key(id))
+                .projectionExpression(PREVIOUS_PROJECTION)
+                .consistentRead(true)
+                .build();
+    }
+
+    // The put only succeeds if the item still has the chunk revision, or the absence of one, seen in previous
+    private TransactWriteItemsRequest chunkedRequest(Map<String, AttributeValue> item, byte[] flow,
+                                                     Map<String, AttributeValue> previous) {
+        item.put(FlowCodec.CODEC, AttributeValue.builder().s(FlowCodec.GZIP).build());
+        List<TransactWriteItem> writes = chunkTable.writes(item, UUID.randomUUID().toString(), flow);
+        Put.Builder put = Put.builder().tableName(tableName).item(item);
+        if (previous == null || previous.isEmpty()) {
+            put.conditionExpression("attribute_not_exists(id)");
+        } else if (previous.containsKey(DynamoChunkTable.REVISION)) {
+            put.conditionExpression("#c_revision = :c_revision")
+                    .expressionAttributeNames(Map.of("#c_revision", DynamoChunkTable.REVISION))
+                    .expressionAttributeValues(Map.of(":c_revision", previous.get(DynamoChunkTable.REVISION)));
+        } else {
+            put.conditionExpression("attribute_exists(id) AND attribute_not_exists(#c_revision)")
+                    .expressionAttributeNames(Map.of("#c_revision", DynamoChunkTable.REVISION));
+        }
+        writes.add(TransactWriteItem.builder()
+                .put(put.build())
                 .build());
-        return diagram;
+        return TransactWriteItemsRequest.builder()
+                .transactItems(writes)
+                .build();
+    }
+
+    private static List<String> dropped(Map<String, AttributeValue> previous, List<String> tags) {
+        List<String> dropped = new ArrayList<>(tagsOf(previous));
+        dropped.removeAll(tags);
+        return dropped;
+    }
+
+    /**
+     * One UpdateItem that sets the changed attributes, adds 1 to
+     * {@code version} and is conditioned on the expected version. It returns
+     * the previous item (ALL_OLD rather than ALL_NEW), because cleaning up
+     * replaced tags and flow chunks needs the old values and the new ones
+     * follow from {@code changes}. A flow that needs chunking is written in a
+     * transaction instead, after reading the item, conditioned on the version
+     * read; that path can report a conflict even without an expected version.
+     */
+    @Override
+    public Optional<Diagram> update(String id, DiagramChanges changes, Optional<Integer> expectedVersion) {
+        Map<String, AttributeValue> values = toItem(changed(id, changes));
+        byte[] flow = changes.flow() != null ? flowCodec.compress(changes.flow()) : null;
+        if (changes.tags() != null) {
+            tagTable.add(id, changes.tags());
+        }
+        Map<String, AttributeValue> previous;
+        if (isInline(flow)) {
+            try {
+                previous = client.updateItem(updateRequest(values, flow, changes, expectedVersion)).attributes();
+            } catch (ConditionalCheckFailedException e) {
+                previous = missingOrConflict(id, expectedVersion, client.getItem(currentRequest(id)).item());
+            }
+        } else {
+            previous = client.getItem(currentRequest(id)).item();
+            Optional<Integer> at = readVersion(id, previous, expectedVersion);
+            if (at.isPresent()) {
+                try {
+                    client.transactWriteItems(chunkedUpdate(values, flow, changes, at));
+                } catch (TransactionCanceledException e) {
+                    if (!conditionFailed(e)) {
+                        throw e;
+                    }
+                    previous = missingOrConflict(id, at, client.getItem(currentRequest(id)).item());
+                }
+            } else {
+                previous = null;
+            }
+        }
+        if (previous == null) {
+            return Optional.empty();
+        }
+        tagTable.remove(id, droppedByUpdate(previous, changes));
+        chunkTable.delete(previous);
+        return Optional.of(changes.applyTo(fields(previous)));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Diagram>> updateAsync(String id, DiagramChanges changes,
+                                                            Optional<Integer> expectedVersion) {
+        if (asyncClient == null) {
+            return DiagramRepository.super.updateAsync(id, changes, expectedVersion);
+        }
+        Map<String, AttributeValue> values = toItem(changed(id, changes));
+        byte[] flow = changes.flow() != null ? flowCodec.compress(changes.flow()) : null;
+        CompletableFuture<Void> tagged = changes.tags() != null
+                ? tagTable.addAsync(id, changes.tags())
+                : CompletableFuture.completedFuture(null);
+        return tagged
+                .thenCompose(v -> isInline(flow)
+                        ? updateItemAsync(id, values, flow, changes, expectedVersion)
+                        : chunkedUpdateAsync(id, values, flow, changes, expectedVersion))
+                .thenCompose((Map<String, AttributeValue> previous) -> previous == null
+                        ? CompletableFuture.completedFuture(Optional.<Diagram>empty())
+                        : CompletableFuture.allOf(
+                                        tagTable.removeAsync(id, droppedByUpdate(previous, changes)),
+                                        chunkTable.deleteAsync(previous))
+                                .thenApply(v -> Optional.of(changes.applyTo(fields(previous)))));
+    }
+
+    // Completes with the previous item, or null if there is none
+    private CompletableFuture<Map<String, AttributeValue>> updateItemAsync(String id, Map<String, AttributeValue> values,
+                                                                         byte[] flow, DiagramChanges changes,
+                                                                         Optional<Integer> expectedVersion) {
+        return asyncClient.updateItem(updateRequest(values, flow, changes, expectedVersion))
+                .thenApply(UpdateItemResponse::attributes)
+                .exceptionallyCompose(e -> unwrap(e) instanceof ConditionalCheckFailedException
+                        ? asyncClient.getItem(currentRequest(id))
+                                .thenApply(r -> missingOrConflict(id, expectedVersion, r.item()))
+                        : CompletableFuture.failedFuture(e));
+    }
+
+    private CompletableFuture<Map<String, AttributeValue>> chunkedUpdateAsync(String id, Map<String, AttributeValue> values,
+                                                                            byte[] flow, DiagramChanges changes,
+                                                                            Optional<Integer> expectedVersion) {
+        return asyncClient.getItem(currentRequest(id)).thenCompose(response -> {
+            Map<String, AttributeValue> previous = response.item();
+            Optional<Integer> at = readVersion(id, previous, expectedVersion);
+            if (at.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return asyncClient.transactWriteItems(chunkedUpdate(values, flow, changes, at))
+                    .thenApply(r -> previous)
+                    .exceptionallyCompose(e -> unwrap(e) instanceof TransactionCanceledException
+                            && conditionFailed((TransactionCanceledException) unwrap(e))
+                            ? asyncClient.getItem(currentRequest(id))
+                                    .thenApply(r -> missingOrConflict(id, at, r.item()))
+                            : CompletableFuture.failedFuture(e));
+        });
+    }
+
+    // The attributes an update writes, as toItem would lay them out
+    private static Diagram changed(String id, DiagramChanges changes) {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle(changes.title());
+        d.setDescription(changes.description());
+        d.setTags(changes.tags());
+        d.setUpdatedAt(changes.updatedAt());
+        d.setFlow(changes.flow());
+        return d;
+    }
+
+    private GetItemRequest currentRequest(String id) {
+        return GetItemRequest.builder()
+                .tableName(tableName)
+                .key(key(id))
+                .consistentRead(true)
+                .build();
+    }
+
+    /**
+     * The version a chunked update must find: {@code expectedVersion}, or
+     * else the one read. Empty if the diagram does not exist.
+     *
+     * @throws VersionConflictException if the read version is not the expected one
+     */
+    private static Optional<Integer> readVersion(String id, Map<String, AttributeValue> current,
+                                                 Optional<Integer> expectedVersion) {
+        if (current == null || current.isEmpty()) {
+            return Optional.empty();
+        }
+        int version = versionOf(current);
+        if (expectedVersion.isPresent() && expectedVersion.get() != version) {
+            throw new VersionConflictException(id, expectedVersion.get(), version);
+        }
+        return Optional.of(version);
+    }
+
+    /**
+     * After a failed update condition: null if the diagram is gone.
+     *
+     * @throws VersionConflictException if it is at a version other than expected
+     */
+    private static Map<String, AttributeValue> missingOrConflict(String id, Optional<Integer> expectedVersion,
+                                                                 Map<String, AttributeValue> current) {
+        if (expectedVersion.isPresent() && current != null && !current.isEmpty()) {
+            throw new VersionConflictException(id, expectedVersion.get(), versionOf(current));
+        }
+        return null;
+    }
+
+    private static int versionOf(Map<String, AttributeValue> item) {
+        AttributeValue version = item.get("version");
+        return version != null ? Integer.parseInt(version.n()) : 0;
+    }
+
+    private static boolean conditionFailed(TransactionCanceledException e) {
+        if (!e.hasCancellationReasons()) {
+            return false;
+        }
+        for (CancellationReason reason : e.cancellationReasons()) {
+            if ("ConditionalCheckFailed".equals(reason.code())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static List<String> droppedByUpdate(Map<String, AttributeValue> previous, DiagramChanges changes) {
+        return changes.tags() != null ? dropped(previous, changes.tags()) : List.of();
+    }
+
+    private UpdateItemRequest updateRequest(Map<String, AttributeValue> values, byte[] flow, DiagramChanges changes,
+                                            Optional<Integer> expectedVersion) {
+        if (flow != null) {
+            flowCodec.write(flow, values);
+        }
+        UpdateExpression update = updateExpression(values, changes, expectedVersion);
+        return UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(key(values.get("id").s()))
+                .updateExpression(update.expression())
+                .conditionExpression(update.condition())
+                .expressionAttributeNames(update.names())
+                .expressionAttributeValues(update.values())
+                .returnValues(ReturnValue.ALL_OLD)
+                .build();
+    }
+
+    private TransactWriteItemsRequest chunkedUpdate(Map<String, AttributeValue> values, byte[] flow,
+                                                    DiagramChanges changes, Optional<Integer> version) {
+        values.put(FlowCodec.CODEC, AttributeValue.builder().s(FlowCodec.GZIP).build());
+        List<TransactWriteItem> writes = chunkTable.writes(values, UUID.randomUUID().toString(), flow);
+        UpdateExpression update = updateExpression(values, changes, version);
+        writes.add(TransactWriteItem.builder()
+                .update(Update.builder()
+                        .tableName(tableName)
+                        .key(key(values.get("id").s()))
+                        .updateExpression(update.expression())
+                        .conditionExpression(update.condition())
+                        .expressionAttributeNames(update.names())
+                        .expressionAttributeValues(update.values())
+                        .build())
+                .build());
+        return TransactWriteItemsRequest.builder()
+                .transactItems(writes)
+                .build();
+    }
+
+    private record UpdateExpression(String expression, String condition, Map<String, String> names,
+                                    Map<String, AttributeValue> values) {
+    }
+
+    /**
+     * SET of each {@link #UPDATED_ATTRIBUTES} present in {@code values} and
+     * REMOVE of the rest (leaving tags alone when the update keeps them), ADD
+     * of 1 to the version, on condition the item exists at
+     * {@code expectedVersion} if given.
+     */
+    private static UpdateExpression updateExpression(Map<String, AttributeValue> values, DiagramChanges changes,
+                                                     Optional<Integer> expectedVersion) {
+        List<String> sets = new ArrayList<>();
+        List<String> removes = new ArrayList<>();
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> exprValues = new HashMap<>();
+        for (String attribute : UPDATED_ATTRIBUTES) {
+            if (attribute.equals("tags") && changes.tags() == null) {
+                continue;
+            }
+            names.put("#u_" + attribute, attribute);
+            if (values.containsKey(attribute)) {
+                sets.add("#u_" + attribute + " = :u_" + attribute);
+                exprValues.put(":u_" + attribute, values.get(attribute));
+            } else {
+                removes.add("#u_" + attribute);
+            }
+        }
+        names.put("#u_id", "id");
+        names.put("#u_version", "version");
+        exprValues.put(":u_one", number(1));
+        String expression = "SET " + String.join(", ", sets)
+                + (removes.isEmpty() ? "" : " REMOVE " + String.join(", ", removes))
+                + " ADD #u_version :u_one";
+        String condition = "attribute_exists(#u_id)";
+        if (expectedVersion.isPresent()) {
+            condition += " AND #u_version = :u_expected";
+            exprValues.put(":u_expected", number(expectedVersion.get()));
+        }
+        return new UpdateExpression(expression, condition, names, exprValues);
     }
 
     @Override
     public Optional<Diagram> findById(String id) {
         GetItemResponse response = client.getItem(GetItemRequest.builder()
                 .tableName(tableName)
-                .key(Map.of("id", AttributeValue.builder().s(id).build()))
+                .key(key(id))
                 .build());
         if (!response.hasItem() || response.item().isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(toDiagram(response.item()));
+        return toDiagram(response.item());
+    }
+
+    @Override
+    public CompletableFuture<Optional<Diagram>> findByIdAsync(String id) {
+        if (asyncClient == null) {
+            return DiagramRepository.super.findByIdAsync(id);
+        }
+        return asyncClient.getItem(GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(key(id))
+                        .build())
+                .thenCompose(response -> {
+                    if (!response.hasItem() || response.item().isEmpty()) {
+                        return CompletableFuture.completedFuture(Optional.empty());
+                    }
+                    return toDiagramAsync(response.item(), 1);
+                });
+    }
+
+    /**
+     * BatchGetItem calls of {@value DynamoBatches#GET_LIMIT} keys, retried
+     * until no key is left unprocessed.
+     */
+    @Override
+    public List<Diagram> findAllById(Collection<String> ids) {
+        return DynamoBatches.get(client, tableName, keys(List.copyOf(new LinkedHashSet<>(ids))), null, null).stream()
+                .flatMap(item -> toDiagram(item).stream())
+                .toList();
+    }
+
+    @Override
+    public CompletableFuture<List<Diagram>> findAllByIdAsync(Collection<String> ids) {
+        if (asyncClient == null) {
+            return DiagramRepository.super.findAllByIdAsync(ids);
+        }
+        return DynamoBatches.getAsync(asyncClient, tableName, keys(List.copyOf(new LinkedHashSet<>(ids))), null, null)
+                .thenCompose(this::diagramsAsync);
+    }
+
+    // Reads the chunks of chunked items concurrently
+    private CompletableFuture<List<Diagram>> diagramsAsync(List<Map<String, AttributeValue>> items) {
+        List<CompletableFuture<Optional<Diagram>>> diagrams = new ArrayList<>();
+        for (Map<String, AttributeValue> item : items) {
+            diagrams.add(toDiagramAsync(item, 1));
+        }
+        return CompletableFuture.allOf(diagrams.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> diagrams.stream().flatMap(d -> d.join().stream()).toList());
     }
 
     @Override
     public List<Diagram> findAll(Optional<String> tag, Optional<String> query) {
+        return findAll(tag, query, Optional.empty());
+    }
+
+    /**
+     * A tag is looked up in the tag table (see {@link DynamoTagTable}).
+     * Without one, the supported parts of {@code filter} are pushed into the
+     * scan's filter expression (see {@link DynamoFilterTranslator}) and the
+     * whole table is read, following {@code LastEvaluatedKey}, across the
+     * configured number of scan segments.
+     */
+    @Override
+    public List<Diagram> findAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        try (Stream<Diagram> diagrams = streamAll(tag, query, filter)) {
+            return diagrams.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reads only the summary attributes (see {@link #SUMMARY_ATTRIBUTES}), so
+     * flows are neither transferred nor parsed. Stats come from the
+     * attributes written alongside each item; they are null on items saved
+     * before those existed.
+     */
+    @Override
+    public List<DiagramSummary> findSummaries(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        try (Stream<Map<String, AttributeValue>> items = items(tag, query, filter, true)) {
+            List<DiagramSummary> summaries = new ArrayList<>();
+            for (Iterator<Map<String, AttributeValue>> it = items.iterator(); it.hasNext(); ) {
+                summaries.add(toSummary(it.next()));
+            }
+            return summaries;
+        }
+    }
+
+    /**
+     * With a tag, the ids come from the tag table and the diagrams are
+     * batch-read by key; nothing else is scanned. Otherwise, with more than
+     * one scan segment, the segments are scanned in parallel and their pages
+     * merged into the stream as they arrive, in no particular order. Close
+     * the stream if it is not consumed to the end.
+     */
+    @Override
+    public Stream<Diagram> streamAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        return items(tag, query, filter, false).flatMap(item -> toDiagram(item).stream());
+    }
+
+    private Stream<Map<String, AttributeValue>> items(Optional<String> tag, Optional<String> query,
+                                                      Optional<DiagramFilter> filter, boolean summaryOnly) {
+        if (tag.isPresent()) {
+            return byTag(tag.get(), tagTable.ids(tag.get()), query, summaryOnly).stream();
+        }
+        ScanRequest request = scanRequest(query, filter, summaryOnly).build();
+        if (scanExecutor == null) {
+            return sequentialScan(request);
+        }
+        ParallelScan scan = new ParallelScan(client, request, scanSegments, scanExecutor);
+        return stream(scan).onClose(scan::close);
+    }
+
+    private Stream<Map<String, AttributeValue>> sequentialScan(ScanRequest request) {
+        Iterator<Map<String, AttributeValue>> items = new Iterator<>() {
+            private Iterator<Map<String, AttributeValue>> page = Collections.emptyIterator();
+            private Map<String, AttributeValue> startKey;
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !last) {
+                    ScanResponse response = client.scan(request.toBuilder().exclusiveStartKey(startKey).build());
+                    page = response.items().iterator();
+                    startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                            ? response.lastEvaluatedKey() : null;
+                    last = startKey == null;
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public Map<String, AttributeValue> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return stream(items);
+    }
+
+    private static Stream<Map<String, AttributeValue>> stream(Iterator<Map<String, AttributeValue>> items) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(items, Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Page<Diagram> findPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                  Optional<String> after, int limit) {
+        Page<Map<String, AttributeValue>> page = itemPage(tag, query, filter, after, limit, false);
+        List<Diagram> diagrams = new ArrayList<>();
+        for (Map<String, AttributeValue> item : page.items()) {
+            toDiagram(item).ifPresent(diagrams::add);
+        }
+        return new Page<>(diagrams, page.next());
+    }
+
+    @Override
+    public Page<DiagramSummary> findSummaryPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                                Optional<String> after, int limit) {
+        Page<Map<String, AttributeValue>> page = itemPage(tag, query, filter, after, limit, true);
+        return summaries(page);
+    }
+
+    @Override
+    public CompletableFuture<Page<DiagramSummary>> findSummaryPageAsync(Optional<String> tag, Optional<String> query,
+                                                                       Optional<DiagramFilter> filter,
+                                                                       Optional<String> after, int limit) {
+        if (asyncClient == null) {
+            return DiagramRepository.super.findSummaryPageAsync(tag, query, filter, after, limit);
+        }
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        CompletableFuture<Page<Map<String, AttributeValue>>> page = tag.isPresent()
+                ? itemPageByTagAsync(tag.get(), query, after, limit, items)
+                : itemPageAsync(scanRequest(query, filter, true).limit(limit),
+                        after.isEmpty() ? null : key(after.get()), limit, items);
+        return page.thenApply(DynamoDiagramRepository::summaries);
+    }
+
+    private static Page<DiagramSummary> summaries(Page<Map<String, AttributeValue>> page) {
+        List<DiagramSummary> summaries = new ArrayList<>();
+        for (Map<String, AttributeValue> item : page.items()) {
+            summaries.add(toSummary(item));
+        }
+        return new Page<>(summaries, page.next());
+    }
+
+    /**
+     * Scans from {@code after} until {@code limit} items have matched. Each
+     * scan call evaluates at most {@code limit} items, so a page never holds
+     * more than twice that; {@code next} is the id to use as
+     * {@code ExclusiveStartKey}, either the last returned item or the last one
+     * the scan evaluated.
+     */
+    private Page<Map<String, AttributeValue>> itemPage(Optional<String> tag, Optional<String> query,
+                                                       Optional<DiagramFilter> filter, Optional<String> after,
+                                                       int limit, boolean summaryOnly) {
+        if (tag.isPresent()) {
+            return itemPageByTag(tag.get(), query, after, limit, summaryOnly);
+        }
+        ScanRequest.Builder scanBuilder = scanRequest(query, filter, summaryOnly).limit(limit);
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Map<String, AttributeValue> startKey = after.map(DynamoDiagramRepository::key).orElse(null);
+        while (true) {
+            ScanResponse response = client.scan(scanBuilder.exclusiveStartKey(startKey).build());
+            items.addAll(response.items());
+            startKey = lastKey(response);
+            Page<Map<String, AttributeValue>> page = completePage(items, startKey, limit);
+            if (page != null) {
+                return page;
+            }
+        }
+    }
+
+    private CompletableFuture<Page<Map<String, AttributeValue>>> itemPageAsync(ScanRequest.Builder scanBuilder,
+                                                                             Map<String, AttributeValue> startKey,
+                                                                             int limit,
+                                                                             List<Map<String, AttributeValue>> items) {
+        return asyncClient.scan(scanBuilder.exclusiveStartKey(startKey).build()).thenCompose(response -> {
+            items.addAll(response.items());
+            Map<String, AttributeValue> next = lastKey(response);
+            Page<Map<String, AttributeValue>> page = completePage(items, next, limit);
+            return page != null
+                    ? CompletableFuture.completedFuture(page)
+                    : itemPageAsync(scanBuilder, next, limit, items);
+        });
+    }
+
+    private static Map<String, AttributeValue> lastKey(ScanResponse response) {
+        return response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                ? response.lastEvaluatedKey() : null;
+    }
+
+    // The page once the scan has gathered enough, or null to scan on from startKey
+    private static Page<Map<String, AttributeValue>> completePage(List<Map<String, AttributeValue>> items,
+                                                                  Map<String, AttributeValue> startKey, int limit) {
+        if (items.size() > limit) {
+            List<Map<String, AttributeValue>> kept = new ArrayList<>(items.subList(0, limit));
+            return new Page<>(kept, kept.get(limit - 1).get("id").s());
+        }
+        if (startKey == null) {
+            return new Page<>(items, null);
+        }
+        if (items.size() == limit) {
+            return new Page<>(items, startKey.get("id").s());
+        }
+        return null;
+    }
+
+    // Tag rows are in id order, so the resume point is simply the last id read
+    private Page<Map<String, AttributeValue>> itemPageByTag(String tag, Optional<String> query, Optional<String> after,
+                                                            int limit, boolean summaryOnly) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        while (true) {
+            Page<String> ids = tagTable.ids(tag, after, limit - items.size());
+            items.addAll(byTag(tag, ids.items(), query, summaryOnly));
+            if (ids.next() == null) {
+                return new Page<>(items, null);
+            }
+            after = Optional.of(ids.next());
+            if (items.size() == limit) {
+                return new Page<>(items, ids.next());
+            }
+        }
+    }
+
+    private CompletableFuture<Page<Map<String, AttributeValue>>> itemPageByTagAsync(String tag, Optional<String> query,
+                                                                                  Optional<String> after, int limit,
+                                                                                  List<Map<String, AttributeValue>> items) {
+        return tagTable.idsAsync(tag, after, limit - items.size()).thenCompose(ids -> DynamoBatches
+                .getAsync(asyncClient, tableName, keys(ids.items()), SUMMARY_PROJECTION, SUMMARY_NAMES)
+                .thenCompose(found -> {
+                    items.addAll(tagged(tag, ids.items(), found, query));
+                    if (ids.next() == null) {
+                        return CompletableFuture.completedFuture(new Page<>(items, null));
+                    }
+                    if (items.size() == limit) {
+                        return CompletableFuture.completedFuture(new Page<>(items, ids.next()));
+                    }
+                    return itemPageByTagAsync(tag, query, Optional.of(ids.next()), limit, items);
+                }));
+    }
+
+    /**
+     * Batch-reads {@code ids} and keeps, in the given order, those still
+     * tagged {@code tag} and matching {@code query} the way the scan's
+     * {@code contains} would. Ids whose diagram is gone or no longer carries
+     * the tag are skipped but left in the tag table (see {@link DynamoTagTable}).
+     */
+    private List<Map<String, AttributeValue>> byTag(String tag, List<String> ids, Optional<String> query,
+                                                    boolean summaryOnly) {
+        List<Map<String, AttributeValue>> found = summaryOnly
+                ? DynamoBatches.get(client, tableName, keys(ids), SUMMARY_PROJECTION, SUMMARY_NAMES)
+                : DynamoBatches.get(client, tableName, keys(ids), null, null);
+        return tagged(tag, ids, found, query);
+    }
+
+    // The matches among found, in ids order
+    private static List<Map<String, AttributeValue>> tagged(String tag, List<String> ids,
+                                                            List<Map<String, AttributeValue>> found,
+                                                            Optional<String> query) {
+        Map<String, Map<String, AttributeValue>> items = new HashMap<>();
+        for (Map<String, AttributeValue> item : found) {
+            items.put(item.get("id").s(), item);
+        }
+        List<Map<String, AttributeValue>> matches = new ArrayList<>();
+        for (String id : ids) {
+            Map<String, AttributeValue> item = items.get(id);
+            if (item == null || !tagsOf(item).contains(tag)) {
+                log.debug("Skipping stale tag row {} -> {}", tag, id);
+            } else if (query.isEmpty() || containsText(item, "title", query.get())
+                    || containsText(item, "description", query.get())) {
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+
+    private static List<Map<String, AttributeValue>> keys(List<String> ids) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (String id : ids) {
+            keys.add(key(id));
+        }
+        return keys;
+    }
+
+    private static boolean containsText(Map<String, AttributeValue> item, String attribute, String text) {
+        AttributeValue value = item.get(attribute);
+        return value != null && value.s() != null && value.s().contains(text);
+    }
+
+    private static List<String> tagsOf(Map<String, AttributeValue> item) {
+        AttributeValue tags = item == null ? null : item.get("tags");
+        if (tags == null || !tags.hasL()) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>();
+        for (AttributeValue t : tags.l()) {
+            values.add(t.s());
+        }
+        return values;
+    }
+
+    private ScanRequest.Builder scanRequest(Optional<String> query, Optional<DiagramFilter> filter, boolean summaryOnly) {
         ScanRequest.Builder scanBuilder = ScanRequest.builder().tableName(tableName);
 
         List<String> filterParts = new ArrayList<>();
         Map<String, AttributeValue> exprValues = new HashMap<>();
-
-        if (tag.isPresent()) {
-            filterParts.add("contains(tags, :tagVal)");
-            exprValues.put(":tagVal", AttributeValue.builder().s(tag.get()).build());
+        Map<String, String> exprNames = new HashMap<>();
+        if (summaryOnly) {
+            scanBuilder.projectionExpression(SUMMARY_PROJECTION);
+            exprNames.putAll(SUMMARY_NAMES);
         }
+
         if (query.isPresent()) {
             filterParts.add("(contains(title, :qVal) OR contains(description, :qVal))");
             exprValues.put(":qVal", AttributeValue.builder().s(query.get()).build());
         }
+        filter.flatMap(f -> DynamoFilterTranslator.translate(f.expression())).ifPresent(pushdown -> {
+            filterParts.add(pushdown.expression());
+            exprNames.putAll(pushdown.names());
+            exprValues.putAll(pushdown.values());
+        });
 
         if (!filterParts.isEmpty()) {
             scanBuilder.filterExpression(String.join(" AND ", filterParts));
             scanBuilder.expressionAttributeValues(exprValues);
         }
+        if (!exprNames.isEmpty()) {
+            scanBuilder.expressionAttributeNames(exprNames);
+        }
+        return scanBuilder;
+    }
 
-        ScanResponse response = client.scan(scanBuilder.build());
-        return response.items().stream()
-                .map(this::toDiagram)
-                .collect(Collectors.toList());
+    private static Map<String, AttributeValue> key(String id) {
+        return Map.of("id", AttributeValue.builder().s(id).build());
     }
 
     @Override
     public void deleteById(String id) {
-        client.deleteItem(DeleteItemRequest.builder()
+        DeleteItemResponse response = client.deleteItem(DeleteItemRequest.builder()
                 .tableName(tableName)
-                .key(Map.of("id", AttributeValue.builder().s(id).build()))
+                .key(key(id))
+                .returnValues(ReturnValue.ALL_OLD)
                 .build());
+        tagTable.remove(id, tagsOf(response.attributes()));
+        chunkTable.delete(response.attributes());
     }
 
     private Map<String, AttributeValue> toItem(Diagram d) {
@@ -137,19 +1024,127 @@ public class DynamoDiagramRepository implements DiagramRepository {
         if (d.getUpdatedAt() != null) {
             item.put("updatedAt", AttributeValue.builder().s(d.getUpdatedAt().toString()).build());
         }
-        if (d.getFlow() != null) {
+        putStats(item, StatsIndex.compute(d.getFlow()));
+        return item;
+    }
+
+    // Denormalised so listing filters can be evaluated by the scan
+    private static void putStats(Map<String, AttributeValue> item, DiagramStats stats) {
+        item.put(DynamoFilterTranslator.NODE_COUNT, number(stats.nodes()));
+        item.put(DynamoFilterTranslator.CONNECTION_COUNT, number(stats.connections()));
+        item.put(DynamoFilterTranslator.PHASE_COUNT, number(stats.phases()));
+        item.put(DynamoFilterTranslator.FLOW_COUNT, number(stats.flows()));
+        item.put(DynamoFilterTranslator.HAS_STORY, AttributeValue.builder().bool(stats.story()).build());
+        if (!stats.nodesByType().isEmpty()) {
+            item.put(DynamoFilterTranslator.NODE_TYPES, AttributeValue.builder().ss(stats.nodesByType().keySet()).build());
+        }
+        Map<String, AttributeValue> typeCounts = new HashMap<>();
+        stats.nodesByType().forEach((type, count) -> typeCounts.put(type, number(count)));
+        item.put(DynamoFilterTranslator.NODE_TYPE_COUNTS, AttributeValue.builder().m(typeCounts).build());
+        if (!stats.zoneTypes().isEmpty()) {
+            item.put(DynamoFilterTranslator.ZONE_TYPES, AttributeValue.builder().ss(stats.zoneTypes()).build());
+        }
+    }
+
+    private static AttributeValue number(int n) {
+        return AttributeValue.builder().n(String.valueOf(n)).build();
+    }
+
+    private static DiagramSummary toSummary(Map<String, AttributeValue> item) {
+        return new DiagramSummary(
+                item.get("id").s(),
+                item.containsKey("title") ? item.get("title").s() : null,
+                item.containsKey("description") ? item.get("description").s() : null,
+                tagsOf(item),
+                item.containsKey("version") ? Integer.parseInt(item.get("version").n()) : 0,
+                item.containsKey("source") ? item.get("source").s() : null,
+                statsOf(item));
+    }
+
+    private static DiagramStats statsOf(Map<String, AttributeValue> item) {
+        AttributeValue typeCounts = item.get(DynamoFilterTranslator.NODE_TYPE_COUNTS);
+        if (!item.containsKey(DynamoFilterTranslator.NODE_COUNT) || typeCounts == null || !typeCounts.hasM()) {
+            return null;
+        }
+        Map<String, Integer> nodesByType = new TreeMap<>();
+        typeCounts.m().forEach((type, count) -> nodesByType.put(type, Integer.parseInt(count.n())));
+        AttributeValue zoneTypes = item.get(DynamoFilterTranslator.ZONE_TYPES);
+        return new DiagramStats(
+                intOf(item, DynamoFilterTranslator.NODE_COUNT),
+                nodesByType,
+                intOf(item, DynamoFilterTranslator.CONNECTION_COUNT),
+                intOf(item, DynamoFilterTranslator.PHASE_COUNT),
+                intOf(item, DynamoFilterTranslator.FLOW_COUNT),
+                zoneTypes != null && zoneTypes.hasSs() ? List.copyOf(new TreeSet<>(zoneTypes.ss())) : List.of(),
+                item.containsKey(DynamoFilterTranslator.HAS_STORY) && Boolean.TRUE.equals(item.get(DynamoFilterTranslator.HAS_STORY).bool()));
+    }
+
+    private static int intOf(Map<String, AttributeValue> item, String attribute) {
+        AttributeValue value = item.get(attribute);
+        return value != null && value.n() != null ? Integer.parseInt(value.n()) : 0;
+    }
+
+    /**
+     * Reads the chunks of a chunked item. If a save or delete since the item
+     * was read has removed them, the item is read again and the current one
+     * used; empty if it has been deleted.
+     */
+    private Optional<Diagram> toDiagram(Map<String, AttributeValue> item) {
+        for (int attempt = 1; item.containsKey(DynamoChunkTable.CHUNKS); attempt++) {
             try {
-                item.put("flow", AttributeValue.builder()
-                        .s(objectMapper.writeValueAsString(d.getFlow()))
-                        .build());
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException("Failed to serialize flow JSON", e);
+                return Optional.of(toDiagram(item, chunkTable.read(item)));
+            } catch (DynamoChunkTable.MissingChunkException e) {
+                if (attempt == CHUNK_READ_ATTEMPTS) {
+                    throw e;
+                }
+                Map<String, AttributeValue> current = client.getItem(currentRequest(item.get("id").s())).item();
+                if (current == null || current.isEmpty()) {
+                    return Optional.empty();
+                }
+                if (DynamoChunkTable.sameRevision(item, current)) {
+                    throw e;
+                }
+                item = current;
             }
         }
-        return item;
+        return Optional.of(toDiagram(item, null));
     }
 
-    private Diagram toDiagram(Map<String, AttributeValue> item) {
+    private CompletableFuture<Optional<Diagram>> toDiagramAsync(Map<String, AttributeValue> item, int attempt) {
+        if (!item.containsKey(DynamoChunkTable.CHUNKS)) {
+            return CompletableFuture.completedFuture(Optional.of(toDiagram(item, null)));
+        }
+        return chunkTable.readAsync(item)
+                .thenApply(flow -> Optional.of(toDiagram(item, flow)))
+                .exceptionallyCompose(e -> !(unwrap(e) instanceof DynamoChunkTable.MissingChunkException)
+                        || attempt == CHUNK_READ_ATTEMPTS
+                        ? CompletableFuture.failedFuture(e)
+                        : asyncClient.getItem(currentRequest(item.get("id").s())).thenCompose(response -> {
+                            Map<String, AttributeValue> current = response.item();
+                            if (current == null || current.isEmpty()) {
+                                return CompletableFuture.completedFuture(Optional.<Diagram>empty());
+                            }
+                            return DynamoChunkTable.sameRevision(item, current)
+                                    ? CompletableFuture.failedFuture(e)
+                                    : toDiagramAsync(current, attempt + 1);
+                        }));
+    }
+
+    /**
+     * @param chunkedFlow the item's chunks reassembled, or null if its flow is inline
+     */
+    private Diagram toDiagram(Map<String, AttributeValue> item, byte[] chunkedFlow) {
+        Diagram d = fields(item);
+        if (chunkedFlow != null) {
+            d.setFlow(flowCodec.read(item, new ByteArrayInputStream(chunkedFlow)));
+        } else {
+            d.setFlow(flowCodec.read(item));
+        }
+        return d;
+    }
+
+    // Everything but the flow
+    private static Diagram fields(Map<String, AttributeValue> item) {
         Diagram d = new Diagram();
         d.setId(item.get("id").s());
 
@@ -178,14 +1173,6 @@ public class DynamoDiagramRepository implements DiagramRepository {
         if (item.containsKey("updatedAt")) {
             d.setUpdatedAt(Instant.parse(item.get("updatedAt").s()));
         }
-        if (item.containsKey("flow")) {
-            try {
-                JsonNode flowNode = objectMapper.readTree(item.get("flow").s());
-                d.setFlow(flowNode);
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException("Failed to deserialize flow JSON", e);
-            }
-        }
         return d;
     }
 }
@@ -0,0 +1,161 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.filter.FilterExpression;
+import io.github.drompincen.archviz.filter.FilterExpression.And;
+import io.github.drompincen.archviz.filter.FilterExpression.Comparison;
+import io.github.drompincen.archviz.filter.FilterExpression.Not;
+import io.github.drompincen.archviz.filter.FilterExpression.Or;
+import io.github.drompincen.archviz.filter.FilterOp;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Turns the parts of a {@link FilterExpression} DynamoDB can evaluate into a
+ * scan {@code FilterExpression}. The result selects a superset of the matches:
+ * unsupported comparisons (substring, source) are left out, and stats
+ * comparisons also accept items written before the stats attributes existed.
+ * The caller re-applies the full filter in memory.
+ */
+final class DynamoFilterTranslator {
+
+    // Written by DynamoDiagramRepository on every save; absent on older items
+    static final String NODE_COUNT = "nodeCount";
+    static final String CONNECTION_COUNT = "connectionCount";
+    static final String PHASE_COUNT = "phaseCount";
+    static final String FLOW_COUNT = "flowCount";
+    static final String NODE_TYPES = "nodeTypes";
+    static final String NODE_TYPE_COUNTS = "nodeTypeCounts";
+    static final String ZONE_TYPES = "zoneTypes";
+    static final String HAS_STORY = "hasStory";
+
+    record Pushdown(String expression, Map<String, String> names, Map<String, AttributeValue> values) {}
+
+    /**
+     * @param exact whether the expression selects exactly the matches, which
+     *              is required before it can be negated
+     */
+    private record Part(String expression, boolean exact) {}
+
+    private final Map<String, String> names = new HashMap<>();
+    private final Map<String, AttributeValue> values = new HashMap<>();
+
+    private DynamoFilterTranslator() {}
+
+    static Optional<Pushdown> translate(FilterExpression expression) {
+        DynamoFilterTranslator t = new DynamoFilterTranslator();
+        Part part = t.part(expression);
+        return part == null
+                ? Optional.empty()
+                : Optional.of(new Pushdown(part.expression(), Map.copyOf(t.names), Map.copyOf(t.values)));
+    }
+
+    private Part part(FilterExpression e) {
+        if (e instanceof And and) {
+            List<Part> parts = new ArrayList<>();
+            for (FilterExpression term : and.terms()) {
+                Part p = part(term);
+                if (p != null) parts.add(p);
+            }
+            if (parts.isEmpty()) return null;
+            boolean exact = parts.size() == and.terms().size() && parts.stream().allMatch(Part::exact);
+            return new Part(join(parts, " AND "), exact);
+        }
+        if (e instanceof Or or) {
+            List<Part> parts = new ArrayList<>();
+            for (FilterExpression term : or.terms()) {
+                Part p = part(term);
+                if (p == null) return null;
+                parts.add(p);
+            }
+            return new Part(join(parts, " OR "), parts.stream().allMatch(Part::exact));
+        }
+        if (e instanceof Not not) {
+            Part p = part(not.term());
+            return p != null && p.exact() ? new Part("NOT " + p.expression(), true) : null;
+        }
+        return comparison((Comparison) e);
+    }
+
+    private Part comparison(Comparison c) {
+        return switch (c.field()) {
+            case TAG -> new Part(membership("tags", c), true);
+            case NODE_TYPE -> stat(membership(NODE_TYPES, c));
+            case ZONE_TYPE -> stat(membership(ZONE_TYPES, c));
+            case TITLE -> c.op() == FilterOp.CONTAINS ? null : new Part(scalar("title", c, false, true), true);
+            case VERSION -> new Part(scalar("version", c, true, false), true);
+            case NODES -> stat(scalar(NODE_COUNT, c, true, false));
+            case CONNECTIONS -> stat(scalar(CONNECTION_COUNT, c, true, false));
+            case PHASES -> stat(scalar(PHASE_COUNT, c, true, false));
+            case FLOWS -> stat(scalar(FLOW_COUNT, c, true, false));
+            case STORY -> {
+                boolean expected = Boolean.parseBoolean(c.values().get(0)) == (c.op() == FilterOp.EQ);
+                yield stat(name(HAS_STORY) + " = " + value(AttributeValue.builder().bool(expected).build()));
+            }
+            // The listing reports every stored diagram as source=db, whatever the item holds
+            case SOURCE -> null;
+        };
+    }
+
+    private Part stat(String condition) {
+        return new Part("(attribute_not_exists(" + name(NODE_COUNT) + ") OR " + condition + ")", false);
+    }
+
+    private String membership(String attribute, Comparison c) {
+        String n = name(attribute);
+        List<String> conditions = new ArrayList<>();
+        for (String v : c.values()) {
+            conditions.add("contains(" + n + ", " + value(AttributeValue.builder().s(v).build()) + ")");
+        }
+        return switch (c.op()) {
+            case NE -> "NOT " + conditions.get(0);
+            case IN -> "(" + String.join(" OR ", conditions) + ")";
+            default -> conditions.get(0);
+        };
+    }
+
+    private String scalar(String attribute, Comparison c, boolean numeric, boolean optional) {
+        String n = name(attribute);
+        List<String> placeholders = new ArrayList<>();
+        for (String v : c.values()) {
+            placeholders.add(value(numeric ? AttributeValue.builder().n(v).build() : AttributeValue.builder().s(v).build()));
+        }
+        String condition = switch (c.op()) {
+            case IN -> n + " IN (" + String.join(", ", placeholders) + ")";
+            case NE -> n + " <> " + placeholders.get(0);
+            case LT -> n + " < " + placeholders.get(0);
+            case LE -> n + " <= " + placeholders.get(0);
+            case GT -> n + " > " + placeholders.get(0);
+            case GE -> n + " >= " + placeholders.get(0);
+            default -> n + " = " + placeholders.get(0);
+        };
+        // A missing attribute never compares unequal in DynamoDB, but a null title does in memory
+        if (optional && c.op() == FilterOp.NE) {
+            return "(attribute_not_exists(" + n + ") OR " + condition + ")";
+        }
+        return condition;
+    }
+
+    private String name(String attribute) {
+        String placeholder = "#f_" + attribute;
+        names.put(placeholder, attribute);
+        return placeholder;
+    }
+
+    private String value(AttributeValue v) {
+        String placeholder = ":f" + values.size();
+        values.put(placeholder, v);
+        return placeholder;
+    }
+
+    private static String join(List<Part> parts, String separator) {
+        return parts.size() == 1
+                ? parts.get(0).expression()
+                : "(" + parts.stream().map(Part::expression).collect(Collectors.joining(separator)) + ")";
+    }
+}
@@ -0,0 +1,185 @@
+package io.github.drompincen.archviz.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every DynamoDB call made by a client it is registered on, sync or
+ * async, under {@code archviz.dynamodb.*}:
+ * <ul>
+ *   <li>{@code latency}: a timer per operation, table and outcome, retries included</li>
+ *   <li>{@code capacity}: consumed capacity units per call, by operation, table and read/write</li>
+ *   <li>{@code items}: items scanned and items returned by Scan and Query, by table</li>
+ *   <li>{@code retries}: attempts beyond the first, by operation</li>
+ * </ul>
+ * Consumed capacity is only reported when asked for, so requests that do not
+ * set {@code ReturnConsumedCapacity} are sent with {@code TOTAL}. A scan whose
+ * scanned count is far above its returned count is paying for a filter the
+ * key schema cannot serve.
+ */
+public class DynamoMetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START = new ExecutionAttribute<>("ArchvizDynamoStart");
+    private static final ExecutionAttribute<Integer> ATTEMPTS = new ExecutionAttribute<>("ArchvizDynamoAttempts");
+    private static final Set<String> READS = Set.of("GetItem", "BatchGetItem", "Query", "Scan", "TransactGetItems");
+
+    private final MeterRegistry meterRegistry;
+
+    public DynamoMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attributes) {
+        attributes.putAttribute(START, System.nanoTime());
+        attributes.putAttribute(ATTEMPTS, 0);
+    }
+
+    @Override
+    public SdkRequest modifyRequest(Context.ModifyRequest context, ExecutionAttributes attributes) {
+        return withConsumedCapacity(context.request());
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes attributes) {
+        Integer attempts = attributes.getAttribute(ATTEMPTS);
+        attributes.putAttribute(ATTEMPTS, attempts != null ? attempts + 1 : 1);
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes attributes) {
+        String operation = operationOf(attributes);
+        String table = tableOf(context.request());
+        finish(operation, table, "success", attributes);
+        SdkResponse response = context.response();
+        for (ConsumedCapacity consumed : consumedCapacity(response)) {
+            if (consumed.capacityUnits() == null) {
+                continue;
+            }
+            DistributionSummary.builder("archviz.dynamodb.capacity")
+                    .description("Capacity units consumed per DynamoDB call")
+                    .baseUnit("capacity units")
+                    .tag("operation", operation)
+                    .tag("table", consumed.tableName() != null ? consumed.tableName() : table)
+                    .tag("type", READS.contains(operation) ? "read" : "write")
+                    .register(meterRegistry)
+                    .record(consumed.capacityUnits());
+        }
+        response.getValueForField("ScannedCount", Integer.class)
+                .ifPresent(scanned -> items(operation, table, "scanned").increment(scanned));
+        response.getValueForField("Count", Integer.class)
+                .ifPresent(returned -> items(operation, table, "returned").increment(returned));
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attributes) {
+        finish(operationOf(attributes), tableOf(context.request()), "error", attributes);
+    }
+
+    private void finish(String operation, String table, String outcome, ExecutionAttributes attributes) {
+        Long start = attributes.getAttribute(START);
+        if (start != null) {
+            Timer.builder("archviz.dynamodb.latency")
+                    .description("DynamoDB call latency, retries included")
+                    .tag("operation", operation)
+                    .tag("table", table)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        Integer attempts = attributes.getAttribute(ATTEMPTS);
+        if (attempts != null && attempts > 1) {
+            Counter.builder("archviz.dynamodb.retries")
+                    .description("DynamoDB call attempts beyond the first")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .increment(attempts - 1);
+        }
+    }
+
+    private Counter items(String operation, String table, String kind) {
+        return Counter.builder("archviz.dynamodb.items")
+                .description("Items read by Scan and Query, before (scanned) and after (returned) filtering")
+                .tag("operation", operation)
+                .tag("table", table)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private static String operationOf(ExecutionAttributes attributes) {
+        String operation = attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return operation != null ? operation : "unknown";
+    }
+
+    // Batch and transaction calls span tables; their capacity is still tagged per table
+    private static String tableOf(SdkRequest request) {
+        return request.getValueForField("TableName", String.class).orElse("multiple");
+    }
+
+    private static List<ConsumedCapacity> consumedCapacity(SdkResponse response) {
+        Object value = response.getValueForField("ConsumedCapacity", Object.class).orElse(null);
+        List<ConsumedCapacity> consumed = new ArrayList<>();
+        if (value instanceof ConsumedCapacity single) {
+            consumed.add(single);
+        } else if (value instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof ConsumedCapacity c) {
+                    consumed.add(c);
+                }
+            }
+        }
+        return consumed;
+    }
+
+    /**
+     * {@code request} with {@code ReturnConsumedCapacity=TOTAL} if it is an
+     * operation that reports capacity and the caller did not choose a level.
+     */
+    static SdkRequest withConsumedCapacity(SdkRequest request) {
+        ReturnConsumedCapacity total = ReturnConsumedCapacity.TOTAL;
+        if (request instanceof GetItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof PutItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof UpdateItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof DeleteItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof QueryRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof ScanRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof BatchGetItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof BatchWriteItemRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        if (request instanceof TransactWriteItemsRequest r && r.returnConsumedCapacity() == null) {
+            return r.toBuilder().returnConsumedCapacity(total).build();
+        }
+        return request;
+    }
+}
@@ -0,0 +1,196 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.model.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tag adjacency table ({@code <diagrams table>-tags}, keyed on tag and id)
+ * kept next to the diagrams table, so finding the diagrams with a tag is a
+ * Query over the matching rows rather than a Scan of every diagram. Rows are
+ * added before the diagram is written and removed after, so a lookup can
+ * return stale ids but never misses one. Readers skip stale ids rather than
+ * delete them: a diagram that looks untagged to a read may be mid-save, and
+ * deleting its new row would hide it from the tag for good.
+ */
+final class DynamoTagTable {
+
+    static final String SUFFIX = "-tags";
+
+    private static final Logger log = LoggerFactory.getLogger(DynamoTagTable.class);
+
+    // Marker row written once every diagram's rows are in; no diagram has this id
+    private static final Map<String, AttributeValue> BACKFILLED = key("\u0000backfilled", "\u0000");
+
+    private final DynamoDbClient client;
+    private final DynamoDbAsyncClient asyncClient;
+    private final String tableName;
+
+    /**
+     * @param asyncClient client for the {@code *Async} methods; may be null if they are not used
+     */
+    DynamoTagTable(DynamoDbClient client, DynamoDbAsyncClient asyncClient, String diagramsTable) {
+        this.client = client;
+        this.asyncClient = asyncClient;
+        this.tableName = diagramsTable + SUFFIX;
+    }
+
+    String tableName() { return tableName; }
+
+    void ensureExists() {
+        try {
+            client.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+        } catch (ResourceNotFoundException e) {
+            log.info("DynamoDB table '{}' not found, creating...", tableName);
+            client.createTable(CreateTableRequest.builder()
+                    .tableName(tableName)
+                    .keySchema(
+                            KeySchemaElement.builder().attributeName("tag").keyType(KeyType.HASH).build(),
+                            KeySchemaElement.builder().attributeName("id").keyType(KeyType.RANGE).build())
+                    .attributeDefinitions(
+                            AttributeDefinition.builder().attributeName("tag").attributeType(ScalarAttributeType.S).build(),
+                            AttributeDefinition.builder().attributeName("id").attributeType(ScalarAttributeType.S).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            client.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+            log.info("DynamoDB table '{}' created successfully", tableName);
+        }
+    }
+
+    /**
+     * Whether a backfill of every diagram's rows has completed. Until it has,
+     * each startup backfills again; adding rows is idempotent, so a backfill
+     * cut short is simply redone.
+     */
+    boolean isBackfilled() {
+        return client.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(BACKFILLED)
+                .consistentRead(true)
+                .build()).hasItem();
+    }
+
+    void markBackfilled() {
+        client.putItem(PutItemRequest.builder().tableName(tableName).item(BACKFILLED).build());
+    }
+
+    void add(String id, Collection<String> tags) {
+        DynamoBatches.write(client, tableName, puts(id, tags));
+    }
+
+    /**
+     * The rows of several diagrams, sharing BatchWriteItem calls rather than
+     * making at least one per diagram.
+     */
+    void addAll(Map<String, ? extends Collection<String>> tagsById) {
+        List<WriteRequest> writes = new ArrayList<>();
+        tagsById.forEach((id, tags) -> writes.addAll(puts(id, tags)));
+        DynamoBatches.write(client, tableName, writes);
+    }
+
+    CompletableFuture<Void> addAsync(String id, Collection<String> tags) {
+        return DynamoBatches.writeAsync(asyncClient, tableName, puts(id, tags));
+    }
+
+    void remove(String id, Collection<String> tags) {
+        DynamoBatches.write(client, tableName, deletes(id, tags));
+    }
+
+    void removeAll(Map<String, ? extends Collection<String>> tagsById) {
+        List<WriteRequest> writes = new ArrayList<>();
+        tagsById.forEach((id, tags) -> writes.addAll(deletes(id, tags)));
+        DynamoBatches.write(client, tableName, writes);
+    }
+
+    CompletableFuture<Void> removeAsync(String id, Collection<String> tags) {
+        return DynamoBatches.writeAsync(asyncClient, tableName, deletes(id, tags));
+    }
+
+    private static List<WriteRequest> puts(String id, Collection<String> tags) {
+        List<WriteRequest> writes = new ArrayList<>();
+        for (String tag : new LinkedHashSet<>(tags)) {
+            writes.add(WriteRequest.builder()
+                    .putRequest(PutRequest.builder().item(key(tag, id)).build())
+                    .build());
+        }
+        return writes;
+    }
+
+    private static List<WriteRequest> deletes(String id, Collection<String> tags) {
+        List<WriteRequest> writes = new ArrayList<>();
+        for (String tag : new LinkedHashSet<>(tags)) {
+            writes.add(WriteRequest.builder()
+                    .deleteRequest(DeleteRequest.builder().key(key(tag, id)).build())
+                    .build());
+        }
+        return writes;
+    }
+
+    /**
+     * Ids tagged {@code tag} after {@code after}, in id order. {@code next} is
+     * the id to resume from, or null when there are no more.
+     */
+    Page<String> ids(String tag, Optional<String> after, int limit) {
+        return page(client.query(query(tag, after, limit)));
+    }
+
+    CompletableFuture<Page<String>> idsAsync(String tag, Optional<String> after, int limit) {
+        return asyncClient.query(query(tag, after, limit)).thenApply(DynamoTagTable::page);
+    }
+
+    private QueryRequest query(String tag, Optional<String> after, int limit) {
+        return query(tag)
+                .limit(limit)
+                .exclusiveStartKey(after.isEmpty() ? null : key(tag, after.get()))
+                .build();
+    }
+
+    private static Page<String> page(QueryResponse response) {
+        List<String> ids = new ArrayList<>();
+        for (Map<String, AttributeValue> row : response.items()) {
+            ids.add(row.get("id").s());
+        }
+        String next = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                ? response.lastEvaluatedKey().get("id").s() : null;
+        return new Page<>(ids, next);
+    }
+
+    List<String> ids(String tag) {
+        List<String> ids = new ArrayList<>();
+        Map<String, AttributeValue> startKey = null;
+        do {
+            QueryResponse response = client.query(query(tag).exclusiveStartKey(startKey).build());
+            for (Map<String, AttributeValue> row : response.items()) {
+                ids.add(row.get("id").s());
+            }
+            startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey() : null;
+        } while (startKey != null);
+        return ids;
+    }
+
+    private QueryRequest.Builder query(String tag) {
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#tag = :tag")
+                .expressionAttributeNames(Map.of("#tag", "tag"))
+                .expressionAttributeValues(Map.of(":tag", AttributeValue.builder().s(tag).build()))
+                .projectionExpression("id");
+    }
+
+    private static Map<String, AttributeValue> key(String tag, String id) {
+        return Map.of("tag", AttributeValue.builder().s(tag).build(),
+                "id", AttributeValue.builder().s(id).build());
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.drompincen.archviz.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Storage format of a diagram's flow. Flows are written as gzip-compressed
+ * JSON in a Binary {@code flow} attribute, with {@code flowCodec} naming the
+ * codec. Items written before that hold the JSON as a String and have no
+ * codec attribute; they are still read, and rewritten compressed on their
+ * next save. Flows too large for the item are kept in
+ * {@link DynamoChunkTable} instead of {@code flow}, with the same codec.
+ */
+final class FlowCodec {
+
+    static final String FLOW = "flow";
+    static final String CODEC = "flowCodec";
+    static final String GZIP = "gzip";
+
+    private final ObjectMapper objectMapper;
+
+    FlowCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param compressed output of {@link #compress(JsonNode)}
+     */
+    void write(byte[] compressed, Map<String, AttributeValue> item) {
+        item.put(FLOW, AttributeValue.builder().b(SdkBytes.fromByteArray(compressed)).build());
+        item.put(CODEC, AttributeValue.builder().s(GZIP).build());
+    }
+
+    /**
+     * @return the flow, or null if the item has none
+     */
+    JsonNode read(Map<String, AttributeValue> item) {
+        AttributeValue flow = item.get(FLOW);
+        if (flow == null) {
+            return null;
+        }
+        if (!item.containsKey(CODEC)) {
+            try {
+                return objectMapper.readTree(flow.s());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to deserialize flow JSON", e);
+            }
+        }
+        return read(item, flow.b().asInputStream());
+    }
+
+    /**
+     * Decodes {@code compressed} with the codec named on {@code item}; for
+     * flows stored outside the item.
+     */
+    JsonNode read(Map<String, AttributeValue> item, InputStream compressed) {
+        AttributeValue codec = item.get(CODEC);
+        if (codec == null || !GZIP.equals(codec.s())) {
+            throw new IllegalStateException("Unknown flow codec '" + (codec != null ? codec.s() : null)
+                    + "' on diagram " + item.get("id").s());
+        }
+        try {
+            return decompress(compressed);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to deserialize flow JSON", e);
+        }
+    }
+
+    byte[] compress(JsonNode flow) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(objectMapper.writeValueAsBytes(flow));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to serialize flow JSON", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    JsonNode decompress(InputStream compressed) throws IOException {
+        try (InputStream json = new GZIPInputStream(compressed)) {
+            return objectMapper.readTree(json);
+        }
+    }
+}
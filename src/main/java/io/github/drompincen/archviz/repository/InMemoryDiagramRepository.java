@@ -1,23 +1,68 @@
 package io.github.drompincen.archviz.repository;
 
+import io.github.drompincen.archviz.filter.DiagramFilter;
+import io.github.drompincen.archviz.index.StatsIndex;
+import io.github.drompincen.archviz.index.TrigramIndex;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
 
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Map-backed repository with an inverted tag index and a title/description
+ * {@link TrigramIndex}, so tag and query filters cost O(matches) instead of a
+ * scan over every stored diagram. Writes update the store and the indexes under
+ * one lock; reads are lock-free and re-check each candidate. Diagrams are kept
+ * in id order so an unfiltered page is read straight from the resume point.
+ * A page holds only diagrams that pass the listing filter, tested against
+ * stats computed from the flow.
+ */
 public class InMemoryDiagramRepository implements DiagramRepository {
 
-    private final Map<String, Diagram> store = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, Diagram> store = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> idsByTag = new ConcurrentHashMap<>();
+    // Tags as they were when indexed; callers may mutate a saved Diagram in place
+    private final Map<String, List<String>> indexedTags = new ConcurrentHashMap<>();
+    private final TrigramIndex textIndex = new TrigramIndex();
+    private final Object writeLock = new Object();
 
     @Override
     public Diagram save(Diagram diagram) {
-        store.put(diagram.getId(), diagram);
+        synchronized (writeLock) {
+            unindexTags(diagram.getId());
+            store.put(diagram.getId(), diagram);
+            indexTags(diagram);
+            textIndex.put(diagram.getId(), diagram.getTitle(), diagram.getDescription());
+        }
         return diagram;
     }
 
+    @Override
+    public Optional<Diagram> update(String id, DiagramChanges changes, Optional<Integer> expectedVersion) {
+        synchronized (writeLock) {
+            Diagram current = store.get(id);
+            if (current == null) {
+                return Optional.empty();
+            }
+            if (expectedVersion.isPresent() && expectedVersion.get() != current.getVersion()) {
+                throw new VersionConflictException(id, expectedVersion.get(), current.getVersion());
+            }
+            return Optional.of(save(changes.applyTo(current)));
+        }
+    }
+
     @Override
     public Optional<Diagram> findById(String id) {
         return Optional.ofNullable(store.get(id));
@@ -25,18 +70,96 @@ public class InMemoryDiagramRepository implements DiagramRepository {
 
     @Override
     public List<Diagram> findAll(Optional<String> tag, Optional<String> query) {
-        return store.values().stream()
+        return matching(tag, query).collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<Diagram> findPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                  Optional<String> after, int limit) {
+        Stream<Diagram> rest;
+        if (tag.isEmpty() && query.isEmpty()) {
+            rest = (after.isPresent() ? store.tailMap(after.get(), false) : store).values().stream();
+        } else {
+            rest = matching(tag, query)
+                    .filter(d -> after.map(a -> d.getId().compareTo(a) > 0).orElse(true))
+                    .sorted(Comparator.comparing(Diagram::getId));
+        }
+        if (filter.isPresent()) {
+            DiagramFilter f = filter.get();
+            rest = rest.filter(d -> f.test(summarize(d)));
+        }
+        List<Diagram> items = rest.limit(limit + 1L).collect(Collectors.toList());
+        if (items.size() <= limit) {
+            return new Page<>(items, null);
+        }
+        items = items.subList(0, limit);
+        return new Page<>(items, items.get(limit - 1).getId());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        synchronized (writeLock) {
+            unindexTags(id);
+            textIndex.remove(id);
+            store.remove(id);
+        }
+    }
+
+    // Everything here is stored, so its source is "db" whatever the diagram says
+    private static DiagramSummary summarize(Diagram d) {
+        return new DiagramSummary(d.getId(), d.getTitle(), d.getDescription(), d.getTags(), d.getVersion(), "db",
+                StatsIndex.compute(d.getFlow()));
+    }
+
+    private Stream<Diagram> matching(Optional<String> tag, Optional<String> query) {
+        return candidates(tag, query)
                 .filter(d -> tag.map(t -> d.getTags() != null && d.getTags().contains(t)).orElse(true))
                 .filter(d -> query.map(q -> {
                     String lower = q.toLowerCase();
                     return (d.getTitle() != null && d.getTitle().toLowerCase().contains(lower))
                             || (d.getDescription() != null && d.getDescription().toLowerCase().contains(lower));
-                }).orElse(true))
-                .collect(Collectors.toList());
+                }).orElse(true));
     }
 
-    @Override
-    public void deleteById(String id) {
-        store.remove(id);
+    private Stream<Diagram> candidates(Optional<String> tag, Optional<String> query) {
+        Collection<String> ids;
+        if (query.isPresent()) {
+            Set<String> hits = textIndex.search(query.get());
+            if (tag.isPresent()) {
+                hits.retainAll(idsByTag.getOrDefault(tag.get(), Set.of()));
+            }
+            ids = hits;
+        } else if (tag.isPresent()) {
+            ids = idsByTag.getOrDefault(tag.get(), Set.of());
+        } else {
+            return store.values().stream();
+        }
+        return ids.stream()
+                .map(store::get)
+                .filter(d -> d != null);
+    }
+
+    private void indexTags(Diagram diagram) {
+        if (diagram.getTags() == null || diagram.getTags().isEmpty()) {
+            return;
+        }
+        List<String> tags = List.copyOf(diagram.getTags());
+        indexedTags.put(diagram.getId(), tags);
+        for (String t : tags) {
+            idsByTag.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(diagram.getId());
+        }
+    }
+
+    private void unindexTags(String id) {
+        List<String> previous = indexedTags.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String t : previous) {
+            idsByTag.computeIfPresent(t, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
     }
 }
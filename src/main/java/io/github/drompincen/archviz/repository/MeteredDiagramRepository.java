@@ -0,0 +1,175 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.filter.DiagramFilter;
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Times every call to the delegate as {@code archviz.repository}, tagged
+ * with the method and whether it succeeded. Async calls are timed until
+ * their future completes; {@link #streamAll} until the stream is open. With
+ * the {@code archviz.dynamodb.*} metrics of {@link DynamoMetricsInterceptor}
+ * this shows which repository calls cause which DynamoDB traffic.
+ */
+public class MeteredDiagramRepository implements DiagramRepository, AutoCloseable {
+
+    private final DiagramRepository delegate;
+    private final MeterRegistry meterRegistry;
+
+    public MeteredDiagramRepository(DiagramRepository delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Diagram save(Diagram diagram) {
+        return timed("save", () -> delegate.save(diagram));
+    }
+
+    @Override
+    public void saveAll(Collection<Diagram> diagrams) {
+        timed("saveAll", () -> {
+            delegate.saveAll(diagrams);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Diagram> findById(String id) {
+        return timed("findById", () -> delegate.findById(id));
+    }
+
+    @Override
+    public List<Diagram> findAllById(Collection<String> ids) {
+        return timed("findAllById", () -> delegate.findAllById(ids));
+    }
+
+    @Override
+    public List<Diagram> findAll(Optional<String> tag, Optional<String> query) {
+        return timed("findAll", () -> delegate.findAll(tag, query));
+    }
+
+    @Override
+    public List<Diagram> findAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        return timed("findAll", () -> delegate.findAll(tag, query, filter));
+    }
+
+    @Override
+    public List<DiagramSummary> findSummaries(Optional<String> tag, Optional<String> query,
+                                              Optional<DiagramFilter> filter) {
+        return timed("findSummaries", () -> delegate.findSummaries(tag, query, filter));
+    }
+
+    @Override
+    public Page<DiagramSummary> findSummaryPage(Optional<String> tag, Optional<String> query,
+                                                Optional<DiagramFilter> filter, Optional<String> after, int limit) {
+        return timed("findSummaryPage", () -> delegate.findSummaryPage(tag, query, filter, after, limit));
+    }
+
+    @Override
+    public Stream<Diagram> streamAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        return timed("streamAll", () -> delegate.streamAll(tag, query, filter));
+    }
+
+    @Override
+    public Page<Diagram> findPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                  Optional<String> after, int limit) {
+        return timed("findPage", () -> delegate.findPage(tag, query, filter, after, limit));
+    }
+
+    @Override
+    public Optional<Diagram> update(String id, DiagramChanges changes, Optional<Integer> expectedVersion) {
+        return timed("update", () -> delegate.update(id, changes, expectedVersion));
+    }
+
+    @Override
+    public void deleteById(String id) {
+        timed("deleteById", () -> {
+            delegate.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<Diagram>> findByIdAsync(String id) {
+        return timedAsync("findById", () -> delegate.findByIdAsync(id));
+    }
+
+    @Override
+    public CompletableFuture<List<Diagram>> findAllByIdAsync(Collection<String> ids) {
+        return timedAsync("findAllById", () -> delegate.findAllByIdAsync(ids));
+    }
+
+    @Override
+    public CompletableFuture<Diagram> saveAsync(Diagram diagram) {
+        return timedAsync("save", () -> delegate.saveAsync(diagram));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Diagram>> updateAsync(String id, DiagramChanges changes,
+                                                            Optional<Integer> expectedVersion) {
+        return timedAsync("update", () -> delegate.updateAsync(id, changes, expectedVersion));
+    }
+
+    @Override
+    public CompletableFuture<Page<DiagramSummary>> findSummaryPageAsync(Optional<String> tag, Optional<String> query,
+                                                                       Optional<DiagramFilter> filter,
+                                                                       Optional<String> after, int limit) {
+        return timedAsync("findSummaryPage", () -> delegate.findSummaryPageAsync(tag, query, filter, after, limit));
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close " + delegate.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private <T> T timed(String method, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(method, outcome));
+        }
+    }
+
+    private <T> CompletableFuture<T> timedAsync(String method, Supplier<CompletableFuture<T>> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(timer(method, "error"));
+            throw e;
+        }
+        return result.whenComplete((value, e) -> sample.stop(timer(method, e == null ? "success" : "error")));
+    }
+
+    private Timer timer(String method, String outcome) {
+        return Timer.builder("archviz.repository")
+                .description("Diagram repository calls")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
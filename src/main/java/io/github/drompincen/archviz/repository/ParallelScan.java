@@ -0,0 +1,126 @@
+package io.github.drompincen.archviz.repository;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans every segment of a table on an executor and hands their pages to one
+ * consumer through a bounded queue, so only a couple of pages per segment are
+ * held while the consumer catches up. Items arrive in no particular order.
+ * {@link #close()} must be called if the consumer stops early; a worker whose
+ * page is not taken within {@link #ABANDON_AFTER_SECONDS} gives up.
+ */
+final class ParallelScan implements Iterator<Map<String, AttributeValue>>, AutoCloseable {
+
+    static final long ABANDON_AFTER_SECONDS = 60;
+
+    // items == null marks the end of a segment
+    private record Batch(List<Map<String, AttributeValue>> items, RuntimeException error) {}
+
+    private static final Batch DONE = new Batch(null, null);
+
+    private final BlockingQueue<Batch> queue;
+    private final List<Future<?>> workers = new ArrayList<>();
+    private volatile boolean closed;
+    private int running;
+    private Iterator<Map<String, AttributeValue>> current = Collections.emptyIterator();
+
+    ParallelScan(DynamoDbClient client, ScanRequest request, int segments, ExecutorService executor) {
+        this.queue = new ArrayBlockingQueue<>(segments * 2);
+        this.running = segments;
+        for (int segment = 0; segment < segments; segment++) {
+            ScanRequest segmentRequest = request.toBuilder()
+                    .segment(segment)
+                    .totalSegments(segments)
+                    .build();
+            workers.add(executor.submit(() -> run(client, segmentRequest)));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (running == 0) {
+                return false;
+            }
+            Batch batch = take();
+            if (batch.error() != null) {
+                close();
+                throw batch.error();
+            }
+            if (batch.items() == null) {
+                running--;
+            } else {
+                current = batch.items().iterator();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, AttributeValue> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Future<?> worker : workers) {
+            worker.cancel(true);
+        }
+    }
+
+    private Batch take() {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while scanning", e);
+        }
+    }
+
+    private void run(DynamoDbClient client, ScanRequest request) {
+        try {
+            Batch last;
+            try {
+                Map<String, AttributeValue> startKey = null;
+                do {
+                    ScanResponse response = client.scan(request.toBuilder().exclusiveStartKey(startKey).build());
+                    if (!response.items().isEmpty() && !offer(new Batch(response.items(), null))) {
+                        return;
+                    }
+                    startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                            ? response.lastEvaluatedKey() : null;
+                } while (startKey != null && !closed);
+                last = DONE;
+            } catch (RuntimeException e) {
+                last = new Batch(null, e);
+            }
+            offer(last);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean offer(Batch batch) throws InterruptedException {
+        return !closed && queue.offer(batch, ABANDON_AFTER_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.drompincen.archviz.repository;
+
+/**
+ * An update expected a diagram version other than the stored one, i.e.
+ * someone else saved the diagram in between.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private final int currentVersion;
+
+    public VersionConflictException(String id, int expectedVersion, int currentVersion) {
+        super("Diagram " + id + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    public int getCurrentVersion() { return currentVersion; }
+}
@@ -0,0 +1,548 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.filter.DiagramFilter;
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Queues saves and writes them to the delegate from a background thread,
+ * {@value #BATCH_SIZE} at a time through {@link DiagramRepository#saveAll}.
+ * A save waits up to {@code window} for more saves before the queue is
+ * flushed. A save to an id that is still queued replaces the queued
+ * diagram, so an editor saving every few seconds costs one write per window.
+ * <p>
+ * Reads by id see queued saves, and an update of a queued diagram is
+ * applied in the queue. Listings flush the queue first, so they also follow
+ * all earlier saves. At most {@code maxPending} ids are queued; a save of a
+ * new id waits for a flush to make room, and fails if none does in time.
+ * {@link #close} flushes what is left. Saves still queued are lost if the
+ * process dies, which is the price of acknowledging them early.
+ * <p>
+ * A group the delegate fails to write is retried one diagram at a time, so
+ * one bad diagram does not hold back the others. A diagram that fails
+ * {@value #MAX_ATTEMPTS} flushes in a row is logged, counted and moved to
+ * {@link #deadLetters()}; from then on reads see the stored diagram again.
+ * Write failures are never thrown to callers of other methods.
+ */
+public class WriteBehindDiagramRepository implements DiagramRepository, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindDiagramRepository.class);
+
+    // One BatchWriteItem call per flushed group on DynamoDB
+    static final int BATCH_SIZE = DynamoBatches.WRITE_LIMIT;
+    static final int MAX_ATTEMPTS = 3;
+    // Saves wait at most this many windows for room, and at least a second
+    private static final int SAVE_WAIT_WINDOWS = MAX_ATTEMPTS + 1;
+
+    private final DiagramRepository delegate;
+    private final long windowNanos;
+    private final long saveWaitNanos;
+    private final int maxPending;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when the queue becomes non-empty or full, or on close
+    private final Condition queued = lock.newCondition();
+    // Signalled when a flush or delete makes room
+    private final Condition drained = lock.newCondition();
+    // Saves not yet handed to the delegate, oldest first
+    private final LinkedHashMap<String, Diagram> pending = new LinkedHashMap<>();
+    // The group being written, still served to readers until the write completes
+    private Map<String, Diagram> flushing = Map.of();
+    // Failed writes per queued id, cleared by a newer save
+    private final Map<String, Integer> attempts = new HashMap<>();
+    // Saves given up on, oldest first; at most maxPending are kept
+    private final LinkedHashMap<String, Diagram> deadLetters = new LinkedHashMap<>();
+    private boolean closed;
+    // Held for a whole flush, and by deletes so a flush in progress cannot resurrect the diagram
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Thread flusher;
+
+    private final Counter saves;
+    private final Counter writes;
+    private final Counter failures;
+    private final Counter deadLettered;
+    private final Timer flushTimer;
+
+    /**
+     * @param window     how long a save may wait for others before being written
+     * @param maxPending most ids queued at once
+     */
+    public WriteBehindDiagramRepository(DiagramRepository delegate, Duration window, int maxPending,
+                                        MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.windowNanos = window.toNanos();
+        this.saveWaitNanos = Math.max(windowNanos * SAVE_WAIT_WINDOWS, Duration.ofSeconds(1).toNanos());
+        this.maxPending = Math.max(maxPending, 1);
+        this.saves = Counter.builder("archviz.writebehind.saves")
+                .description("Saves accepted into the write-behind queue")
+                .register(meterRegistry);
+        this.writes = Counter.builder("archviz.writebehind.writes")
+                .description("Diagrams written to the store by write-behind flushes")
+                .register(meterRegistry);
+        this.failures = Counter.builder("archviz.writebehind.failures")
+                .description("Write-behind flush groups that failed and were retried one diagram at a time")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("archviz.writebehind.dead.letters")
+                .description("Queued saves given up on after " + MAX_ATTEMPTS + " failed writes")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("archviz.writebehind.flush")
+                .description("Time to write one group of queued saves")
+                .register(meterRegistry);
+        Gauge.builder("archviz.writebehind.coalesce.ratio", this, WriteBehindDiagramRepository::coalesceRatio)
+                .description("Saves accepted per diagram written; above 1 when saves to the same id coalesce")
+                .register(meterRegistry);
+        Gauge.builder("archviz.writebehind.pending", this, WriteBehindDiagramRepository::pendingCount)
+                .description("Saves queued and not yet written")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::run, "diagram-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private double coalesceRatio() {
+        double written = writes.count();
+        return written == 0 ? 1 : saves.count() / written;
+    }
+
+    private double pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the queue is full and no flush makes
+     *                               room within a few windows
+     */
+    @Override
+    public Diagram save(Diagram diagram) {
+        lock.lock();
+        try {
+            long left = saveWaitNanos;
+            while (!closed && !pending.containsKey(diagram.getId()) && pending.size() >= maxPending) {
+                if (left <= 0) {
+                    throw new IllegalStateException("Write-behind queue is full; " + maxPending
+                            + " saves are waiting to be written");
+                }
+                left = drained.awaitNanos(left);
+            }
+            if (closed) {
+                throw new IllegalStateException("Write-behind repository is closed");
+            }
+            pending.put(diagram.getId(), diagram);
+            attempts.remove(diagram.getId());
+            saves.increment();
+            if (pending.size() == 1 || pending.size() >= maxPending) {
+                queued.signal();
+            }
+            return diagram;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for room in the write-behind queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Diagram> findById(String id) {
+        Diagram queued = queued(id);
+        return queued != null ? Optional.of(queued) : delegate.findById(id);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Diagram>> findByIdAsync(String id) {
+        Diagram queued = queued(id);
+        return queued != null ? CompletableFuture.completedFuture(Optional.of(queued)) : delegate.findByIdAsync(id);
+    }
+
+    @Override
+    public List<Diagram> findAllById(Collection<String> ids) {
+        List<Diagram> found = new ArrayList<>();
+        List<String> rest = unqueued(ids, found);
+        if (!rest.isEmpty()) {
+            found.addAll(delegate.findAllById(rest));
+        }
+        return found;
+    }
+
+    @Override
+    public CompletableFuture<List<Diagram>> findAllByIdAsync(Collection<String> ids) {
+        List<Diagram> found = new ArrayList<>();
+        List<String> rest = unqueued(ids, found);
+        if (rest.isEmpty()) {
+            return CompletableFuture.completedFuture(found);
+        }
+        return delegate.findAllByIdAsync(rest).thenApply(stored -> {
+            found.addAll(stored);
+            return found;
+        });
+    }
+
+    // Adds the queued diagrams among ids to found and returns the other ids
+    private List<String> unqueued(Collection<String> ids, List<Diagram> found) {
+        List<String> rest = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            Diagram queued = queued(id);
+            if (queued != null) {
+                found.add(queued);
+            } else {
+                rest.add(id);
+            }
+        }
+        return rest;
+    }
+
+    private Diagram queued(String id) {
+        lock.lock();
+        try {
+            Diagram d = pending.get(id);
+            return d != null ? d : flushing.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Diagram> findAll(Optional<String> tag, Optional<String> query) {
+        flush();
+        return delegate.findAll(tag, query);
+    }
+
+    @Override
+    public List<Diagram> findAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        flush();
+        return delegate.findAll(tag, query, filter);
+    }
+
+    @Override
+    public List<DiagramSummary> findSummaries(Optional<String> tag, Optional<String> query,
+                                              Optional<DiagramFilter> filter) {
+        flush();
+        return delegate.findSummaries(tag, query, filter);
+    }
+
+    @Override
+    public Page<DiagramSummary> findSummaryPage(Optional<String> tag, Optional<String> query,
+                                                Optional<DiagramFilter> filter, Optional<String> after, int limit) {
+        flush();
+        return delegate.findSummaryPage(tag, query, filter, after, limit);
+    }
+
+    @Override
+    public CompletableFuture<Page<DiagramSummary>> findSummaryPageAsync(Optional<String> tag, Optional<String> query,
+                                                                       Optional<DiagramFilter> filter,
+                                                                       Optional<String> after, int limit) {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return delegate.findSummaryPageAsync(tag, query, filter, after, limit);
+    }
+
+    @Override
+    public Stream<Diagram> streamAll(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter) {
+        flush();
+        return delegate.streamAll(tag, query, filter);
+    }
+
+    @Override
+    public Page<Diagram> findPage(Optional<String> tag, Optional<String> query, Optional<DiagramFilter> filter,
+                                  Optional<String> after, int limit) {
+        flush();
+        return delegate.findPage(tag, query, filter, after, limit);
+    }
+
+    @Override
+    public Optional<Diagram> update(String id, DiagramChanges changes, Optional<Integer> expectedVersion) {
+        flushLock.lock();
+        try {
+            Diagram updated = updateQueued(id, changes, expectedVersion);
+            return updated != null ? Optional.of(updated) : delegate.update(id, changes, expectedVersion);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Optional<Diagram>> updateAsync(String id, DiagramChanges changes,
+                                                            Optional<Integer> expectedVersion) {
+        flushLock.lock();
+        try {
+            Diagram updated = updateQueued(id, changes, expectedVersion);
+            return updated != null
+                    ? CompletableFuture.completedFuture(Optional.of(updated))
+                    : delegate.updateAsync(id, changes, expectedVersion);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Applies {@code changes} to the queued save of {@code id}, which then
+     * stays queued; null if there is none. Called under {@code flushLock}, so
+     * no write of the id is in progress.
+     *
+     * @throws VersionConflictException if the queued diagram is at a version other than expected
+     */
+    private Diagram updateQueued(String id, DiagramChanges changes, Optional<Integer> expectedVersion) {
+        lock.lock();
+        try {
+            Diagram queued = pending.get(id);
+            if (queued == null) {
+                return null;
+            }
+            if (expectedVersion.isPresent() && expectedVersion.get() != queued.getVersion()) {
+                throw new VersionConflictException(id, expectedVersion.get(), queued.getVersion());
+            }
+            Diagram updated = changes.applyTo(queued);
+            pending.put(id, updated);
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A queued save of the diagram is dropped rather than written and then deleted
+    @Override
+    public void deleteById(String id) {
+        flushLock.lock();
+        try {
+            lock.lock();
+            try {
+                attempts.remove(id);
+                if (pending.remove(id) != null) {
+                    drained.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+            delegate.deleteById(id);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Tries once to write every save queued before the call, in groups of
+     * {@value #BATCH_SIZE}. Diagrams that fail go back on the queue, unless
+     * a newer save replaced them or they have failed too often; nothing is
+     * thrown.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            int remaining;
+            lock.lock();
+            try {
+                remaining = pending.size();
+            } finally {
+                lock.unlock();
+            }
+            while (remaining > 0) {
+                List<Diagram> group = takeGroup(remaining);
+                if (group.isEmpty()) {
+                    return;
+                }
+                write(group);
+                remaining -= group.size();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // At most max, so diagrams requeued at the back by this flush are not retried by it
+    private List<Diagram> takeGroup(int max) {
+        lock.lock();
+        try {
+            int size = Math.min(BATCH_SIZE, max);
+            List<Diagram> group = new ArrayList<>(Math.min(size, pending.size()));
+            Map<String, Diagram> byId = new HashMap<>();
+            for (Iterator<Diagram> it = pending.values().iterator(); it.hasNext() && group.size() < size; ) {
+                Diagram d = it.next();
+                it.remove();
+                group.add(d);
+                byId.put(d.getId(), d);
+            }
+            flushing = byId;
+            drained.signalAll();
+            return group;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<Diagram> group) {
+        Timer.Sample sample = Timer.start();
+        List<Diagram> failed = new ArrayList<>();
+        try {
+            delegate.saveAll(group);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Write-behind write of {} diagrams failed, writing them one at a time", group.size(), e);
+            for (Diagram d : group) {
+                try {
+                    delegate.save(d);
+                } catch (RuntimeException single) {
+                    log.warn("Write-behind write of diagram {} failed", d.getId(), single);
+                    failed.add(d);
+                }
+            }
+        } finally {
+            sample.stop(flushTimer);
+        }
+        writes.increment(group.size() - failed.size());
+        settle(group, failed);
+    }
+
+    // Requeues failed diagrams behind anything queued since, unless a newer save replaced them
+    private void settle(List<Diagram> group, List<Diagram> failed) {
+        lock.lock();
+        try {
+            for (Diagram d : group) {
+                if (!failed.contains(d)) {
+                    attempts.remove(d.getId());
+                }
+            }
+            for (Diagram d : failed) {
+                if (pending.containsKey(d.getId())) {
+                    continue;
+                }
+                if (attempts.merge(d.getId(), 1, Integer::sum) < MAX_ATTEMPTS) {
+                    pending.put(d.getId(), d);
+                } else {
+                    deadLetter(d);
+                }
+            }
+            flushing = Map.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deadLetter(Diagram d) {
+        attempts.remove(d.getId());
+        deadLetters.remove(d.getId());
+        deadLetters.put(d.getId(), d);
+        if (deadLetters.size() > maxPending) {
+            Iterator<String> oldest = deadLetters.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        deadLettered.increment();
+        log.error("Giving up on the save of diagram {} after {} failed writes; it is kept in the dead letters",
+                d.getId(), MAX_ATTEMPTS);
+    }
+
+    /**
+     * Saves given up on after {@value #MAX_ATTEMPTS} failed writes, oldest
+     * first, for inspection or a manual retry.
+     */
+    public List<Diagram> deadLetters() {
+        lock.lock();
+        try {
+            return List.copyOf(deadLetters.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            lock.lock();
+            try {
+                while (!closed && pending.isEmpty()) {
+                    queued.await();
+                }
+                // Let further saves to the same ids coalesce, unless savers are waiting for room
+                long deadline = System.nanoTime() + windowNanos;
+                long left;
+                while (!closed && pending.size() < maxPending && (left = deadline - System.nanoTime()) > 0) {
+                    queued.awaitNanos(left);
+                }
+                if (closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("Write-behind flush failed, retrying after {} ms", windowNanos / 1_000_000, e);
+                try {
+                    Thread.sleep(Duration.ofNanos(windowNanos).toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting saves, writes everything queued and closes the
+     * delegate if it is closeable.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queued.signalAll();
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Every flush counts an attempt against each diagram left, so this ends
+        for (int i = 0; i < MAX_ATTEMPTS && pendingCount() > 0; i++) {
+            flush();
+        }
+        log.info("Write-behind queue flushed on close");
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close " + delegate.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
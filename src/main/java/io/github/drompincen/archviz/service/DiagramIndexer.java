@@ -0,0 +1,107 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.index.DiagramIndex;
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramManifestEntry;
+import io.github.drompincen.archviz.repository.DiagramRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every {@link DiagramIndex} bean in step with the stored and static
+ * diagrams. The indexes are populated once the application is ready, updated
+ * on each save made through {@link DiagramService}, and refreshed from the
+ * static catalog after a rescan (only files whose SHA-256 changed are
+ * re-read). At startup, bundled diagrams come from the views precompiled with
+ * the static index rather than from their documents. Writes made by other
+ * instances sharing a DynamoDB table are not seen until restart.
+ */
+@Service
+public class DiagramIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(DiagramIndexer.class);
+
+    private final List<DiagramIndex> indexes;
+    private final DiagramRepository repository;
+    private final StaticFileService staticFileService;
+
+    // id -> sha256 of the static files currently indexed
+    private final Map<String, String> indexedStatic = new HashMap<>();
+
+    public DiagramIndexer(List<DiagramIndex> indexes,
+                          DiagramRepository repository,
+                          StaticFileService staticFileService) {
+        this.indexes = indexes;
+        this.repository = repository;
+        this.staticFileService = staticFileService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reindexAll() {
+        long start = System.nanoTime();
+        int stored = 0;
+        try (Stream<Diagram> diagrams = repository.streamAll(Optional.empty(), Optional.empty(), Optional.empty())) {
+            for (Iterator<Diagram> it = diagrams.iterator(); it.hasNext(); stored++) {
+                Diagram d = it.next();
+                d.setSource("db");
+                onSaved(d);
+            }
+        }
+        syncStatic(staticFileService.manifest().files(), staticFileService.loadIndexViews());
+        log.info("Indexed {} stored and {} static diagrams in {} ms", stored, indexedStatic.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @EventListener
+    public void onStaticCatalogReloaded(StaticCatalogReloadedEvent event) {
+        syncStatic(event.manifest().files(), Map.of());
+    }
+
+    public void onSaved(Diagram diagram) {
+        for (DiagramIndex index : indexes) {
+            index.index(diagram);
+        }
+    }
+
+    public void onDeleted(String id) {
+        for (DiagramIndex index : indexes) {
+            index.remove(id);
+        }
+    }
+
+    // views: diagrams to index as they are, by id, in place of loading their documents
+    private synchronized void syncStatic(List<DiagramManifestEntry> files, Map<String, Diagram> views) {
+        Map<String, String> current = new HashMap<>();
+        for (DiagramManifestEntry f : files) {
+            current.put(f.id(), f.sha256());
+        }
+        for (String id : List.copyOf(indexedStatic.keySet())) {
+            if (!current.containsKey(id)) {
+                onDeleted(id);
+                indexedStatic.remove(id);
+            }
+        }
+        current.forEach((id, sha) -> {
+            if (sha != null && sha.equals(indexedStatic.get(id))) {
+                return;
+            }
+            Optional<Diagram> diagram = views.containsKey(id)
+                    ? Optional.of(views.get(id))
+                    : staticFileService.staticDiagramById(id);
+            diagram.ifPresent(d -> {
+                onSaved(d);
+                indexedStatic.put(id, sha);
+            });
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.drompincen.archviz.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Single streaming pass over a diagram document that pulls the fields needed
+ * for listing without materialising the {@code JsonNode} tree. Every token is
+ * still read, so malformed input is rejected exactly as a full parse would.
+ */
+public final class DiagramJsonScanner {
+
+    private DiagramJsonScanner() {}
+
+    public record Header(String title, int nodeCount, int connectionCount, int phaseCount,
+                         int flowCount, int sequenceCount) {}
+
+    public static Header scan(JsonFactory factory, byte[] json) throws IOException {
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, "Diagram must be a JSON object");
+            }
+            String title = null;
+            int nodes = 0, connections = 0, phases = 0, flows = 0, sequence = 0;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "title" -> {
+                        if (value == JsonToken.VALUE_STRING) {
+                            title = p.getText();
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    case "nodes" -> nodes = countElements(p, value);
+                    case "connections" -> connections = countElements(p, value);
+                    case "phases" -> phases = countElements(p, value);
+                    case "flows" -> flows = countElements(p, value);
+                    case "sequence" -> sequence = countElements(p, value);
+                    default -> p.skipChildren();
+                }
+            }
+            if (p.nextToken() != null) {
+                throw new JsonParseException(p, "Unexpected content after diagram object");
+            }
+            return new Header(title, nodes, connections, phases, flows, sequence);
+        }
+    }
+
+    private static int countElements(JsonParser p, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return 0;
+        }
+        int count = 0;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            count++;
+            p.skipChildren();
+        }
+        return count;
+    }
+}
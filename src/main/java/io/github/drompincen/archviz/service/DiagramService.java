@@ -1,64 +1,299 @@
 package io.github.drompincen.archviz.service;
 
+import io.github.drompincen.archviz.dto.DiagramBatchOperation;
+import io.github.drompincen.archviz.dto.DiagramBatchResult;
 import io.github.drompincen.archviz.dto.DiagramCreateRequest;
 import io.github.drompincen.archviz.dto.DiagramUpdateRequest;
+import io.github.drompincen.archviz.filter.DiagramFilter;
+import io.github.drompincen.archviz.filter.FilterParseException;
+import io.github.drompincen.archviz.filter.GraphPattern;
+import io.github.drompincen.archviz.index.CompletionIndex;
+import io.github.drompincen.archviz.index.ComponentIndex;
+import io.github.drompincen.archviz.index.FullTextIndex;
+import io.github.drompincen.archviz.index.GraphIndex;
+import io.github.drompincen.archviz.index.SimilarityIndex;
+import io.github.drompincen.archviz.index.StatsIndex;
+import io.github.drompincen.archviz.model.Completion;
+import io.github.drompincen.archviz.model.ComponentUsage;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramFacets;
+import io.github.drompincen.archviz.model.DiagramStats;
 import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.GraphMatch;
+import io.github.drompincen.archviz.model.Page;
+import io.github.drompincen.archviz.model.SearchHit;
+import io.github.drompincen.archviz.model.SimilarDiagram;
 import io.github.drompincen.archviz.repository.DiagramRepository;
+import io.github.drompincen.archviz.repository.VersionConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
 public class DiagramService {
 
+    private static final Logger log = LoggerFactory.getLogger(DiagramService.class);
+
+    /** Most entries {@link #batch} accepts. */
+    public static final int MAX_BATCH = 100;
+
     private final DiagramRepository repository;
     private final StaticFileService staticFileService;
+    private final DiagramIndexer indexer;
+    private final FullTextIndex fullTextIndex;
+    private final CompletionIndex completionIndex;
+    private final StatsIndex statsIndex;
+    private final GraphIndex graphIndex;
+    private final ComponentIndex componentIndex;
+    private final SimilarityIndex similarityIndex;
+    // Static-file fallbacks of async reads; kept off the store client's completion threads
+    private final Executor staticReads;
 
-    public DiagramService(DiagramRepository repository, StaticFileService staticFileService) {
+    public DiagramService(DiagramRepository repository, StaticFileService staticFileService,
+                          DiagramIndexer indexer, FullTextIndex fullTextIndex,
+                          CompletionIndex completionIndex, StatsIndex statsIndex,
+                          GraphIndex graphIndex, ComponentIndex componentIndex,
+                          SimilarityIndex similarityIndex,
+                          @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                          Executor staticReads) {
         this.repository = repository;
         this.staticFileService = staticFileService;
+        this.indexer = indexer;
+        this.fullTextIndex = fullTextIndex;
+        this.completionIndex = completionIndex;
+        this.statsIndex = statsIndex;
+        this.graphIndex = graphIndex;
+        this.componentIndex = componentIndex;
+        this.similarityIndex = similarityIndex;
+        this.staticReads = staticReads;
     }
 
     public List<DiagramSummary> listAll(Optional<String> tag, Optional<String> query) {
-        List<Diagram> dbDiagrams = repository.findAll(tag, query);
-        dbDiagrams.forEach(d -> d.setSource("db"));
+        return listAll(tag, query, Optional.empty());
+    }
+
+    /**
+     * @param filter expression in the {@link DiagramFilter} language, applied
+     *               after the tag and query filters
+     * @throws FilterParseException if {@code filter} is not a valid filter
+     */
+    public List<DiagramSummary> listAll(Optional<String> tag, Optional<String> query, Optional<String> filter) {
+        Optional<DiagramFilter> compiled = compile(filter);
+        List<DiagramSummary> stored = repository.findSummaries(tag, query, compiled);
+
+        Stream<DiagramSummary> result = Stream.concat(stored.stream().map(this::storedSummary),
+                staticSummaries(tag, query));
+        if (compiled.isPresent()) {
+            result = result.filter(compiled.get()::test);
+        }
+        return result.collect(Collectors.toList());
+    }
+
+    /**
+     * One page of {@link #listAll(Optional, Optional, Optional)}: stored
+     * diagrams first, then static files. Stored diagrams are read from the
+     * repository a page at a time, so memory stays proportional to
+     * {@code limit} however large the table is.
+     *
+     * @param cursor {@code next} of the previous page, or empty for the first
+     * @throws FilterParseException if {@code filter} is not a valid filter
+     * @throws InvalidCursorException if {@code cursor} was not issued by this method
+     */
+    public CompletableFuture<Page<DiagramSummary>> listPage(Optional<String> tag, Optional<String> query,
+                                                            Optional<String> filter, Optional<String> cursor,
+                                                            int limit) {
+        Optional<DiagramFilter> compiled = compile(filter);
+        ListCursor position = cursor.map(ListCursor::decode).orElse(ListCursor.START);
+        List<DiagramSummary> items = new ArrayList<>(limit);
+        if (!position.stored()) {
+            return CompletableFuture.completedFuture(withStatic(tag, query, compiled, position.offset(), items, limit));
+        }
+        return fillStored(tag, query, compiled, Optional.ofNullable(position.position()), items, limit)
+                .thenApply(next -> next.isPresent()
+                        ? new Page<>(items, ListCursor.stored(next.get()).encode())
+                        : withStatic(tag, query, compiled, 0, items, limit));
+    }
+
+    /*
+     * Completes with where to resume if the page filled up, or empty once
+     * stored diagrams run out. Pages that are already there are taken in a
+     * loop; only a page still in flight is chained, so a filter that drops
+     * page after page does not deepen the stack.
+     */
+    private CompletableFuture<Optional<String>> fillStored(Optional<String> tag, Optional<String> query,
+                                                           Optional<DiagramFilter> compiled, Optional<String> after,
+                                                           List<DiagramSummary> items, int limit) {
+        while (true) {
+            CompletableFuture<Page<DiagramSummary>> pending =
+                    repository.findSummaryPageAsync(tag, query, compiled, after, limit - items.size());
+            if (!pending.isDone() || pending.isCompletedExceptionally()) {
+                return pending.thenCompose(page -> {
+                    Optional<String> next = addStored(page, compiled, items);
+                    return next.isEmpty() || items.size() == limit
+                            ? CompletableFuture.completedFuture(next)
+                            : fillStored(tag, query, compiled, next, items, limit);
+                });
+            }
+            after = addStored(pending.join(), compiled, items);
+            if (after.isEmpty() || items.size() == limit) {
+                return CompletableFuture.completedFuture(after);
+            }
+        }
+    }
+
+    // Adds the page's matching diagrams; answers where the store continues, or empty at its end
+    private Optional<String> addStored(Page<DiagramSummary> page, Optional<DiagramFilter> compiled,
+                                       List<DiagramSummary> items) {
+        page.items().stream()
+                .map(this::storedSummary)
+                .filter(s -> compiled.map(f -> f.test(s)).orElse(true))
+                .forEach(items::add);
+        return Optional.ofNullable(page.next());
+    }
 
-        List<Diagram> fileDiagrams = staticFileService.loadStaticDiagrams();
+    private Page<DiagramSummary> withStatic(Optional<String> tag, Optional<String> query,
+                                            Optional<DiagramFilter> compiled, int offset,
+                                            List<DiagramSummary> items, int limit) {
+        int remaining = limit - items.size();
+        Stream<DiagramSummary> files = staticSummaries(tag, query);
+        if (compiled.isPresent()) {
+            files = files.filter(compiled.get()::test);
+        }
+        List<DiagramSummary> fileItems = files.skip(offset).limit(remaining + 1L).collect(Collectors.toList());
+        boolean more = fileItems.size() > remaining;
+        items.addAll(more ? fileItems.subList(0, remaining) : fileItems);
+        return new Page<>(items, more ? ListCursor.files(offset + remaining).encode() : null);
+    }
+
+    private static Optional<DiagramFilter> compile(Optional<String> filter) {
+        return filter.filter(f -> !f.isBlank()).map(DiagramFilter::parse);
+    }
 
-        Stream<Diagram> fileStream = fileDiagrams.stream();
+    // Listings never load flows; stats the repository kept cover diagrams not indexed here yet
+    private DiagramSummary storedSummary(DiagramSummary s) {
+        DiagramStats stats = statsIndex.stats(s.id());
+        return new DiagramSummary(s.id(), s.title(), s.description(), s.tags(), s.version(), "db",
+                stats != null ? stats : s.stats());
+    }
+
+    private Stream<DiagramSummary> staticSummaries(Optional<String> tag, Optional<String> query) {
+        List<DiagramSummary> fileSummaries = query.isPresent()
+                ? staticFileService.searchStaticSummaries(query.get())
+                : staticFileService.listStaticSummaries();
+        Stream<DiagramSummary> fileStream = fileSummaries.stream();
         if (tag.isPresent()) {
             String t = tag.get();
-            fileStream = fileStream.filter(d -> d.getTags() != null && d.getTags().contains(t));
+            fileStream = fileStream.filter(s -> s.tags() != null && s.tags().contains(t));
         }
-        if (query.isPresent()) {
-            String q = query.get().toLowerCase();
-            fileStream = fileStream.filter(d ->
-                    d.getTitle() != null && d.getTitle().toLowerCase().contains(q));
+        return fileStream.map(s -> s.withStats(statsIndex.stats(s.id())));
+    }
+
+    /**
+     * Tag, node type and zone type counts for the diagrams {@link #listAll}
+     * would return. Unfiltered facets come straight from the running totals.
+     */
+    public DiagramFacets facets(Optional<String> tag, Optional<String> query, Optional<String> filter) {
+        if (tag.isEmpty() && query.isEmpty() && filter.filter(f -> !f.isBlank()).isEmpty()) {
+            return statsIndex.facets();
         }
+        return statsIndex.facets(listAll(tag, query, filter).stream()
+                .map(DiagramSummary::id)
+                .collect(Collectors.toList()));
+    }
 
-        return Stream.concat(dbDiagrams.stream(), fileStream)
-                .map(d -> new DiagramSummary(d.getId(), d.getTitle(), d.getDescription(),
-                        d.getTags(), d.getVersion(), d.getSource()))
-                .collect(Collectors.toList());
+    /**
+     * BM25-ranked search over titles, notes, node labels, step text and story
+     * text of stored and static diagrams.
+     */
+    public List<SearchHit> search(String query, int limit) {
+        return fullTextIndex.search(query, limit);
     }
 
-    public Optional<Diagram> getById(String id) {
-        Optional<Diagram> dbResult = repository.findById(id);
-        if (dbResult.isPresent()) {
-            dbResult.get().setSource("db");
-            return dbResult;
-        }
-        return staticFileService.loadStaticDiagramById(id);
+    /**
+     * Titles, tags, node labels and node types starting with {@code prefix},
+     * most common first.
+     */
+    public List<Completion> autocomplete(String prefix, int limit) {
+        return completionIndex.complete(prefix, limit);
+    }
+
+    /**
+     * Diagrams whose connections contain {@code pattern}, e.g.
+     * {@code gateway -> database}; see {@link GraphPattern}.
+     *
+     * @throws FilterParseException if {@code pattern} is not a valid pattern
+     */
+    public List<GraphMatch> graphQuery(String pattern, Optional<String> phase, int limit) {
+        return graphIndex.match(GraphPattern.parse(pattern), phase, limit);
+    }
+
+    /**
+     * Diagrams with a node whose label, type or id matches {@code name},
+     * ignoring case, punctuation and line breaks.
+     */
+    public List<ComponentUsage> componentUsage(String name) {
+        return componentIndex.lookup(name);
+    }
+
+    /**
+     * Closest diagrams to an existing one by estimated Jaccard similarity of
+     * node types, labels and typed connections; empty if {@code id} is unknown.
+     */
+    public Optional<List<SimilarDiagram>> similarTo(String id, int limit) {
+        return similarityIndex.similarTo(id, limit);
     }
 
-    public Diagram create(DiagramCreateRequest request) {
+    /**
+     * Closest existing diagrams to an unsaved one, e.g. before upload.
+     */
+    public List<SimilarDiagram> similarTo(DiagramCreateRequest request, int limit) {
+        Diagram d = new Diagram();
+        d.setTitle(request.title());
+        d.setFlow(request.flow());
+        return similarityIndex.similarTo(d, limit);
+    }
+
+    /**
+     * The stored diagram, or else the static file with that id. The file is
+     * read on the application task executor, not on the thread that
+     * completed the store read, which for the async client is a Netty event
+     * loop.
+     */
+    public CompletableFuture<Optional<Diagram>> getById(String id) {
+        return repository.findByIdAsync(id).thenCompose(dbResult -> {
+            if (dbResult.isPresent()) {
+                dbResult.get().setSource("db");
+                return CompletableFuture.completedFuture(dbResult);
+            }
+            return CompletableFuture.supplyAsync(() -> staticFileService.loadStaticDiagramById(id), staticReads);
+        });
+    }
+
+    public CompletableFuture<Diagram> create(DiagramCreateRequest request) {
+        return repository.saveAsync(newDiagram(request)).thenApply(saved -> {
+            indexer.onSaved(saved);
+            return saved;
+        });
+    }
+
+    private static Diagram newDiagram(DiagramCreateRequest request) {
         Diagram d = new Diagram();
         d.setId(UUID.randomUUID().toString());
         d.setTitle(request.title());
@@ -69,22 +304,113 @@ public class DiagramService {
         d.setCreatedAt(Instant.now());
         d.setUpdatedAt(Instant.now());
         d.setFlow(request.flow());
-        return repository.save(d);
+        return d;
+    }
+
+    /**
+     * Applies the request in a single conditional write, which fails with
+     * {@link io.github.drompincen.archviz.repository.VersionConflictException}
+     * if the request names a version the diagram is no longer at.
+     */
+    public CompletableFuture<Optional<Diagram>> update(String id, DiagramUpdateRequest request) {
+        DiagramChanges changes = new DiagramChanges(request.title(), request.description(), request.tags(),
+                request.flow(), Instant.now());
+        return repository.updateAsync(id, changes, Optional.ofNullable(request.expectedVersion()))
+                .thenApply(updated -> {
+                    updated.ifPresent(d -> {
+                        d.setSource("db");
+                        indexer.onSaved(d);
+                    });
+                    return updated;
+                });
     }
 
-    public Optional<Diagram> update(String id, DiagramUpdateRequest request) {
-        Optional<Diagram> existing = repository.findById(id);
-        if (existing.isEmpty()) {
-            return Optional.empty();
+    /**
+     * Runs a batch of gets, creates and updates and answers one result per
+     * entry, in order. All the gets are one multi-item read, falling back to
+     * the static catalog for ids the store lacks; each create is a
+     * {@link DiagramRepository#saveAsync}, like {@link #create}, and each
+     * update its own conditional write. The reads and writes run concurrently
+     * and in no set order, so a batch should not read what it writes. Store
+     * failures answer 500 with a generic message; the cause is logged.
+     */
+    public CompletableFuture<List<DiagramBatchResult>> batch(List<DiagramBatchOperation> operations) {
+        List<CompletableFuture<DiagramBatchResult>> results = new ArrayList<>();
+        Map<Integer, String> gets = new LinkedHashMap<>();
+        for (DiagramBatchOperation operation : operations) {
+            String op = operation != null ? operation.op() : null;
+            CompletableFuture<DiagramBatchResult> result = null;
+            if (("get".equals(op) || "update".equals(op)) && (operation.id() == null || operation.id().isBlank())) {
+                result = CompletableFuture.completedFuture(DiagramBatchResult.error(op, null, 400, "id is required"));
+            } else if ("get".equals(op)) {
+                gets.put(results.size(), operation.id());
+            } else if ("create".equals(op)) {
+                result = batchCreate(operation);
+            } else if ("update".equals(op)) {
+                result = batchUpdate(operation);
+            } else {
+                result = CompletableFuture.completedFuture(
+                        DiagramBatchResult.error(op, operation != null ? operation.id() : null, 400,
+                                "Unknown operation: " + op));
+            }
+            results.add(result);
         }
-        Diagram d = existing.get();
-        d.setTitle(request.title());
-        d.setDescription(request.description());
-        d.setTags(request.tags() != null ? request.tags() : d.getTags());
-        d.setVersion(d.getVersion() + 1);
-        d.setUpdatedAt(Instant.now());
-        d.setFlow(request.flow());
-        d.setSource("db");
-        return Optional.of(repository.save(d));
+        if (!gets.isEmpty()) {
+            CompletableFuture<Map<String, Diagram>> found = repository.findAllByIdAsync(gets.values())
+                    .thenApply(diagrams -> diagrams.stream().collect(Collectors.toMap(Diagram::getId, d -> d)));
+            gets.forEach((i, id) -> results.set(i, found
+                    .handle((stored, e) -> e != null
+                            ? CompletableFuture.completedFuture(failure("get", id, e))
+                            : batchGet(id, stored.get(id)))
+                    .thenCompose(result -> result)));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> results.stream().map(CompletableFuture::join).toList());
+    }
+
+    private CompletableFuture<DiagramBatchResult> batchGet(String id, Diagram stored) {
+        if (stored != null) {
+            stored.setSource("db");
+            return CompletableFuture.completedFuture(DiagramBatchResult.ok("get", 200, stored));
+        }
+        return CompletableFuture.supplyAsync(() -> staticFileService.loadStaticDiagramById(id)
+                .map(d -> DiagramBatchResult.ok("get", 200, d))
+                .orElseGet(() -> DiagramBatchResult.error("get", id, 404, "Not found")), staticReads);
+    }
+
+    private CompletableFuture<DiagramBatchResult> batchCreate(DiagramBatchOperation o) {
+        CompletableFuture<Diagram> created;
+        try {
+            created = create(new DiagramCreateRequest(o.title(), o.description(), o.tags(), o.flow()));
+        } catch (RuntimeException e) {
+            created = CompletableFuture.failedFuture(e);
+        }
+        return created.handle((d, e) -> e != null
+                ? failure("create", null, e)
+                : DiagramBatchResult.ok("create", 201, d));
+    }
+
+    private CompletableFuture<DiagramBatchResult> batchUpdate(DiagramBatchOperation o) {
+        DiagramUpdateRequest request = new DiagramUpdateRequest(o.title(), o.description(), o.tags(), o.flow(),
+                o.expectedVersion());
+        CompletableFuture<Optional<Diagram>> updated;
+        try {
+            updated = update(o.id(), request);
+        } catch (RuntimeException e) {
+            updated = CompletableFuture.failedFuture(e);
+        }
+        return updated.handle((d, e) -> e != null
+                ? failure("update", o.id(), e)
+                : d.map(u -> DiagramBatchResult.ok("update", 200, u))
+                        .orElseGet(() -> DiagramBatchResult.error("update", o.id(), 404, "Not found")));
+    }
+
+    private static DiagramBatchResult failure(String op, String id, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof VersionConflictException) {
+            return DiagramBatchResult.error(op, id, 409, cause.getMessage());
+        }
+        log.error("Batch {} of {} failed", op, id != null ? id : "a new diagram", cause);
+        return DiagramBatchResult.error(op, id, 500, "Internal error");
     }
 }
@@ -0,0 +1,55 @@
+package io.github.drompincen.archviz.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of parsed static flows, bounded by the total size
+ * of their source files. Entries are keyed by catalog entry, so a rescan that
+ * replaces a file never serves the previous version's tree.
+ */
+final class FlowCache {
+
+    private final long maxBytes;
+    private final Map<String, Cached> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    FlowCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized JsonNode get(StaticEntry entry) {
+        Cached cached = entries.get(entry.id());
+        return cached != null && cached.entry() == entry ? cached.flow() : null;
+    }
+
+    synchronized void put(StaticEntry entry, JsonNode flow) {
+        if (entry.bytes() > maxBytes) {
+            return;
+        }
+        Cached previous = entries.put(entry.id(), new Cached(entry, flow));
+        if (previous != null) {
+            currentBytes -= previous.entry().bytes();
+        }
+        currentBytes += entry.bytes();
+        Iterator<Cached> eldest = entries.values().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().entry().bytes();
+            eldest.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    synchronized long sizeBytes() {
+        return currentBytes;
+    }
+
+    private record Cached(StaticEntry entry, JsonNode flow) {}
+}
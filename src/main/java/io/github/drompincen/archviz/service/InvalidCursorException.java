@@ -0,0 +1,8 @@
+package io.github.drompincen.archviz.service;
+
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String cursor) {
+        super("Invalid cursor: " + cursor);
+    }
+}
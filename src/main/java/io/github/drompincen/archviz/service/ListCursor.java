@@ -0,0 +1,55 @@
+package io.github.drompincen.archviz.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the merged diagram listing: stored diagrams come first, in
+ * repository order, then static files in catalog order. For the stored part
+ * {@code position} is the repository's resume token; for the static part it
+ * is the offset into the filtered static summaries.
+ */
+record ListCursor(boolean stored, String position) {
+
+    static final ListCursor START = new ListCursor(true, null);
+
+    static ListCursor stored(String after) {
+        return new ListCursor(true, after);
+    }
+
+    static ListCursor files(int offset) {
+        return new ListCursor(false, Integer.toString(offset));
+    }
+
+    int offset() {
+        return Integer.parseInt(position);
+    }
+
+    String encode() {
+        String raw = (stored ? "db:" : "file:") + position;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ListCursor decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+        if (raw.startsWith("db:") && raw.length() > 3) {
+            return stored(raw.substring(3));
+        }
+        if (raw.startsWith("file:")) {
+            try {
+                int offset = Integer.parseInt(raw.substring(5));
+                if (offset >= 0) {
+                    return files(offset);
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new InvalidCursorException(cursor);
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.index.TrigramIndex;
+import io.github.drompincen.archviz.model.DiagramManifest;
+import io.github.drompincen.archviz.model.DiagramManifestEntry;
+import io.github.drompincen.archviz.model.DiagramSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the static diagram catalog. A new snapshot is built on
+ * every rescan and swapped in atomically by {@link StaticFileService}; readers
+ * never observe a partially loaded catalog.
+ */
+final class StaticCatalog {
+
+    static final StaticCatalog EMPTY = new StaticCatalog(List.of(), List.of(), Instant.EPOCH);
+
+    private final List<StaticEntry> entries;
+    private final List<DiagramSummary> summaries;
+    private final Map<String, StaticEntry> byId;
+    private final Map<String, Integer> positionById;
+    private final TrigramIndex titleIndex = new TrigramIndex();
+    private final List<StaticLoadError> errors;
+    private final Instant loadedAt;
+    private final DiagramManifest manifest;
+
+    StaticCatalog(List<StaticEntry> entries, List<StaticLoadError> errors, Instant loadedAt) {
+        this.entries = List.copyOf(entries);
+        this.summaries = this.entries.stream()
+                .map(StaticEntry::summary)
+                .collect(Collectors.toUnmodifiableList());
+        Map<String, StaticEntry> index = new HashMap<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (StaticEntry e : this.entries) {
+            index.put(e.id(), e);
+            positions.put(e.id(), positions.size());
+            titleIndex.put(e.id(), e.title());
+        }
+        this.byId = Map.copyOf(index);
+        this.positionById = Map.copyOf(positions);
+        this.errors = List.copyOf(errors);
+        this.loadedAt = loadedAt;
+        List<DiagramManifestEntry> files = this.entries.stream()
+                .map(StaticEntry::toManifestEntry)
+                .collect(Collectors.toUnmodifiableList());
+        this.manifest = new DiagramManifest(manifestEtag(files), loadedAt, files);
+    }
+
+    List<StaticEntry> entries() { return entries; }
+
+    List<DiagramSummary> summaries() { return summaries; }
+
+    /**
+     * Summaries whose title contains {@code query} (ignoring case), in catalog order.
+     */
+    List<DiagramSummary> search(String query) {
+        return titleIndex.search(query).stream()
+                .sorted(Comparator.comparing(positionById::get))
+                .map(id -> byId.get(id).summary())
+                .collect(Collectors.toList());
+    }
+
+    Optional<StaticEntry> findById(String id) { return Optional.ofNullable(byId.get(id)); }
+
+    List<StaticLoadError> errors() { return errors; }
+
+    int size() { return entries.size(); }
+
+    Instant loadedAt() { return loadedAt; }
+
+    DiagramManifest manifest() { return manifest; }
+
+    private static String manifestEtag(List<DiagramManifestEntry> files) {
+        MessageDigest digest = sha256();
+        for (DiagramManifestEntry f : files) {
+            digest.update((f.id() + ':' + f.sha256() + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.model.DiagramManifest;
+
+/**
+ * Published by {@link StaticFileService} after a rescan (manual or from the
+ * watcher) has swapped in a new snapshot. Not published for the startup scan.
+ */
+public record StaticCatalogReloadedEvent(String trigger, DiagramManifest manifest) {}
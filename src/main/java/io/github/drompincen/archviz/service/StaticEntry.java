@@ -0,0 +1,52 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.model.DiagramManifestEntry;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import org.springframework.core.io.Resource;
+
+import java.time.Instant;
+import java.util.Collections;
+
+/**
+ * Catalog entry for one static diagram file: the listing fields pulled out by
+ * {@link DiagramJsonScanner} and where to read the full document from (a gzipped
+ * copy when it came from the precompiled index). The flow tree itself is not
+ * retained.
+ */
+record StaticEntry(
+        String id,
+        String filename,
+        String location,
+        Resource resource,
+        boolean gzipped,
+        boolean bundled,
+        long bytes,
+        String sha256,
+        Instant lastModified,
+        DiagramJsonScanner.Header header,
+        DiagramSummary summary
+) {
+
+    static StaticEntry of(String filename, String location, Resource resource, boolean gzipped,
+                          boolean bundled, long bytes, String sha256, Instant lastModified,
+                          DiagramJsonScanner.Header header) {
+        String id = idOf(filename);
+        String title = header.title() != null ? header.title() : filename;
+        return new StaticEntry(id, filename, location, resource, gzipped, bundled, bytes, sha256, lastModified,
+                header, new DiagramSummary(id, title, null, Collections.emptyList(), 0, "file", null));
+    }
+
+    static String idOf(String filename) {
+        return "file-" + filename.replace(".json", "");
+    }
+
+    String title() {
+        return summary.title();
+    }
+
+    DiagramManifestEntry toManifestEntry() {
+        return new DiagramManifestEntry(id, filename, bundled, title(), bytes,
+                header.nodeCount(), header.connectionCount(), header.phaseCount(), header.flowCount(),
+                lastModified, sha256);
+    }
+}
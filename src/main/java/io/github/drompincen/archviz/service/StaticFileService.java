@@ -1,60 +1,617 @@
 package io.github.drompincen.archviz.service;
 
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramManifest;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Serves static diagrams from an in-memory snapshot. Sources are the bundled
+ * {@code static/json/*.json} files (read from the build-time {@link StaticIndex}
+ * when present) plus any directories listed in
+ * {@code diagram.static.dirs}, which are walked recursively. Files are scanned
+ * in parallel on a bounded fork-join pool at startup; when a location is an
+ * exploded directory a {@link WatchService} (which also picks up subdirectories
+ * created later) triggers a rescan and the new snapshot replaces the old one
+ * atomically.
+ *
+ * <p>The snapshot only keeps listing fields, extracted with a streaming pass.
+ * Full flows are parsed on demand and held in a {@link FlowCache} bounded by
+ * {@code diagram.static.flow-cache-bytes}. Cached flow trees are shared by all
+ * callers and must be treated as read-only.
+ */
 @Service
 public class StaticFileService {
 
+    private static final Logger log = LoggerFactory.getLogger(StaticFileService.class);
+
+    static final String STATIC_JSON_LOCATION = "classpath:/static/json/";
+    private static final String STATIC_JSON_PATTERN = STATIC_JSON_LOCATION + "*.json";
+    private static final TypeReference<List<StaticIndex.View>> VIEW_LIST = new TypeReference<>() {};
+
+    // Editors usually emit several events per save; wait for them to settle before rescanning
+    private static final long WATCH_DEBOUNCE_MS = 250;
+
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter catalogHits;
+    private final Counter flowCacheHits;
+    private final Counter flowCacheMisses;
+    private final FlowCache flowCache;
+    private final boolean watchEnabled;
+    private final List<Path> externalDirs;
+    private final int parallelism;
+    private final long maxFileBytes;
 
-    public StaticFileService(ObjectMapper objectMapper) {
+    private volatile StaticCatalog catalog = StaticCatalog.EMPTY;
+    private WatchService watchService;
+    // Registered with watchService; new external subdirectories are added as they appear
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+
+    public StaticFileService(ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${diagram.static.watch:true}") boolean watchEnabled,
+                             @Value("${diagram.static.dirs:}") List<String> externalDirs,
+                             @Value("${diagram.static.parallelism:0}") int parallelism,
+                             @Value("${diagram.static.max-file-bytes:5242880}") long maxFileBytes,
+                             @Value("${diagram.static.flow-cache-bytes:67108864}") long flowCacheBytes) {
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.watchEnabled = watchEnabled;
+        this.externalDirs = externalDirs.stream()
+                .filter(dir -> !dir.isBlank())
+                .map(dir -> Path.of(dir.trim()))
+                .collect(Collectors.toList());
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxFileBytes = maxFileBytes;
+        this.catalogHits = Counter.builder("archviz.static.catalog.hits")
+                .description("Static catalog reads made for callers, served from the in-memory snapshot")
+                .register(meterRegistry);
+        this.flowCache = new FlowCache(flowCacheBytes);
+        this.flowCacheHits = Counter.builder("archviz.static.flow.cache")
+                .description("Static flow lookups by cache outcome")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.flowCacheMisses = Counter.builder("archviz.static.flow.cache")
+                .description("Static flow lookups by cache outcome")
+                .tag("result", "miss")
+                .register(meterRegistry);
     }
 
+    @PostConstruct
+    void start() {
+        reload("startup");
+        if (watchEnabled) {
+            startWatcher();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.debug("Failed to close static diagram watcher", e);
+            }
+        }
+    }
+
+    /**
+     * Listing view of the catalog. Never parses a flow.
+     */
+    public List<DiagramSummary> listStaticSummaries() {
+        return requested().summaries();
+    }
+
+    /**
+     * Summaries whose title contains {@code query}, ignoring case, answered from
+     * the snapshot's trigram index.
+     */
+    public List<DiagramSummary> searchStaticSummaries(String query) {
+        return requested().search(query);
+    }
+
+    /**
+     * Every static diagram with its flow. Each flow is loaded through the cache,
+     * so prefer {@link #listStaticSummaries()} when the flow is not needed.
+     */
     public List<Diagram> loadStaticDiagrams() {
         List<Diagram> result = new ArrayList<>();
-        var resolver = new PathMatchingResourcePatternResolver();
+        for (StaticEntry entry : requested().entries()) {
+            loadFlow(entry).ifPresent(flow -> result.add(toDiagram(entry, flow)));
+        }
+        return result;
+    }
+
+    public Optional<Diagram> loadStaticDiagramById(String id) {
+        requested();
+        return staticDiagramById(id);
+    }
+
+    // As loadStaticDiagramById, for the application's own reads, which are not counted as hits
+    Optional<Diagram> staticDiagramById(String id) {
+        return catalog.findById(id)
+                .flatMap(entry -> loadFlow(entry).map(flow -> toDiagram(entry, flow)));
+    }
+
+    /**
+     * Cached manifest of the current snapshot, rebuilt only when the catalog is.
+     */
+    public DiagramManifest getManifest() {
+        requested();
+        return manifest();
+    }
+
+    DiagramManifest manifest() {
+        return catalog.manifest();
+    }
+
+    /**
+     * Bundled diagrams by id, each with only the parts of its flow the diagram
+     * indexes read, taken from the precompiled {@link StaticIndex.View}s
+     * instead of parsing every document. A diagram is left out unless its
+     * catalog entry has the view's SHA-256; empty without a precompiled index.
+     */
+    public Map<String, Diagram> loadIndexViews() {
+        Resource indexResource = new PathMatchingResourcePatternResolver().getResource(StaticIndex.LOCATION);
+        StaticCatalog current = catalog;
+        Map<String, Diagram> views = new HashMap<>();
         try {
-            Resource[] resources = resolver.getResources("classpath:/static/json/*.json");
-            for (Resource r : resources) {
-                String filename = r.getFilename();
-                if (filename == null) continue;
-                try (InputStream is = r.getInputStream()) {
-                    JsonNode root = objectMapper.readTree(is);
-                    Diagram d = new Diagram();
-                    d.setId("file-" + filename.replace(".json", ""));
-                    d.setTitle(root.has("title") ? root.get("title").asText() : filename);
-                    d.setDescription(null);
-                    d.setTags(Collections.emptyList());
-                    d.setVersion(0);
-                    d.setSource("file");
-                    d.setFlow(root);
-                    result.add(d);
-                } catch (IOException e) {
-                    // Skip malformed files
+            Resource viewsResource = indexResource.createRelative(StaticIndex.VIEWS);
+            if (!indexResource.exists() || !viewsResource.exists()) {
+                return views;
+            }
+            try (InputStream is = viewsResource.getInputStream()) {
+                for (StaticIndex.View view : objectMapper.readValue(is, VIEW_LIST)) {
+                    current.findById(StaticEntry.idOf(view.file()))
+                            .filter(entry -> entry.bundled() && view.sha256().equals(entry.sha256()))
+                            .ifPresent(entry -> views.put(entry.id(), toDiagram(entry, view.flow())));
                 }
             }
         } catch (IOException e) {
-            // No static files found
+            log.warn("Precompiled index views unreadable, indexing from the documents: {}", e.getMessage());
+            views.clear();
         }
-        return result;
+        return views;
     }
 
-    public Optional<Diagram> loadStaticDiagramById(String id) {
-        return loadStaticDiagrams().stream()
-                .filter(d -> d.getId().equals(id))
-                .findFirst();
+    /**
+     * Files that were skipped during the last scan, with the reason.
+     */
+    public List<StaticLoadError> getLoadErrors() {
+        return catalog.errors();
+    }
+
+    /**
+     * Rescans all sources and swaps in a fresh snapshot.
+     */
+    public void reload() {
+        reload("manual");
+    }
+
+    // Each public read counts once as a hit; the indexer's reads go around it
+    private StaticCatalog requested() {
+        catalogHits.increment();
+        return catalog;
+    }
+
+    private Optional<JsonNode> loadFlow(StaticEntry entry) {
+        JsonNode cached = flowCache.get(entry);
+        if (cached != null) {
+            flowCacheHits.increment();
+            return Optional.of(cached);
+        }
+        flowCacheMisses.increment();
+        try (InputStream is = entry.gzipped()
+                ? new GZIPInputStream(entry.resource().getInputStream())
+                : entry.resource().getInputStream()) {
+            JsonNode flow = objectMapper.readTree(is);
+            flowCache.put(entry, flow);
+            return Optional.of(flow);
+        } catch (IOException e) {
+            log.warn("Static diagram {} could not be read: {}", entry.location(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Diagram toDiagram(StaticEntry entry, JsonNode flow) {
+        DiagramSummary summary = entry.summary();
+        Diagram d = new Diagram();
+        d.setId(summary.id());
+        d.setTitle(summary.title());
+        d.setDescription(summary.description());
+        d.setTags(summary.tags());
+        d.setVersion(summary.version());
+        d.setSource(summary.source());
+        d.setFlow(flow);
+        return d;
+    }
+
+    private StaticCatalog reload(String trigger) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<StaticLoadError> errors = new ArrayList<>();
+        // The precompiled index describes the jar as built; after a watched change only a rescan is accurate
+        List<StaticEntry> indexed = "startup".equals(trigger) ? loadPrecompiledIndex() : null;
+        List<StaticSource> sources = discoverSources(errors, indexed == null);
+        List<LoadResult> results = new ArrayList<>();
+        if (indexed != null) {
+            indexed.forEach(e -> results.add(new LoadResult(e.location(), e, e.bytes(), null)));
+        }
+        results.addAll(parseAll(sources));
+
+        List<StaticEntry> entries = new ArrayList<>();
+        Set<String> seenIds = new HashSet<>();
+        long totalBytes = 0;
+        for (LoadResult result : results) {
+            totalBytes += result.bytes();
+            if (result.error() != null) {
+                errors.add(result.error());
+            } else if (!seenIds.add(result.entry().id())) {
+                errors.add(new StaticLoadError(result.location(),
+                        "Duplicate id " + result.entry().id() + "; keeping the first occurrence"));
+            } else {
+                entries.add(result.entry());
+            }
+        }
+
+        StaticCatalog next = new StaticCatalog(entries, errors, Instant.now());
+        long nanos = sample.stop(Timer.builder("archviz.static.catalog.scan")
+                .description("Time to scan and parse the static diagram catalog")
+                .tag("trigger", trigger)
+                .register(meterRegistry));
+        catalog = next;
+        flowCache.clear();
+        // Startup snapshots are picked up by listeners once the context is ready
+        if (!"startup".equals(trigger)) {
+            eventPublisher.publishEvent(new StaticCatalogReloadedEvent(trigger, next.manifest()));
+        }
+
+        errors.forEach(e -> log.warn("Skipped static diagram {}: {}", e.location(), e.message()));
+        double seconds = Math.max(nanos, 1) / 1e9;
+        log.info("Loaded {} static diagrams ({} skipped, {} from precompiled index) in {} ms ({}) | {} files/sec | {} MB/sec",
+                next.size(), errors.size(), indexed != null ? indexed.size() : 0,
+                TimeUnit.NANOSECONDS.toMillis(nanos), trigger,
+                String.format("%.0f", results.size() / seconds),
+                String.format("%.2f", totalBytes / (1024.0 * 1024.0) / seconds));
+        return next;
+    }
+
+    /**
+     * Bundled entries from the build-time {@link StaticIndex}, or {@code null} when
+     * there is no usable index (e.g. running from an IDE without the Maven build)
+     * or it no longer matches the bundled files, compared by name, size and SHA-256.
+     */
+    private List<StaticEntry> loadPrecompiledIndex() {
+        Resource indexResource = new PathMatchingResourcePatternResolver().getResource(StaticIndex.LOCATION);
+        if (!indexResource.exists()) {
+            return null;
+        }
+        try (InputStream is = indexResource.getInputStream()) {
+            StaticIndex index = objectMapper.readValue(is, StaticIndex.class);
+            if (index.format() != StaticIndex.FORMAT) {
+                log.warn("Ignoring precompiled static index with format {}", index.format());
+                return null;
+            }
+            String stale = staleness(index,
+                    new PathMatchingResourcePatternResolver().getResources(STATIC_JSON_PATTERN));
+            if (stale != null) {
+                log.warn("Ignoring precompiled static index, it is out of date with the bundled diagrams: {}", stale);
+                return null;
+            }
+            List<StaticEntry> entries = new ArrayList<>(index.files().size());
+            for (StaticIndex.Entry f : index.files()) {
+                entries.add(StaticEntry.of(f.file(), "static-index/" + f.body(),
+                        indexResource.createRelative(f.body()), true, true, f.bytes(), f.sha256(),
+                        f.lastModified() > 0 ? Instant.ofEpochMilli(f.lastModified()) : null, f.header()));
+            }
+            return entries;
+        } catch (IOException e) {
+            log.warn("Precompiled static index unreadable, falling back to classpath scan: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * What differs between the index and the bundled files, or null if
+     * nothing does. A file whose size matches is hashed, so an edit that
+     * keeps the size is still caught.
+     */
+    static String staleness(StaticIndex index, Resource[] bundled) throws IOException {
+        Map<String, StaticIndex.Entry> indexed = new HashMap<>();
+        for (StaticIndex.Entry f : index.files()) {
+            indexed.put(f.file(), f);
+        }
+        Set<String> names = new HashSet<>();
+        for (Resource r : bundled) {
+            String name = r.getFilename();
+            if (name == null) {
+                continue;
+            }
+            names.add(name);
+            StaticIndex.Entry entry = indexed.get(name);
+            if (entry == null) {
+                return name + " is not indexed";
+            }
+            long bytes = r.contentLength();
+            if (bytes != entry.bytes()) {
+                return name + " is " + bytes + " bytes, indexed at " + entry.bytes();
+            }
+            String sha256;
+            try (InputStream is = r.getInputStream()) {
+                sha256 = HexFormat.of().formatHex(StaticCatalog.sha256().digest(is.readAllBytes()));
+            }
+            if (!sha256.equals(entry.sha256())) {
+                return name + " changed since it was indexed";
+            }
+        }
+        for (String file : indexed.keySet()) {
+            if (!names.contains(file)) {
+                return file + " is indexed but not bundled";
+            }
+        }
+        return null;
+    }
+
+    private List<StaticSource> discoverSources(List<StaticLoadError> errors, boolean includeClasspath) {
+        List<StaticSource> sources = new ArrayList<>();
+        if (includeClasspath) {
+            var resolver = new PathMatchingResourcePatternResolver();
+            try {
+                for (Resource r : resolver.getResources(STATIC_JSON_PATTERN)) {
+                    if (r.getFilename() != null) {
+                        sources.add(new StaticSource(r, r.getFilename(), r.getDescription(), true));
+                    }
+                }
+            } catch (IOException e) {
+                errors.add(new StaticLoadError(STATIC_JSON_PATTERN, e.getMessage()));
+            }
+        }
+        for (Path dir : externalDirs) {
+            if (!Files.isDirectory(dir)) {
+                errors.add(new StaticLoadError(dir.toString(), "Not a directory"));
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.filter(Files::isRegularFile)
+                        .filter(p -> p.getFileName().toString().endsWith(".json"))
+                        .sorted()
+                        .forEach(p -> sources.add(new StaticSource(
+                                new FileSystemResource(p), p.getFileName().toString(), p.toString(), false)));
+            } catch (IOException e) {
+                errors.add(new StaticLoadError(dir.toString(), e.getMessage()));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Parses all sources on a pool sized by {@code diagram.static.parallelism},
+     * which also bounds how many file buffers are held at once. Results keep the
+     * discovery order so duplicate ids resolve deterministically.
+     */
+    private List<LoadResult> parseAll(List<StaticSource> sources) {
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+        List<Callable<LoadResult>> tasks = sources.stream()
+                .map(s -> (Callable<LoadResult>) () -> parse(s))
+                .collect(Collectors.toList());
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, sources.size()));
+        try {
+            List<LoadResult> results = new ArrayList<>(sources.size());
+            List<Future<LoadResult>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    StaticSource source = sources.get(i);
+                    results.add(LoadResult.failed(source.location(), 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private LoadResult parse(StaticSource source) {
+        byte[] bytes;
+        try (InputStream is = source.resource().getInputStream()) {
+            bytes = is.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, maxFileBytes + 1));
+        } catch (IOException e) {
+            return LoadResult.failed(source.location(), 0, "Unreadable: " + e.getMessage());
+        }
+        if (bytes.length > maxFileBytes) {
+            return LoadResult.failed(source.location(), bytes.length,
+                    "Larger than diagram.static.max-file-bytes (" + maxFileBytes + ")");
+        }
+        try {
+            DiagramJsonScanner.Header header = DiagramJsonScanner.scan(objectMapper.getFactory(), bytes);
+            StaticEntry entry = StaticEntry.of(source.filename(), source.location(), source.resource(),
+                    false, source.bundled(), bytes.length, HexFormat.of().formatHex(StaticCatalog.sha256().digest(bytes)),
+                    lastModified(source.resource()), header);
+            return new LoadResult(source.location(), entry, bytes.length, null);
+        } catch (IOException e) {
+            return LoadResult.failed(source.location(), bytes.length, "Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private static Instant lastModified(Resource resource) {
+        try {
+            long millis = resource.lastModified();
+            return millis > 0 ? Instant.ofEpochMilli(millis) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void startWatcher() {
+        List<Path> dirs = new ArrayList<>();
+        try {
+            Resource location = new PathMatchingResourcePatternResolver().getResource(STATIC_JSON_LOCATION);
+            if (location.exists() && location.isFile()) {
+                dirs.add(location.getFile().toPath());
+            }
+        } catch (IOException e) {
+            log.debug("Static diagram classpath location is not watchable", e);
+        }
+        for (Path dir : externalDirs) {
+            if (!Files.isDirectory(dir)) continue;
+            try (Stream<Path> tree = Files.walk(dir)) {
+                tree.filter(Files::isDirectory).forEach(dirs::add);
+            } catch (IOException e) {
+                log.warn("Cannot watch {}: {}", dir, e.getMessage());
+            }
+        }
+        if (dirs.isEmpty()) {
+            log.debug("No exploded static diagram directories; file watch disabled");
+            return;
+        }
+        try {
+            watchService = dirs.get(0).getFileSystem().newWatchService();
+            for (Path dir : dirs) {
+                register(watchService, dir);
+            }
+        } catch (IOException e) {
+            log.warn("Static diagram file watch disabled: {}", e.getMessage());
+            return;
+        }
+        WatchService ws = watchService;
+        Thread watcher = new Thread(() -> watchLoop(ws), "static-diagram-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("Watching {} directories for static diagram changes", dirs.size());
+    }
+
+    private void watchLoop(WatchService ws) {
+        try {
+            while (true) {
+                boolean changed = drainJsonEvents(ws, ws.take());
+                WatchKey next;
+                while ((next = ws.poll(WATCH_DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drainJsonEvents(ws, next);
+                }
+                if (changed) {
+                    try {
+                        reload("watch");
+                    } catch (RuntimeException e) {
+                        log.warn("Static diagram rescan failed; keeping previous snapshot", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void register(WatchService ws, Path dir) throws IOException {
+        dir.register(ws,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirs.add(dir);
+    }
+
+    private boolean drainJsonEvents(WatchService ws, WatchKey key) {
+        boolean changed = false;
+        Path parent = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || String.valueOf(event.context()).endsWith(".json")) {
+                changed = true;
+                continue;
+            }
+            Path child = parent.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)
+                    && externalDirs.stream().anyMatch(child::startsWith)) {
+                changed |= watchNewDirectory(ws, child);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watchedDirs.remove(child)) {
+                // Its files went with it
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Registers a directory created under an external dir, and any created
+     * inside it before it was registered. True if it already holds diagrams,
+     * whose own events were missed.
+     */
+    private boolean watchNewDirectory(WatchService ws, Path dir) {
+        boolean hasJson = false;
+        try (Stream<Path> tree = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) tree::iterator) {
+                if (Files.isDirectory(p)) {
+                    register(ws, p);
+                } else if (p.getFileName().toString().endsWith(".json")) {
+                    hasJson = true;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot watch {}: {}", dir, e.getMessage());
+        }
+        return hasJson;
+    }
+
+    private record StaticSource(Resource resource, String filename, String location, boolean bundled) {}
+
+    private record LoadResult(String location, StaticEntry entry, long bytes, StaticLoadError error) {
+        static LoadResult failed(String location, long bytes, String message) {
+            return new LoadResult(location, null, bytes, new StaticLoadError(location, message));
+        }
     }
 }
@@ -0,0 +1,37 @@
+package io.github.drompincen.archviz.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+
+/**
+ * Precompiled description of the bundled static diagrams, written at build time
+ * by {@link StaticIndexBuilder} and read once at startup in place of a classpath
+ * scan. Next to it, {@value #VIEWS} holds the {@link View}s the diagram
+ * indexes are first populated from.
+ */
+record StaticIndex(int format, List<Entry> files) {
+
+    static final int FORMAT = 1;
+    static final String LOCATION = "classpath:/static-index/index.json";
+    // Relative to the index
+    static final String VIEWS = "views.json";
+
+    /**
+     * @param body path of the minified, gzipped document relative to the index
+     */
+    record Entry(
+            String file,
+            long bytes,
+            String sha256,
+            long lastModified,
+            DiagramJsonScanner.Header header,
+            String body
+    ) {}
+
+    /**
+     * The flow of {@code file} as {@link io.github.drompincen.archviz.index.IndexedFlow}
+     * projects it, for the revision with {@code sha256}.
+     */
+    record View(String file, String sha256, JsonNode flow) {}
+}
@@ -0,0 +1,101 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.index.IndexedFlow;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step that validates every bundled diagram and writes the
+ * {@link StaticIndex}, a minified, gzipped copy of each document and the
+ * {@link StaticIndex.View}s the diagram indexes start from. Invoked
+ * by the exec-maven-plugin during {@code process-classes}; any malformed file
+ * fails the build.
+ *
+ * <p>Usage: {@code StaticIndexBuilder <json-source-dir> <output-dir>}
+ */
+public final class StaticIndexBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(StaticIndexBuilder.class);
+
+    private StaticIndexBuilder() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: StaticIndexBuilder <json-source-dir> <output-dir>");
+        }
+        StaticIndex index = build(Path.of(args[0]), Path.of(args[1]));
+        log.info("Precompiled static diagram index: {} files -> {}", index.files().size(), args[1]);
+    }
+
+    static StaticIndex build(Path sourceDir, Path outputDir) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(sourceDir)) {
+            files = listing.filter(p -> p.getFileName().toString().endsWith(".json"))
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+
+        Path bodies = outputDir.resolve("bodies");
+        deleteRecursively(bodies);
+        Files.createDirectories(bodies);
+
+        List<StaticIndex.Entry> entries = new ArrayList<>();
+        List<StaticIndex.View> views = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            byte[] bytes = Files.readAllBytes(file);
+            try {
+                DiagramJsonScanner.Header header = DiagramJsonScanner.scan(mapper.getFactory(), bytes);
+                JsonNode flow = mapper.readTree(bytes);
+                byte[] minified = mapper.writeValueAsBytes(flow);
+                String body = "bodies/" + name + ".gz";
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(outputDir.resolve(body)))) {
+                    out.write(minified);
+                }
+                String sha256 = HexFormat.of().formatHex(StaticCatalog.sha256().digest(bytes));
+                entries.add(new StaticIndex.Entry(name, bytes.length, sha256,
+                        Files.getLastModifiedTime(file).toMillis(), header, body));
+                views.add(new StaticIndex.View(name, sha256, IndexedFlow.project(flow)));
+            } catch (JsonProcessingException e) {
+                failures.add(name + ": " + e.getOriginalMessage());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Invalid static diagrams in " + sourceDir + ":\n  "
+                    + String.join("\n  ", failures));
+        }
+
+        StaticIndex index = new StaticIndex(StaticIndex.FORMAT, entries);
+        mapper.writeValue(outputDir.resolve(StaticIndex.VIEWS).toFile(), views);
+        mapper.writeValue(outputDir.resolve("index.json").toFile(), index);
+        return index;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> tree = Files.walk(dir)) {
+            for (Path p : tree.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+}
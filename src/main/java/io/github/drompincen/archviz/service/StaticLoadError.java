@@ -0,0 +1,6 @@
+package io.github.drompincen.archviz.service;
+
+/**
+ * A static diagram file that could not be loaded into the catalog.
+ */
+public record StaticLoadError(String location, String message) {}
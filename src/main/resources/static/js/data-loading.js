@@ -77,12 +77,23 @@ function addJsonFileOptionLegacy(filename) {
     }).catch(function() {});
 }
 
+// Page through /api/diagrams (a limit makes it answer {items, next}) until `next` runs out
+export function fetchAllDiagrams() {
+    function fetchPage(cursor, acc) {
+        var url = '/api/diagrams?limit=1000' + (cursor ? '&cursor=' + encodeURIComponent(cursor) : '');
+        return fetch(url).then(function(r) {
+            if (!r.ok) throw new Error('API unavailable');
+            return r.json();
+        }).then(function(page) {
+            acc = acc.concat(page.items);
+            return page.next ? fetchPage(page.next, acc) : acc;
+        });
+    }
+    return fetchPage(null, []);
+}
+
 function discoverJsonFiles() {
-    fetch('/api/diagrams').then(function(r) {
-        if (!r.ok) throw new Error('API unavailable');
-        return r.json();
-    }).then(function(diagrams) {
-        if (!diagrams) return;
+    fetchAllDiagrams().then(function(diagrams) {
         diagrams.forEach(function(d) {
             addApiDiagramOption(d);
         });
@@ -92,7 +103,32 @@ function discoverJsonFiles() {
     });
 }
 
+function addManifestOption(file) {
+    if (hasOptionForFile(file.file)) return;
+    var opt = document.createElement('option');
+    opt.value = file.file;
+    opt.textContent = file.title || file.file.replace('.json', '').replace(/[-_]/g, ' ');
+    opt.dataset.filename = file.file;
+    // Body is fetched from json/ only when the option is picked
+    opt.dataset.lazyFile = file.file;
+    dom.jsonSelector.appendChild(opt);
+}
+
 function fallbackDiscoverJsonFiles() {
+    fetch('json/manifest').then(function(r) {
+        if (!r.ok) throw new Error('Manifest unavailable');
+        return r.json();
+    }).then(function(manifest) {
+        manifest.files.forEach(function(file) {
+            if (file.bundled) addManifestOption(file);
+        });
+        sortDropdownOptions();
+    }).catch(function() {
+        scrapeJsonDirectoryListing();
+    });
+}
+
+function scrapeJsonDirectoryListing() {
     fetch('json/').then(function(r) {
         if (!r.ok) return;
         return r.text();
@@ -180,6 +216,26 @@ function initJsonSelector() {
             resetAnimation(true);
             return;
         }
+        var selectedOpt = dom.jsonSelector.options[dom.jsonSelector.selectedIndex];
+        if (selectedOpt && selectedOpt.dataset.lazyFile) {
+            fetch('json/' + selectedOpt.dataset.lazyFile).then(function(r) {
+                if (!r.ok) throw new Error('Not found');
+                return r.json();
+            }).then(function(data) {
+                state.SAMPLE_JSONS[key] = data;
+                state.currentDiagramMeta = null;
+                dom.input.value = JSON.stringify(data, null, 4);
+                syncCollabUrl(key);
+                render();
+                resetAnimation(true);
+            }).catch(function() {
+                dom.input.value = editorString;
+                state.currentDiagramMeta = null;
+                render();
+                resetAnimation(true);
+            });
+            return;
+        }
         fetch('/api/diagrams/' + key).then(function(r) {
             if (!r.ok) throw new Error('Not found');
             return r.json();
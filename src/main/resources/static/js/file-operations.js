@@ -4,7 +4,7 @@ import { state, dom } from './state.js';
 import { stripJsonComments, normalizeMultilineStrings } from './core-data.js';
 import { render } from './rendering.js';
 import { resetAnimation } from './animation.js';
-import { hasOptionForFile, sortDropdownOptions } from './data-loading.js';
+import { hasOptionForFile, sortDropdownOptions, fetchAllDiagrams } from './data-loading.js';
 
 function addApiDiagramOption(diagram) {
     if (hasOptionForFile(diagram.id)) return;
@@ -24,7 +24,7 @@ function refreshDiagramDropdown(selectId) {
     while (dom.jsonSelector.options.length > 1) {
         dom.jsonSelector.remove(1);
     }
-    fetch('/api/diagrams').then(function(r) { return r.json(); })
+    fetchAllDiagrams()
         .then(function(diagrams) {
             diagrams.forEach(function(d) { addApiDiagramOption(d); });
             sortDropdownOptions();
@@ -137,12 +137,16 @@ export function initFileOperations() {
             tags: tags,
             flow: flowData
         };
+        if (isUpdate && state.currentDiagramMeta.version) {
+            body.expectedVersion = state.currentDiagramMeta.version;
+        }
 
         fetch(url, {
             method: method,
             headers: { 'Content-Type': 'application/json' },
             body: JSON.stringify(body)
         }).then(function(r) {
+            if (r.status === 409) throw new Error('This diagram was changed by someone else since you loaded it. Reload it before saving.');
             if (!r.ok) throw new Error('Save failed: ' + r.status);
             return r.json();
         }).then(function(saved) {
@@ -1,10 +1,19 @@
 package io.github.drompincen.archviz;
 
+import io.github.drompincen.archviz.model.DiagramManifest;
+import io.github.drompincen.archviz.model.DiagramManifestEntry;
+import io.github.drompincen.archviz.service.StaticFileService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -14,6 +23,19 @@ class JsonListControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @MockBean
+    private StaticFileService staticFileService;
+
+    @BeforeEach
+    void setUp() {
+        Instant modified = Instant.parse("2025-01-15T10:30:00Z");
+        when(staticFileService.getManifest()).thenReturn(new DiagramManifest("abc123", modified, List.of(
+                new DiagramManifestEntry("file-order-platform", "order-platform.json", true,
+                        "Order Platform", 1200, 13, 16, 3, 3, modified, "deadbeef"),
+                new DiagramManifestEntry("file-external", "external.json", false,
+                        "External", 300, 2, 1, 0, 0, modified, "cafebabe"))));
+    }
+
     @Test
     void listJsonFiles_returnsHtml() throws Exception {
         mockMvc.perform(get("/json/"))
@@ -34,4 +56,39 @@ class JsonListControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string(org.hamcrest.Matchers.containsString(".json")));
     }
+
+    @Test
+    void listJsonFiles_onlyLinksBundledFiles() throws Exception {
+        mockMvc.perform(get("/json/"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(org.hamcrest.Matchers.not(
+                        org.hamcrest.Matchers.containsString("external.json"))));
+    }
+
+    @Test
+    void manifest_returnsEntriesWithCounts() throws Exception {
+        mockMvc.perform(get("/json/manifest"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/json"))
+                .andExpect(jsonPath("$.files[0].id").value("file-order-platform"))
+                .andExpect(jsonPath("$.files[0].title").value("Order Platform"))
+                .andExpect(jsonPath("$.files[0].nodes").value(13))
+                .andExpect(jsonPath("$.files[0].phases").value(3))
+                .andExpect(jsonPath("$.files[0].sha256").value("deadbeef"))
+                .andExpect(jsonPath("$.files[1].bundled").value(false));
+    }
+
+    @Test
+    void manifest_setsCachingHeaders() throws Exception {
+        mockMvc.perform(get("/json/manifest"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().string("Cache-Control", org.hamcrest.Matchers.containsString("max-age=60")));
+    }
+
+    @Test
+    void manifest_notModifiedWhenEtagMatches() throws Exception {
+        mockMvc.perform(get("/json/manifest").header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified());
+    }
 }
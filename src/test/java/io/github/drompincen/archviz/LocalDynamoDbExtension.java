@@ -9,23 +9,39 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 import java.io.IOException;
 import java.net.ServerSocket;
 
-public class LocalDynamoDbExtension implements BeforeAllCallback, AfterAllCallback {
+/**
+ * In-memory DynamoDB Local on a free port, started before the tests of a class
+ * and stopped after them. Outside JUnit, such as in the benchmarks, call
+ * {@link #start()} and close it when done.
+ */
+public class LocalDynamoDbExtension implements BeforeAllCallback, AfterAllCallback, AutoCloseable {
 
     private DynamoDBProxyServer server;
     private int port;
 
     @Override
     public void beforeAll(ExtensionContext context) throws Exception {
+        start();
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) throws Exception {
+        close();
+    }
+
+    public LocalDynamoDbExtension start() throws Exception {
         port = findFreePort();
         server = ServerRunner.createServerFromCommandLineArgs(
                 new String[]{"-inMemory", "-port", String.valueOf(port)});
         server.start();
+        return this;
     }
 
     @Override
-    public void afterAll(ExtensionContext context) throws Exception {
+    public void close() throws Exception {
         if (server != null) {
             server.stop();
+            server = null;
         }
     }
 
@@ -1,9 +1,21 @@
 package io.github.drompincen.archviz.controller;
 
+import io.github.drompincen.archviz.dto.DiagramBatchResult;
 import io.github.drompincen.archviz.dto.DiagramCreateRequest;
+import io.github.drompincen.archviz.filter.FilterParseException;
+import io.github.drompincen.archviz.index.CompletionIndex;
+import io.github.drompincen.archviz.model.Completion;
+import io.github.drompincen.archviz.model.ComponentUsage;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramFacets;
 import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.GraphMatch;
+import io.github.drompincen.archviz.model.Page;
+import io.github.drompincen.archviz.model.SearchHit;
+import io.github.drompincen.archviz.model.SimilarDiagram;
+import io.github.drompincen.archviz.repository.VersionConflictException;
 import io.github.drompincen.archviz.service.DiagramService;
+import io.github.drompincen.archviz.service.InvalidCursorException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.Test;
@@ -12,14 +24,23 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -39,25 +60,199 @@ class DiagramApiControllerTest {
     @Test
     void listDiagrams_returnsAll() throws Exception {
         List<DiagramSummary> summaries = List.of(
-                new DiagramSummary("1", "Test", "Desc", List.of("tag1"), 1, "db"));
-        when(diagramService.listAll(Optional.empty(), Optional.empty())).thenReturn(summaries);
+                new DiagramSummary("1", "Test", "Desc", List.of("tag1"), 1, "db", null));
+        when(diagramService.listAll(Optional.empty(), Optional.empty(), Optional.empty())).thenReturn(summaries);
 
-        mockMvc.perform(get("/api/diagrams"))
+        performAsync(get("/api/diagrams"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id").value("1"))
                 .andExpect(jsonPath("$[0].title").value("Test"));
+        verify(diagramService, never()).listPage(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void listDiagrams_limitReturnsPage() throws Exception {
+        List<DiagramSummary> summaries = List.of(
+                new DiagramSummary("1", "Test", "Desc", List.of("tag1"), 1, "db", null));
+        when(diagramService.listPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 5))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(summaries, null)));
+
+        performAsync(get("/api/diagrams").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("1"))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void listDiagrams_passesCursorAndClampsLimit() throws Exception {
+        when(diagramService.listPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("ZGI6YWJj"), 1000))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(Collections.emptyList(), "ZmlsZTow")));
+
+        performAsync(get("/api/diagrams").param("cursor", "ZGI6YWJj").param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isArray())
+                .andExpect(jsonPath("$.next").value("ZmlsZTow"));
+    }
+
+    @Test
+    void listDiagrams_invalidCursorIsBadRequest() throws Exception {
+        when(diagramService.listPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("bogus"), 100))
+                .thenThrow(new InvalidCursorException("bogus"));
+
+        mockMvc.perform(get("/api/diagrams").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid cursor: bogus"));
     }
 
     @Test
     void listDiagrams_withTagFilter() throws Exception {
-        when(diagramService.listAll(Optional.of("java"), Optional.empty()))
+        when(diagramService.listAll(Optional.of("java"), Optional.empty(), Optional.empty()))
+                .thenReturn(Collections.emptyList());
+
+        performAsync(get("/api/diagrams").param("tag", "java"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray());
+    }
+
+    @Test
+    void listDiagrams_withFilterExpression() throws Exception {
+        when(diagramService.listAll(Optional.empty(), Optional.empty(), Optional.of("phases >= 3 AND tag in (aws, core)")))
                 .thenReturn(Collections.emptyList());
 
-        mockMvc.perform(get("/api/diagrams").param("tag", "java"))
+        performAsync(get("/api/diagrams").param("filter", "phases >= 3 AND tag in (aws, core)"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
     }
 
+    @Test
+    void listDiagrams_invalidFilterIsBadRequest() throws Exception {
+        when(diagramService.listAll(Optional.empty(), Optional.empty(), Optional.of("phases >>")))
+                .thenThrow(new FilterParseException("Expected a value", 8));
+
+        mockMvc.perform(get("/api/diagrams").param("filter", "phases >>"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Expected a value at position 8"));
+    }
+
+    @Test
+    void listDiagrams_facetMode() throws Exception {
+        when(diagramService.facets(Optional.of("java"), Optional.empty(), Optional.empty())).thenReturn(
+                new DiagramFacets(2, Map.of("java", 2), Map.of("service", 2, "database", 1), Map.of("vpc", 1), 1));
+
+        mockMvc.perform(get("/api/diagrams").param("facets", "true").param("tag", "java"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.nodeTypes.service").value(2))
+                .andExpect(jsonPath("$.zoneTypes.vpc").value(1));
+    }
+
+    @Test
+    void searchDiagrams_returnsRankedHits() throws Exception {
+        when(diagramService.search("kafka", 20)).thenReturn(List.of(
+                new SearchHit("file-events", "Event Pipeline", "file", 2.5, List.of("node:kafka", "sequence:1"))));
+
+        mockMvc.perform(get("/api/diagrams/search").param("q", "kafka"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("file-events"))
+                .andExpect(jsonPath("$[0].matches[0]").value("node:kafka"));
+    }
+
+    @Test
+    void searchDiagrams_clampsLimit() throws Exception {
+        when(diagramService.search("kafka", 200)).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/diagrams/search").param("q", "kafka").param("limit", "100000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    void autocomplete_returnsCompletions() throws Exception {
+        when(diagramService.autocomplete("ka", 5)).thenReturn(List.of(
+                new Completion("Kafka", "label", 3), new Completion("kafka", "tag", 1)));
+
+        mockMvc.perform(get("/api/diagrams/autocomplete").param("prefix", "ka").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text").value("Kafka"))
+                .andExpect(jsonPath("$[0].kind").value("label"))
+                .andExpect(jsonPath("$[1].kind").value("tag"));
+    }
+
+    @Test
+    void autocomplete_clampsLimit() throws Exception {
+        when(diagramService.autocomplete(any(), anyInt())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/diagrams/autocomplete").param("prefix", "ka").param("limit", "100000"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/diagrams/autocomplete").param("prefix", "ka").param("limit", "-1"))
+                .andExpect(status().isOk());
+
+        verify(diagramService).autocomplete("ka", CompletionIndex.MAX_LIMIT);
+        verify(diagramService).autocomplete("ka", 1);
+    }
+
+    @Test
+    void graphQuery_returnsMatchingPaths() throws Exception {
+        when(diagramService.graphQuery("gateway -> database", Optional.of("p2"), 50)).thenReturn(List.of(
+                new GraphMatch("file-shop", "Shop", "file", List.of(List.of("gw", "orders-db")))));
+
+        mockMvc.perform(get("/api/diagrams/graph").param("pattern", "gateway -> database").param("phase", "p2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("file-shop"))
+                .andExpect(jsonPath("$[0].paths[0][1]").value("orders-db"));
+    }
+
+    @Test
+    void graphQuery_invalidPatternIsBadRequest() throws Exception {
+        when(diagramService.graphQuery("gateway", Optional.empty(), 50))
+                .thenThrow(new FilterParseException("Pattern needs at least one '->' or '--'", 7));
+
+        mockMvc.perform(get("/api/diagrams/graph").param("pattern", "gateway"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void componentUsage_returnsReferencingDiagrams() throws Exception {
+        when(diagramService.componentUsage("Aurora Postgres")).thenReturn(List.of(
+                new ComponentUsage("db-1", "Orders", "db", List.of("aurora"), List.of("p2"), List.of("checkout"))));
+
+        mockMvc.perform(get("/api/diagrams/components").param("name", "Aurora Postgres"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("db-1"))
+                .andExpect(jsonPath("$[0].flows[0]").value("checkout"));
+    }
+
+    @Test
+    void similarTo_existingDiagram() throws Exception {
+        when(diagramService.similarTo("db-1", 10)).thenReturn(Optional.of(List.of(
+                new SimilarDiagram("file-shop", "Shop", "file", 0.75))));
+
+        mockMvc.perform(get("/api/diagrams/db-1/similar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("file-shop"))
+                .andExpect(jsonPath("$[0].similarity").value(0.75));
+    }
+
+    @Test
+    void similarTo_unknownDiagram() throws Exception {
+        when(diagramService.similarTo("missing", 10)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/diagrams/missing/similar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void similarTo_uploadedDiagram() throws Exception {
+        when(diagramService.similarTo(any(DiagramCreateRequest.class), eq(5))).thenReturn(List.of(
+                new SimilarDiagram("db-1", "Orders", "db", 0.5)));
+
+        mockMvc.perform(post("/api/diagrams/similar").param("limit", "5")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Draft\",\"flow\":{\"nodes\":[]}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("db-1"));
+    }
+
     @Test
     void getDiagram_found() throws Exception {
         Diagram d = new Diagram();
@@ -66,9 +261,9 @@ class DiagramApiControllerTest {
         d.setTags(List.of());
         d.setVersion(1);
         d.setSource("db");
-        when(diagramService.getById("1")).thenReturn(Optional.of(d));
+        when(diagramService.getById("1")).thenReturn(CompletableFuture.completedFuture(Optional.of(d)));
 
-        mockMvc.perform(get("/api/diagrams/1"))
+        performAsync(get("/api/diagrams/1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value("1"))
                 .andExpect(jsonPath("$.title").value("Test Diagram"));
@@ -76,9 +271,9 @@ class DiagramApiControllerTest {
 
     @Test
     void getDiagram_notFound() throws Exception {
-        when(diagramService.getById("missing")).thenReturn(Optional.empty());
+        when(diagramService.getById("missing")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
 
-        mockMvc.perform(get("/api/diagrams/missing"))
+        performAsync(get("/api/diagrams/missing"))
                 .andExpect(status().isNotFound());
     }
 
@@ -93,13 +288,13 @@ class DiagramApiControllerTest {
         created.setCreatedAt(Instant.now());
         created.setUpdatedAt(Instant.now());
 
-        when(diagramService.create(any())).thenReturn(created);
+        when(diagramService.create(any())).thenReturn(CompletableFuture.completedFuture(created));
 
         ObjectNode flow = objectMapper.createObjectNode();
         flow.put("title", "Test");
         DiagramCreateRequest request = new DiagramCreateRequest("New Diagram", "Desc", List.of("tag1"), flow);
 
-        mockMvc.perform(post("/api/diagrams")
+        performAsync(post("/api/diagrams")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isCreated())
@@ -116,9 +311,9 @@ class DiagramApiControllerTest {
         updated.setVersion(2);
         updated.setSource("db");
 
-        when(diagramService.update(eq("1"), any())).thenReturn(Optional.of(updated));
+        when(diagramService.update(eq("1"), any())).thenReturn(CompletableFuture.completedFuture(Optional.of(updated)));
 
-        mockMvc.perform(put("/api/diagrams/1")
+        performAsync(put("/api/diagrams/1")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"title\":\"Updated\",\"description\":null,\"tags\":[],\"flow\":null}"))
                 .andExpect(status().isOk())
@@ -128,11 +323,66 @@ class DiagramApiControllerTest {
 
     @Test
     void updateDiagram_notFound() throws Exception {
-        when(diagramService.update(eq("missing"), any())).thenReturn(Optional.empty());
+        when(diagramService.update(eq("missing"), any())).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
 
-        mockMvc.perform(put("/api/diagrams/missing")
+        performAsync(put("/api/diagrams/missing")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"title\":\"X\",\"description\":null,\"tags\":[],\"flow\":null}"))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void updateDiagram_versionConflict() throws Exception {
+        when(diagramService.update(eq("1"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new VersionConflictException("1", 2, 3)));
+
+        performAsync(put("/api/diagrams/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"X\",\"tags\":[],\"flow\":null,\"expectedVersion\":2}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Diagram 1 is at version 3, not 2"));
+    }
+
+    @Test
+    void batch_returnsResultPerOperation() throws Exception {
+        Diagram found = new Diagram();
+        found.setId("1");
+        found.setTitle("Found");
+        found.setTags(List.of());
+        found.setVersion(1);
+        found.setSource("db");
+
+        when(diagramService.batch(any())).thenReturn(CompletableFuture.completedFuture(List.of(
+                DiagramBatchResult.ok("get", 200, found),
+                DiagramBatchResult.error("get", "missing", 404, "Not found"))));
+
+        performAsync(post("/api/diagrams/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\":[{\"op\":\"get\",\"id\":\"1\"},{\"op\":\"get\",\"id\":\"missing\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[0].diagram.title").value("Found"))
+                .andExpect(jsonPath("$[1].status").value(404))
+                .andExpect(jsonPath("$[1].id").value("missing"));
+    }
+
+    @Test
+    void batch_tooManyOperations() throws Exception {
+        String operation = "{\"op\":\"get\",\"id\":\"1\"}";
+        String operations = String.join(",", Collections.nCopies(DiagramService.MAX_BATCH + 1, operation));
+
+        performAsync(post("/api/diagrams/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\":[" + operations + "]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(diagramService);
+    }
+
+    // Handlers return futures; the response is written on the async dispatch
+    private ResultActions performAsync(RequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
 }
@@ -0,0 +1,87 @@
+package io.github.drompincen.archviz.filter;
+
+import io.github.drompincen.archviz.model.DiagramStats;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramFilterTest {
+
+    private final DiagramSummary lambdaApp = summary("1", "Serverless Orders", List.of("aws", "core"),
+            new DiagramStats(4, Map.of("lambda", 2, "database", 2), 3, 3, 1, List.of("vpc"), true));
+    private final DiagramSummary monolith = summary("2", "Monolith", List.of("legacy"),
+            new DiagramStats(2, Map.of("service", 2), 1, 0, 0, List.of(), false));
+    private final DiagramSummary noStats = summary("3", "Unindexed", List.of("aws"), null);
+
+    @Test
+    void parse_combinesComparisons() {
+        DiagramFilter f = DiagramFilter.parse("nodes.type == lambda AND phases >= 3 AND tag in (aws, core)");
+
+        assertTrue(f.test(lambdaApp));
+        assertFalse(f.test(monolith));
+        assertFalse(f.test(noStats));
+    }
+
+    @Test
+    void parse_precedenceAndParentheses() {
+        assertTrue(DiagramFilter.parse("tag == legacy OR story == true AND phases > 5").test(monolith));
+        assertFalse(DiagramFilter.parse("(tag == legacy OR story == true) AND phases > 5").test(monolith));
+        assertTrue(DiagramFilter.parse("NOT tag == legacy").test(lambdaApp));
+        assertTrue(DiagramFilter.parse("not (nodes.type = service or zones.type = vpc)").test(noStats));
+    }
+
+    @Test
+    void parse_textOperators() {
+        assertTrue(DiagramFilter.parse("title ~ ORDERS").test(lambdaApp));
+        assertTrue(DiagramFilter.parse("title == 'Serverless Orders'").test(lambdaApp));
+        assertTrue(DiagramFilter.parse("title != \"Serverless Orders\"").test(monolith));
+        assertTrue(DiagramFilter.parse("version in (1, 2)").test(monolith));
+    }
+
+    @Test
+    void parse_buildsExpressionTree() {
+        FilterExpression e = DiagramFilter.parse("phases >= 3 AND tag in (aws, core)").expression();
+
+        assertEquals(new FilterExpression.And(List.of(
+                new FilterExpression.Comparison(FilterField.PHASES, FilterOp.GE, List.of("3")),
+                new FilterExpression.Comparison(FilterField.TAG, FilterOp.IN, List.of("aws", "core")))), e);
+    }
+
+    @Test
+    void parse_rejectsInvalidFilters() {
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse("color == red"));
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse("phases >= many"));
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse("tag > aws"));
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse("tag == aws AND"));
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse("(tag == aws"));
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse("title == 'open"));
+        FilterParseException e = assertThrows(FilterParseException.class, () -> DiagramFilter.parse("story == maybe"));
+        assertTrue(e.getMessage().contains("true or false"), e.getMessage());
+    }
+
+    @Test
+    void parse_inSkipsMissingText() {
+        DiagramSummary untitled = summary("4", null, List.of(), null);
+
+        assertFalse(DiagramFilter.parse("title in (Monolith, 'Serverless Orders')").test(untitled));
+        assertTrue(DiagramFilter.parse("title in (Monolith, 'Serverless Orders')").test(monolith));
+    }
+
+    @Test
+    void parse_rejectsDeepNesting() {
+        String nested = "(".repeat(10_000) + "tag == aws" + ")".repeat(10_000);
+        String negated = "NOT ".repeat(10_000) + "tag == aws";
+
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse(nested));
+        assertThrows(FilterParseException.class, () -> DiagramFilter.parse(negated));
+        assertTrue(DiagramFilter.parse("(".repeat(20) + "tag == aws" + ")".repeat(20)).test(noStats));
+    }
+
+    private static DiagramSummary summary(String id, String title, List<String> tags, DiagramStats stats) {
+        return new DiagramSummary(id, title, null, tags, 1, "db", stats);
+    }
+}
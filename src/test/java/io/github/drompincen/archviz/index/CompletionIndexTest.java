@@ -0,0 +1,106 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Completion;
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionIndexTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CompletionIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new CompletionIndex();
+        index.index(diagram("1", "Order Service", List.of("kafka"),
+                "[{\"id\": \"k\", \"label\": \"Kafka\", \"type\": \"queue\"}]"));
+        index.index(diagram("2", "Kafka Streams Pipeline", List.of("streaming"),
+                "[{\"id\": \"k\", \"label\": \"Kafka\", \"type\": \"queue\"}, {\"id\": \"db\", \"label\": \"Orders DB\", \"type\": \"database\"}]"));
+    }
+
+    @Test
+    void complete_ranksByDiagramCount() {
+        List<Completion> result = index.complete("ka", 10);
+
+        assertEquals(new Completion("Kafka", "label", 2), result.get(0));
+        assertTrue(result.contains(new Completion("kafka", "tag", 1)));
+        assertTrue(result.contains(new Completion("Kafka Streams Pipeline", "title", 1)));
+    }
+
+    @Test
+    void complete_matchesLaterWordsOfTitlesAndLabels() {
+        assertEquals(List.of(new Completion("Order Service", "title", 1)), index.complete("serv", 10));
+        assertEquals(List.of(new Completion("Orders DB", "label", 1)), index.complete("db", 10));
+    }
+
+    @Test
+    void complete_ignoresCaseAndRespectsLimit() {
+        assertEquals(1, index.complete("ORD", 1).size());
+        assertEquals(2, index.complete("ORD", 10).size());
+        assertEquals(List.of(new Completion("queue", "type", 2)), index.complete("qu", 10));
+    }
+
+    @Test
+    void index_patchesChangedTerms() throws Exception {
+        index.complete("", 10); // populate the caches before the write
+
+        index.index(diagram("1", "Order Service", List.of("kafka"),
+                "[{\"id\": \"r\", \"label\": \"RabbitMQ\", \"type\": \"queue\"}]"));
+
+        assertEquals(new Completion("Kafka", "label", 1), index.complete("kafka", 1).get(0));
+        assertEquals(List.of(new Completion("RabbitMQ", "label", 1)), index.complete("rab", 10));
+    }
+
+    @Test
+    void remove_dropsTermsAndPrunesTrie() {
+        index.remove("2");
+
+        assertTrue(index.complete("str", 10).isEmpty());
+        assertTrue(index.complete("da", 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void complete_seesEachWriteWholeWhileWritesRun() throws Exception {
+        Diagram kafka = diagram("3", "Audit", List.of(), "[{\"id\": \"k\", \"label\": \"Kafka\"}]");
+        Diagram none = diagram("3", "Audit", List.of(), "[]");
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    int count = index.complete("kafka", 1).get(0).count();
+                    assertTrue(count == 2 || count == 3, "count " + count);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 2_000; i++) {
+            index.index(i % 2 == 0 ? kafka : none);
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(new Completion("Kafka", "label", 2), index.complete("kafka", 1).get(0));
+    }
+
+    private Diagram diagram(String id, String title, List<String> tags, String nodesJson) throws Exception {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle(title);
+        d.setTags(tags);
+        d.setFlow(objectMapper.readTree("{\"nodes\": " + nodesJson + "}"));
+        return d;
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.ComponentUsage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.github.drompincen.archviz.index.TestDiagrams.diagram;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComponentIndexTest {
+
+    private ComponentIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new ComponentIndex();
+        index.index(diagram("orders", """
+                {"nodes": [{"id": "aurora", "type": "database", "label": "Aurora\\nPostgres", "phase": "p2"},
+                           {"id": "sqs-orders", "type": "queue", "label": "SQS Orders"}],
+                 "flows": [{"id": "checkout", "sequence": [{"from": "api", "to": "aurora"}]},
+                           {"id": "refund", "sequence": [{"from": "sqs-orders", "to": "api"}]}]}
+                """));
+        index.index(diagram("reports", """
+                {"nodes": [{"id": "rds", "type": "database", "label": "Aurora Postgres", "phase": ["p1", "p3"]}]}
+                """));
+    }
+
+    @Test
+    void lookup_matchesNormalisedLabel() {
+        List<ComponentUsage> usages = index.lookup("aurora  POSTGRES");
+
+        assertEquals(List.of("orders", "reports"), usages.stream().map(ComponentUsage::id).toList());
+        ComponentUsage orders = usages.get(0);
+        assertEquals(List.of("aurora"), orders.nodes());
+        assertEquals(List.of("p2"), orders.phases());
+        assertEquals(List.of("checkout"), orders.flows());
+        assertEquals(List.of("p1", "p3"), usages.get(1).phases());
+    }
+
+    @Test
+    void lookup_matchesTypeAndId() {
+        assertEquals(2, index.lookup("database").size());
+        assertEquals(List.of("refund"), index.lookup("sqs-orders").get(0).flows());
+        assertEquals(List.of("sqs-orders"), index.lookup("SQS Orders").get(0).nodes());
+        assertTrue(index.lookup("elasticache").isEmpty());
+    }
+
+    @Test
+    void index_updatesChangedDiagramOnly() throws Exception {
+        index.lookup("database"); // build the cached list before the write
+
+        index.index(diagram("reports", "{\"nodes\": [{\"id\": \"cache\", \"type\": \"cache\", \"label\": \"ElastiCache\"}]}"));
+
+        assertEquals(List.of("orders"), index.lookup("database").stream().map(ComponentUsage::id).toList());
+        assertEquals(List.of("reports"), index.lookup("ElastiCache").stream().map(ComponentUsage::id).toList());
+    }
+
+    @Test
+    void remove_dropsUsages() {
+        index.remove("orders");
+
+        assertTrue(index.lookup("sqs orders").isEmpty());
+        assertEquals(1, index.lookup("aurora postgres").size());
+    }
+}
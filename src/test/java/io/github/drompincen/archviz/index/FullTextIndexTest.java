@@ -0,0 +1,78 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.SearchHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.github.drompincen.archviz.index.TestDiagrams.diagram;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FullTextIndexTest {
+
+    private FullTextIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new FullTextIndex();
+        index.index(diagram("orders", "Order Service", """
+                {"nodes": [{"id": "kafka", "label": "Kafka Broker"}, {"id": "db", "label": "Orders DB"}],
+                 "sequence": [{"from": "api", "to": "kafka", "text": "Publish order event to Kafka"}],
+                 "notes": "Kafka topics are partitioned by customer"}
+                """));
+        index.index(diagram("billing", "Billing", """
+                {"nodes": [{"id": "ledger", "label": "Ledger"}],
+                 "flows": [{"id": "refund", "name": "Refund", "sequence": [{"text": "Consume refund from Kafka"}]}],
+                 "story": {"problem": {"headline": "Manual reconciliation"}}}
+                """));
+        index.index(diagram("rag", "RAG Pipeline", """
+                {"nodes": [{"id": "vec", "label": "Vector Store"}], "sequence": [{"text": "Embed query"}]}
+                """));
+    }
+
+    @Test
+    void search_ranksByTermFrequency() {
+        List<SearchHit> hits = index.search("kafka", 10);
+
+        assertEquals(List.of("orders", "billing"), hits.stream().map(SearchHit::id).toList());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void search_reportsMatchingNodesAndSteps() {
+        SearchHit orders = index.search("kafka", 10).get(0);
+        assertEquals(List.of("notes", "node:kafka", "sequence:0"), orders.matches());
+
+        SearchHit billing = index.search("refund", 10).get(0);
+        assertEquals(List.of("flow:refund", "flow:refund:0"), billing.matches());
+    }
+
+    @Test
+    void search_indexesStoryText() {
+        assertEquals("billing", index.search("reconciliation", 10).get(0).id());
+    }
+
+    @Test
+    void search_respectsLimitAndIgnoresStopWords() {
+        assertEquals(1, index.search("kafka", 1).size());
+        assertTrue(index.search("the to of", 10).isEmpty());
+    }
+
+    @Test
+    void index_replacesPreviousVersion() throws Exception {
+        index.index(diagram("orders", "Order Service", "{\"nodes\": [{\"id\": \"q\", \"label\": \"RabbitMQ\"}]}"));
+
+        assertEquals(List.of("billing"), index.search("kafka", 10).stream().map(SearchHit::id).toList());
+        assertEquals("orders", index.search("rabbitmq", 10).get(0).id());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void remove_dropsDocument() {
+        index.remove("rag");
+
+        assertTrue(index.search("vector", 10).isEmpty());
+        assertEquals(2, index.size());
+    }
+}
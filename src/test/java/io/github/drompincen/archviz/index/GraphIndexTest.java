@@ -0,0 +1,92 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.filter.FilterParseException;
+import io.github.drompincen.archviz.filter.GraphPattern;
+import io.github.drompincen.archviz.model.GraphMatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static io.github.drompincen.archviz.index.TestDiagrams.diagram;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphIndexTest {
+
+    private GraphIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new GraphIndex();
+        index.index(diagram("shop", """
+                {"phases": [{"id": "p1"}, {"id": "p2"}],
+                 "nodes": [{"id": "gw", "type": "gateway", "tag": "aws"},
+                           {"id": "svc", "type": "service", "tag": "core"},
+                           {"id": "db", "type": "database", "tag": "data", "phase": "p2"}],
+                 "connections": [{"from": "gw", "to": "svc"}, {"from": "svc", "to": "db", "phase": "p2"},
+                                 {"from": "gw", "to": "db", "phase": "p2"}]}
+                """));
+        index.index(diagram("uploads", """
+                {"nodes": [{"id": "fn", "type": "lambda", "tag": "aws"}, {"id": "s3", "type": "storage", "tag": "aws"}],
+                 "connections": [{"from": "fn", "to": "s3"}]}
+                """));
+    }
+
+    @Test
+    void match_directEdgeByType() {
+        List<GraphMatch> matches = query("gateway -> database", Optional.empty());
+
+        assertEquals(1, matches.size());
+        assertEquals("shop", matches.get(0).id());
+        assertEquals(List.of(List.of("gw", "db")), matches.get(0).paths());
+    }
+
+    @Test
+    void match_respectsDirection() {
+        assertEquals(List.of("uploads"), ids(query("lambda -> storage", Optional.empty())));
+        assertTrue(query("storage -> lambda", Optional.empty()).isEmpty());
+        assertEquals(List.of("uploads"), ids(query("storage -- lambda", Optional.empty())));
+    }
+
+    @Test
+    void match_multiHopWithTagsAndWildcards() {
+        GraphMatch m = query("tag:aws -> * -> tag:data", Optional.empty()).get(0);
+        assertEquals(List.of(List.of("gw", "svc", "db")), m.paths());
+
+        assertEquals(List.of("shop", "uploads"), ids(query("tag:aws -> *", Optional.empty())));
+    }
+
+    @Test
+    void match_filtersByPhaseVisibility() {
+        assertTrue(query("gateway -> database", Optional.of("p1")).isEmpty());
+        assertEquals(List.of("shop"), ids(query("gateway -> database", Optional.of("p2"))));
+        // Diagrams without the phase are skipped
+        assertTrue(query("lambda -> storage", Optional.of("p2")).isEmpty());
+    }
+
+    @Test
+    void index_replacesAndRemovesGraphs() throws Exception {
+        index.index(diagram("uploads", "{\"nodes\": [{\"id\": \"fn\", \"type\": \"lambda\"}]}"));
+        assertTrue(query("lambda -> storage", Optional.empty()).isEmpty());
+
+        index.remove("shop");
+        assertTrue(query("gateway -> *", Optional.empty()).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void parse_rejectsInvalidPatterns() {
+        assertThrows(FilterParseException.class, () -> GraphPattern.parse("gateway"));
+        assertThrows(FilterParseException.class, () -> GraphPattern.parse("gateway -> "));
+        assertThrows(FilterParseException.class, () -> GraphPattern.parse("a -> b -> c -> d -> e -> f"));
+    }
+
+    private List<GraphMatch> query(String pattern, Optional<String> phase) {
+        return index.match(GraphPattern.parse(pattern), phase, 50);
+    }
+
+    private static List<String> ids(List<GraphMatch> matches) {
+        return matches.stream().map(GraphMatch::id).toList();
+    }
+}
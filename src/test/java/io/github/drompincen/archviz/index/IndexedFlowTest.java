@@ -0,0 +1,62 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedFlowTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void project_keepsWhatIndexesReadAndDropsLayout() throws Exception {
+        JsonNode flow = objectMapper.readTree("""
+                {"title": "Orders", "notes": "Handles orders",
+                 "nodes": [{"id": "api", "label": "Order API", "type": "service", "tag": "edge", "phase": ["p1"],
+                            "x": 120, "y": 40, "style": {"color": "#fff"}},
+                           {"id": "db", "label": "Orders DB", "type": "database"}],
+                 "connections": [{"from": "api", "to": "db", "phase": "p1", "label": "writes", "curve": 0.3}],
+                 "phases": [{"id": "p1", "name": "Launch"}],
+                 "zones": [{"id": "z", "type": "vpc", "x": 0, "width": 400}],
+                 "sequence": [{"text": "Place order", "from": "api", "to": "db", "delay": 500}],
+                 "flows": [{"id": "checkout", "name": "Checkout", "color": "red",
+                            "sequence": [{"from": "api", "to": "db", "text": "Save", "delay": 200}]}],
+                 "story": {"problem": {"headline": "Slow", "description": "Too slow", "image": "a.png"},
+                           "vision": {"summary": "Fast", "description": "Much faster"}, "theme": "dark"}}
+                """);
+
+        JsonNode projected = IndexedFlow.project(flow);
+
+        assertFalse(projected.has("title"));
+        assertFalse(projected.get("nodes").get(0).has("x"));
+        assertFalse(projected.get("zones").get(0).has("width"));
+        assertFalse(projected.get("flows").get(0).get("sequence").get(0).has("delay"));
+        assertFalse(projected.get("story").has("theme"));
+        assertEquals(StatsIndex.compute(flow), StatsIndex.compute(projected));
+        assertEquals(DiagramText.passages(diagram(flow)), DiagramText.passages(diagram(projected)));
+        ComponentIndex full = new ComponentIndex();
+        full.index(diagram(flow));
+        ComponentIndex fromView = new ComponentIndex();
+        fromView.index(diagram(projected));
+        assertFalse(full.lookup("Order API").isEmpty());
+        assertEquals(full.lookup("Order API"), fromView.lookup("Order API"));
+    }
+
+    @Test
+    void project_leavesNonObjectsAlone() throws Exception {
+        assertNull(IndexedFlow.project(null));
+        JsonNode array = objectMapper.readTree("[1, 2]");
+        assertSame(array, IndexedFlow.project(array));
+    }
+
+    private static Diagram diagram(JsonNode flow) {
+        Diagram d = new Diagram();
+        d.setId("1");
+        d.setTitle("Orders");
+        d.setFlow(flow);
+        return d;
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.SimilarDiagram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static io.github.drompincen.archviz.index.TestDiagrams.diagram;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarityIndexTest {
+
+    private static final String SERVERLESS = """
+            {"nodes": [{"id": "gw", "type": "gateway", "label": "API Gateway"},
+                       {"id": "fn", "type": "lambda", "label": "Order Handler"},
+                       {"id": "db", "type": "database", "label": "DynamoDB"},
+                       {"id": "s3", "type": "storage", "label": "Receipts"}],
+             "connections": [{"from": "gw", "to": "fn"}, {"from": "fn", "to": "db"}, {"from": "fn", "to": "s3"}]}
+            """;
+
+    private SimilarityIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new SimilarityIndex();
+        index.index(diagram("serverless", SERVERLESS));
+        // Same shape, one label changed
+        index.index(diagram("serverless-v2", SERVERLESS.replace("Receipts", "Invoices")));
+        index.index(diagram("mainframe", """
+                {"nodes": [{"id": "t", "type": "user", "label": "Teller"}, {"id": "m", "type": "ec2", "label": "CICS"}],
+                 "connections": [{"from": "t", "to": "m"}]}
+                """));
+    }
+
+    @Test
+    void similarTo_ranksNearDuplicatesFirst() {
+        List<SimilarDiagram> similar = index.similarTo("serverless", 10).orElseThrow();
+
+        assertEquals("serverless-v2", similar.get(0).id());
+        // 10 of 12 features shared
+        assertEquals(10.0 / 12, similar.get(0).similarity(), 0.15);
+        assertTrue(similar.stream().noneMatch(s -> s.id().equals("serverless")));
+        assertTrue(similar.stream().noneMatch(s -> s.id().equals("mainframe")));
+    }
+
+    @Test
+    void similarTo_unindexedDiagramIsNotAdded() throws Exception {
+        List<SimilarDiagram> similar = index.similarTo(diagram(null, SERVERLESS), 1);
+
+        assertEquals(1, similar.size());
+        assertEquals("serverless", similar.get(0).id());
+        assertEquals(1.0, similar.get(0).similarity(), 0.0);
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void similarTo_unknownOrEmpty() throws Exception {
+        assertTrue(index.similarTo("missing", 10).isEmpty());
+        index.index(diagram("blank", "{}"));
+        assertTrue(index.similarTo("blank", 10).isEmpty());
+    }
+
+    @Test
+    void remove_dropsFromBuckets() {
+        index.remove("serverless-v2");
+
+        assertTrue(index.similarTo("serverless", 10).orElseThrow().isEmpty());
+    }
+
+    @Test
+    void features_includeTypedConnections() throws Exception {
+        Set<String> features = SimilarityIndex.features(diagram("x", SERVERLESS));
+
+        assertTrue(features.contains("edge:lambda>storage"));
+        assertTrue(features.contains("label:api gateway"));
+        assertEquals(11, features.size());
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramFacets;
+import io.github.drompincen.archviz.model.DiagramStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsIndexTest {
+
+    private StatsIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        index = new StatsIndex();
+        index.index(diagram("1", List.of("java", "kafka"), """
+                {"nodes": [{"id": "a", "type": "service"}, {"id": "b", "type": "service"}, {"id": "c", "type": "database"}],
+                 "connections": [{"from": "a", "to": "b"}], "zones": [{"id": "z", "type": "vpc"}],
+                 "phases": [{"id": "p1"}, {"id": "p2"}], "story": {}}
+                """));
+        index.index(diagram("2", List.of("java"), """
+                {"nodes": [{"id": "a", "type": "service"}], "flows": [{"id": "f"}]}
+                """));
+    }
+
+    @Test
+    void stats_computedOnIndex() {
+        DiagramStats stats = index.stats("1");
+
+        assertEquals(3, stats.nodes());
+        assertEquals(Map.of("service", 2, "database", 1), stats.nodesByType());
+        assertEquals(1, stats.connections());
+        assertEquals(2, stats.phases());
+        assertEquals(List.of("vpc"), stats.zoneTypes());
+        assertTrue(stats.story());
+        assertEquals(1, index.stats("2").flows());
+        assertNull(index.stats("missing"));
+    }
+
+    @Test
+    void facets_countDiagramsPerValue() {
+        DiagramFacets facets = index.facets();
+
+        assertEquals(2, facets.total());
+        assertEquals(Map.of("java", 2, "kafka", 1), facets.tags());
+        assertEquals(List.of("service", "database"), List.copyOf(facets.nodeTypes().keySet()));
+        assertEquals(2, facets.nodeTypes().get("service"));
+        assertEquals(1, facets.withStory());
+    }
+
+    @Test
+    void facets_filteredMatchesRunningTotalsForAllIds() {
+        assertEquals(index.facets(), index.facets(List.of("1", "2", "unknown")));
+        assertEquals(Map.of("java", 1), index.facets(List.of("2")).tags());
+    }
+
+    @Test
+    void index_replacesPreviousTotals() throws Exception {
+        index.index(diagram("1", List.of("go"), "{\"nodes\": [{\"id\": \"q\", \"type\": \"queue\"}]}"));
+
+        DiagramFacets facets = index.facets();
+        assertEquals(Map.of("java", 1, "go", 1), facets.tags());
+        assertEquals(Map.of("service", 1, "queue", 1), facets.nodeTypes());
+        assertTrue(facets.zoneTypes().isEmpty());
+        assertEquals(0, facets.withStory());
+    }
+
+    @Test
+    void remove_subtractsFromTotals() {
+        index.remove("2");
+
+        assertEquals(1, index.facets().total());
+        assertEquals(Map.of("java", 1, "kafka", 1), index.facets().tags());
+    }
+
+    private Diagram diagram(String id, List<String> tags, String flowJson) {
+        Diagram d = TestDiagrams.diagram(id, flowJson);
+        d.setTags(tags);
+        return d;
+    }
+}
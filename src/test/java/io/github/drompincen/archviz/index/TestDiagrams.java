@@ -0,0 +1,33 @@
+package io.github.drompincen.archviz.index;
+
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+
+/** Stored diagrams built from a flow literal, for the index tests. */
+final class TestDiagrams {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private TestDiagrams() {}
+
+    /** A stored diagram titled with its id. */
+    static Diagram diagram(String id, String flowJson) {
+        return diagram(id, id, flowJson);
+    }
+
+    static Diagram diagram(String id, String title, String flowJson) {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle(title);
+        d.setSource("db");
+        try {
+            d.setFlow(OBJECT_MAPPER.readTree(flowJson));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return d;
+    }
+}
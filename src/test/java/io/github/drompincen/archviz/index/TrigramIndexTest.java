@@ -0,0 +1,71 @@
+package io.github.drompincen.archviz.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        index.put("1", "Microservice Architecture", "Payments and orders");
+        index.put("2", "Event Pipeline", null);
+        index.put("3", "RAG Pipeline Architecture", "Retrieval");
+    }
+
+    @Test
+    void search_substringIgnoringCase() {
+        assertEquals(Set.of("2", "3"), index.search("PIPEline"));
+        assertEquals(Set.of("1"), index.search("roserv"));
+    }
+
+    @Test
+    void search_matchesSecondaryField() {
+        assertEquals(Set.of("1"), index.search("orders"));
+    }
+
+    @Test
+    void search_doesNotMatchAcrossFields() {
+        assertTrue(index.search("urepay").isEmpty());
+    }
+
+    @Test
+    void search_requiresAdjacentGrams() {
+        // Every gram of "abcde" occurs in "abcd bcde", but the substring does not
+        index.put("4", "abcd bcde");
+        assertTrue(index.search("abcde").isEmpty());
+    }
+
+    @Test
+    void search_shortQueryFallsBackToScan() {
+        assertEquals(Set.of("1", "3"), index.search("ar"));
+    }
+
+    @Test
+    void search_emptyQueryMatchesAll() {
+        assertEquals(Set.of("1", "2", "3"), index.search(""));
+    }
+
+    @Test
+    void put_replacesPreviousText() {
+        index.put("2", "Batch Job", null);
+
+        assertTrue(index.search("pipeline").contains("3"));
+        assertFalse(index.search("pipeline").contains("2"));
+        assertEquals(Set.of("2"), index.search("batch"));
+    }
+
+    @Test
+    void remove_dropsDocument() {
+        index.remove("1");
+
+        assertTrue(index.search("microservice").isEmpty());
+        assertEquals(2, index.size());
+    }
+}
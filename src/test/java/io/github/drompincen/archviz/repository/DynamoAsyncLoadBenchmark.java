@@ -0,0 +1,159 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.LocalDynamoDbExtension;
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Throughput and latency of diagram reads at high concurrency, served the
+ * blocking way (a fixed pool of request threads, as Tomcat would, each
+ * holding its thread for the round trip) and the non-blocking way
+ * ({@link DynamoDiagramRepository#findByIdAsync} on the Netty client), on
+ * DynamoDB Local. Both modes keep the same number of requests outstanding
+ * and get the same number of HTTP connections. Not part of the test suite;
+ * run from the project root with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.drompincen.archviz.repository.DynamoAsyncLoadBenchmark
+ * </pre>
+ */
+public class DynamoAsyncLoadBenchmark {
+
+    private static final int DIAGRAMS = 500;
+    private static final int REQUESTS = 20_000;
+    // Requests outstanding at once, i.e. concurrent clients
+    private static final int CONCURRENCY = 1_000;
+    // Tomcat's default maximum
+    private static final int REQUEST_THREADS = 200;
+
+    private record Result(long elapsedNanos, long[] latencies, int failures) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create("fakeKey", "fakeSecret"));
+        try (LocalDynamoDbExtension dynamoDb = new LocalDynamoDbExtension().start();
+             DynamoDbClient client = DynamoDbClient.builder()
+                     .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                     .region(Region.US_EAST_1)
+                     .credentialsProvider(credentials)
+                     .httpClientBuilder(ApacheHttpClient.builder().maxConnections(REQUEST_THREADS))
+                     .build();
+             DynamoDbAsyncClient asyncClient = DynamoDbAsyncClient.builder()
+                     .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                     .region(Region.US_EAST_1)
+                     .credentialsProvider(credentials)
+                     .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(REQUEST_THREADS))
+                     .build();
+             DynamoDiagramRepository repo = new DynamoDiagramRepository(client, asyncClient, "bench-load", 1)) {
+            seed(repo);
+
+            // Warm up both paths
+            runBlocking(repo, REQUESTS / 10);
+            runAsync(repo, REQUESTS / 10);
+
+            report("blocking (" + REQUEST_THREADS + " threads)", runBlocking(repo, REQUESTS));
+            report("async (netty)", runAsync(repo, REQUESTS));
+        }
+    }
+
+    private static void seed(DynamoDiagramRepository repo) {
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < DIAGRAMS; i++) {
+            ObjectNode flow = mapper.createObjectNode();
+            ArrayNode nodes = flow.putArray("nodes");
+            for (int n = 0; n < 20; n++) {
+                nodes.addObject().put("id", "n" + n).put("type", "service").put("label", "Service " + n);
+            }
+            Diagram d = new Diagram();
+            d.setId("load-" + i);
+            d.setTitle("Load " + i);
+            d.setTags(List.of("load"));
+            d.setVersion(1);
+            d.setFlow(flow);
+            repo.save(d);
+        }
+    }
+
+    private static Result runBlocking(DynamoDiagramRepository repo, int requests) throws InterruptedException {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+        try {
+            return run(requests, (id, done) -> requestThreads.execute(() -> {
+                try {
+                    repo.findById(id).orElseThrow();
+                    done.accept(null);
+                } catch (RuntimeException e) {
+                    done.accept(e);
+                }
+            }));
+        } finally {
+            requestThreads.shutdown();
+        }
+    }
+
+    private static Result runAsync(DynamoDiagramRepository repo, int requests) throws InterruptedException {
+        return run(requests, (id, done) -> repo.findByIdAsync(id)
+                .whenComplete((found, e) -> done.accept(e != null || found.isEmpty()
+                        ? new IllegalStateException("Read of " + id + " failed", e) : null)));
+    }
+
+    private interface Request {
+        void start(String id, Consumer<Throwable> done);
+    }
+
+    // Latency runs from when a request is let in until it completes, queueing included
+    private static Result run(int requests, Request request) throws InterruptedException {
+        Semaphore outstanding = new Semaphore(CONCURRENCY);
+        CountDownLatch finished = new CountDownLatch(requests);
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[requests];
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            outstanding.acquire();
+            int n = i;
+            long issued = System.nanoTime();
+            request.start("load-" + (i % DIAGRAMS), e -> {
+                latencies[n] = System.nanoTime() - issued;
+                if (e != null) {
+                    failures.incrementAndGet();
+                }
+                outstanding.release();
+                finished.countDown();
+            });
+        }
+        finished.await();
+        return new Result(System.nanoTime() - start, latencies, failures.get());
+    }
+
+    private static void report(String mode, Result result) {
+        long[] sorted = result.latencies().clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-26s %,8.0f req/s  p50=%7.2f ms  p99=%7.2f ms  max=%7.2f ms  failures=%d%n",
+                mode,
+                sorted.length / (result.elapsedNanos() / 1e9),
+                sorted[sorted.length / 2] / 1e6,
+                sorted[(int) (sorted.length * 0.99)] / 1e6,
+                sorted[sorted.length - 1] / 1e6,
+                result.failures());
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.drompincen.archviz.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoBatchesTest {
+
+    private static final Map<String, AttributeValue> KEY = Map.of("id", AttributeValue.builder().s("1").build());
+    private static final WriteRequest DELETE = WriteRequest.builder()
+            .deleteRequest(DeleteRequest.builder().key(KEY).build())
+            .build();
+
+    @Mock
+    private DynamoDbClient client;
+    @Mock
+    private DynamoDbAsyncClient asyncClient;
+
+    @Test
+    void write_retriesUnprocessedItemsUntilDone() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(unprocessedWrite())
+                .thenReturn(BatchWriteItemResponse.builder().build());
+
+        DynamoBatches.write(client, "t", List.of(DELETE));
+
+        verify(client, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void write_givesUpAfterMaxAttempts() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(unprocessedWrite());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> DynamoBatches.write(client, "t", List.of(DELETE)));
+
+        assertTrue(e.getMessage().contains("1 unprocessed"), e.getMessage());
+        verify(client, times(DynamoBatches.MAX_ATTEMPTS)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void getAsync_givesUpAfterMaxAttempts() {
+        when(asyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+                        .unprocessedKeys(Map.of("t", KeysAndAttributes.builder().keys(List.of(KEY)).build()))
+                        .build()));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> DynamoBatches.getAsync(asyncClient, "t", List.of(KEY), null, null).get(30, TimeUnit.SECONDS));
+
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        verify(asyncClient, times(DynamoBatches.MAX_ATTEMPTS)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    void delay_growsWithAttemptsUpToTheCap() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(DynamoBatches.delayMs(2) <= DynamoBatches.BASE_DELAY_MS);
+            assertTrue(DynamoBatches.delayMs(4) <= 4 * DynamoBatches.BASE_DELAY_MS);
+            assertTrue(DynamoBatches.delayMs(40) <= DynamoBatches.MAX_DELAY_MS);
+        }
+    }
+
+    private static BatchWriteItemResponse unprocessedWrite() {
+        return BatchWriteItemResponse.builder()
+                .unprocessedItems(Map.of("t", List.of(DELETE)))
+                .build();
+    }
+}
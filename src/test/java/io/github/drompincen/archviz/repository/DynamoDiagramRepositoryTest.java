@@ -1,8 +1,13 @@
 package io.github.drompincen.archviz.repository;
 
 import io.github.drompincen.archviz.LocalDynamoDbExtension;
+import io.github.drompincen.archviz.filter.DiagramFilter;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +15,32 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 
 import java.net.URI;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,12 +49,14 @@ class DynamoDiagramRepositoryTest {
     @RegisterExtension
     static LocalDynamoDbExtension dynamoDb = new LocalDynamoDbExtension();
 
+    private DynamoDbClient client;
+    private String tableName;
     private DynamoDiagramRepository repo;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @BeforeEach
     void setUp() {
-        DynamoDbClient client = DynamoDbClient.builder()
+        client = DynamoDbClient.builder()
                 .endpointOverride(URI.create(dynamoDb.getEndpoint()))
                 .region(Region.US_EAST_1)
                 .credentialsProvider(StaticCredentialsProvider.create(
@@ -37,7 +64,7 @@ class DynamoDiagramRepositoryTest {
                 .build();
 
         // Use a unique table name per test to avoid state leaking
-        String tableName = "test-diagrams-" + System.nanoTime();
+        tableName = "test-diagrams-" + System.nanoTime();
         repo = new DynamoDiagramRepository(client, tableName);
     }
 
@@ -85,6 +112,173 @@ class DynamoDiagramRepositoryTest {
         assertEquals(1, filtered.size());
     }
 
+    @Test
+    void findAll_pushesFilterIntoScan() throws Exception {
+        Diagram serverless = makeDiagram("1", "Serverless", List.of("aws"));
+        serverless.setFlow(objectMapper.readTree(
+                "{\"nodes\": [{\"id\": \"fn\", \"type\": \"lambda\"}], \"phases\": [{}, {}, {}], \"story\": {}}"));
+        repo.save(serverless);
+        repo.save(makeDiagram("2", "Monolith", List.of("legacy")));
+
+        DiagramFilter filter = DiagramFilter.parse("nodes.type == lambda AND phases >= 3 AND story == true AND tag in (aws, core)");
+        List<Diagram> found = repo.findAll(Optional.empty(), Optional.empty(), Optional.of(filter));
+        assertEquals(List.of("1"), found.stream().map(Diagram::getId).toList());
+
+        List<Diagram> negated = repo.findAll(Optional.empty(), Optional.empty(),
+                Optional.of(DiagramFilter.parse("NOT tag == aws AND version <= 1")));
+        assertEquals(List.of("2"), negated.stream().map(Diagram::getId).toList());
+    }
+
+    @Test
+    void findAll_unsupportedFilterPartsReturnSuperset() {
+        repo.save(makeDiagram("1", "Alpha", List.of("a")));
+        repo.save(makeDiagram("2", "Beta", List.of("b")));
+
+        // Case-insensitive substring cannot be expressed in a scan filter; the caller applies it
+        List<Diagram> found = repo.findAll(Optional.empty(), Optional.empty(),
+                Optional.of(DiagramFilter.parse("title ~ alp OR tag == b")));
+        assertEquals(2, found.size());
+    }
+
+    @Test
+    void findAll_followsLastEvaluatedKeyPastOneMegabyte() {
+        // ~200 KB of flow per item, so a single scan response cannot hold them all
+        String padding = "x".repeat(200_000);
+        for (int i = 0; i < 8; i++) {
+            Diagram d = makeDiagram("big-" + i, "Big " + i, List.of());
+            d.setFlow(objectMapper.createObjectNode().put("notes", padding));
+            repo.save(d);
+        }
+
+        assertEquals(8, repo.findAll(Optional.empty(), Optional.empty()).size());
+    }
+
+    @Test
+    void findPage_resumesFromExclusiveStartKey() {
+        for (int i = 0; i < 7; i++) {
+            repo.save(makeDiagram(String.valueOf(i), "D" + i, List.of(i % 2 == 0 ? "even" : "odd")));
+        }
+
+        Set<String> seen = new HashSet<>();
+        Optional<String> after = Optional.empty();
+        int pages = 0;
+        do {
+            Page<Diagram> page = repo.findPage(Optional.of("even"), Optional.empty(), Optional.empty(), after, 2);
+            assertTrue(page.items().size() <= 2);
+            page.items().forEach(d -> assertTrue(seen.add(d.getId()), "duplicate " + d.getId()));
+            after = Optional.ofNullable(page.next());
+            pages++;
+        } while (after.isPresent() && pages < 10);
+
+        assertEquals(Set.of("0", "2", "4", "6"), seen);
+    }
+
+    @Test
+    void findAll_parallelSegmentsReturnEveryItemOnce() {
+        DynamoDiagramRepository parallel = new DynamoDiagramRepository(client, "test-parallel-" + System.nanoTime(), 4);
+        try {
+            for (int i = 0; i < 40; i++) {
+                parallel.save(makeDiagram("p-" + i, "Parallel " + i, List.of(i % 4 == 0 ? "quarter" : "rest")));
+            }
+
+            List<Diagram> all = parallel.findAll(Optional.empty(), Optional.empty());
+            assertEquals(40, all.size());
+            assertEquals(40, all.stream().map(Diagram::getId).distinct().count());
+            assertEquals(10, parallel.findAll(Optional.of("quarter"), Optional.empty()).size());
+        } finally {
+            parallel.close();
+        }
+    }
+
+    @Test
+    void streamAll_closingEarlyReleasesSegments() {
+        DynamoDiagramRepository parallel = new DynamoDiagramRepository(client, "test-parallel-" + System.nanoTime(), 2);
+        try {
+            for (int i = 0; i < 20; i++) {
+                parallel.save(makeDiagram("p-" + i, "Parallel " + i, List.of()));
+            }
+            for (int round = 0; round < 5; round++) {
+                try (Stream<Diagram> diagrams = parallel.streamAll(Optional.empty(), Optional.empty(), Optional.empty())) {
+                    assertTrue(diagrams.findFirst().isPresent());
+                }
+            }
+            // Workers of the abandoned scans must not hold the pool
+            assertEquals(20, parallel.findAll(Optional.empty(), Optional.empty()).size());
+        } finally {
+            parallel.close();
+        }
+    }
+
+    @Test
+    void findAll_tagFollowsRetagAndDelete() {
+        Diagram d = makeDiagram("1", "Alpha", List.of("java"));
+        repo.save(d);
+        repo.save(makeDiagram("2", "Beta", List.of("java", "python")));
+
+        d.setTags(List.of("python"));
+        repo.save(d);
+        repo.deleteById("2");
+
+        assertTrue(repo.findAll(Optional.of("java"), Optional.empty()).isEmpty());
+        assertEquals(List.of("1"), repo.findAll(Optional.of("python"), Optional.empty()).stream().map(Diagram::getId).toList());
+        assertEquals(List.of("1"), tagRows("python"));
+    }
+
+    @Test
+    void findAll_tagSkipsStaleRowsWithoutDeletingThem() {
+        repo.save(makeDiagram("1", "Alpha", List.of("java")));
+        client.putItem(PutItemRequest.builder()
+                .tableName(tableName + "-tags")
+                .item(Map.of("tag", AttributeValue.builder().s("java").build(),
+                        "id", AttributeValue.builder().s("ghost").build()))
+                .build());
+
+        assertEquals(List.of("1"), repo.findAll(Optional.of("java"), Optional.empty()).stream().map(Diagram::getId).toList());
+        assertEquals(List.of("1", "ghost"), tagRows("java"));
+    }
+
+    @Test
+    void findAll_tagAndQueryCombine() {
+        repo.save(makeDiagram("1", "Event Pipeline", List.of("java")));
+        repo.save(makeDiagram("2", "Batch Job", List.of("java")));
+
+        List<Diagram> found = repo.findAll(Optional.of("java"), Optional.of("Event"));
+        assertEquals(List.of("1"), found.stream().map(Diagram::getId).toList());
+    }
+
+    @Test
+    void constructor_backfillsMissingTagTable() {
+        repo.save(makeDiagram("1", "Alpha", List.of("java")));
+        repo.save(makeDiagram("2", "Beta", List.of()));
+        client.deleteTable(DeleteTableRequest.builder().tableName(tableName + "-tags").build());
+
+        DynamoDiagramRepository reopened = new DynamoDiagramRepository(client, tableName);
+
+        assertEquals(List.of("1"), reopened.findAll(Optional.of("java"), Optional.empty()).stream().map(Diagram::getId).toList());
+    }
+
+    @Test
+    void constructor_redoesBackfillCutShort() {
+        repo.save(makeDiagram("1", "Alpha", List.of("java")));
+        repo.save(makeDiagram("2", "Beta", List.of("java")));
+        // As if a backfill had stopped after the first diagram, before its marker row
+        client.deleteItem(DeleteItemRequest.builder()
+                .tableName(tableName + "-tags")
+                .key(Map.of("tag", AttributeValue.builder().s("\u0000backfilled").build(),
+                        "id", AttributeValue.builder().s("\u0000").build()))
+                .build());
+        client.deleteItem(DeleteItemRequest.builder()
+                .tableName(tableName + "-tags")
+                .key(Map.of("tag", AttributeValue.builder().s("java").build(),
+                        "id", AttributeValue.builder().s("2").build()))
+                .build());
+
+        DynamoDiagramRepository reopened = new DynamoDiagramRepository(client, tableName);
+
+        assertEquals(List.of("1", "2"), tagRows("java"));
+        assertEquals(2, reopened.findAll(Optional.of("java"), Optional.empty()).size());
+    }
+
     @Test
     void deleteById() {
         repo.save(makeDiagram("1", "Test", List.of()));
@@ -107,6 +301,359 @@ class DynamoDiagramRepositoryTest {
         assertEquals("Test Flow", found.get().getFlow().get("title").asText());
     }
 
+    @Test
+    void findSummaries_projectsStatsWithoutFlow() throws Exception {
+        Diagram d = makeDiagram("1", "Shop", List.of("aws"));
+        d.setDescription("Checkout");
+        d.setFlow(objectMapper.readTree("""
+                {"nodes": [{"id": "a", "type": "service"}, {"id": "b", "type": "service"}, {"id": "c", "type": "database"}],
+                 "connections": [{"from": "a", "to": "c"}], "phases": ["p1", "p2"],
+                 "zones": [{"type": "vpc"}]}
+                """));
+        repo.save(d);
+        client.putItem(PutItemRequest.builder()
+                .tableName(tableName)
+                .item(Map.of("id", AttributeValue.builder().s("legacy").build(),
+                        "title", AttributeValue.builder().s("Old").build(),
+                        "version", AttributeValue.builder().n("3").build()))
+                .build());
+
+        Map<String, DiagramSummary> byId = new HashMap<>();
+        repo.findSummaries(Optional.empty(), Optional.empty(), Optional.empty()).forEach(s -> byId.put(s.id(), s));
+
+        DiagramSummary shop = byId.get("1");
+        assertEquals("Shop", shop.title());
+        assertEquals("Checkout", shop.description());
+        assertEquals(List.of("aws"), shop.tags());
+        assertEquals(3, shop.stats().nodes());
+        assertEquals(Map.of("service", 2, "database", 1), shop.stats().nodesByType());
+        assertEquals(1, shop.stats().connections());
+        assertEquals(2, shop.stats().phases());
+        assertEquals(List.of("vpc"), shop.stats().zoneTypes());
+        assertEquals(3, byId.get("legacy").version());
+        assertNull(byId.get("legacy").stats());
+
+        Page<DiagramSummary> tagged = repo.findSummaryPage(Optional.of("aws"), Optional.empty(), Optional.empty(), Optional.empty(), 10);
+        assertEquals(3, tagged.items().get(0).stats().nodes());
+    }
+
+    @Test
+    void save_storesFlowCompressedWithCodecMarker() {
+        Diagram d = makeDiagram("1", "Flow Test", List.of());
+        ObjectNode flow = objectMapper.createObjectNode();
+        ArrayNode nodes = flow.putArray("nodes");
+        for (int i = 0; i < 50; i++) {
+            nodes.addObject().put("id", "n" + i).put("type", "service").put("label", "Service " + i);
+        }
+        d.setFlow(flow);
+
+        repo.save(d);
+
+        Map<String, AttributeValue> item = client.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("id", AttributeValue.builder().s("1").build()))
+                .build()).item();
+        assertEquals("gzip", item.get("flowCodec").s());
+        assertTrue(item.get("flow").b().asByteArray().length < flow.toString().length() / 4);
+        assertEquals(flow, repo.findById("1").orElseThrow().getFlow());
+    }
+
+    @Test
+    void findById_readsLegacyStringFlow() {
+        client.putItem(PutItemRequest.builder()
+                .tableName(tableName)
+                .item(Map.of("id", AttributeValue.builder().s("old").build(),
+                        "version", AttributeValue.builder().n("1").build(),
+                        "flow", AttributeValue.builder().s("{\"title\":\"Legacy\"}").build()))
+                .build());
+
+        assertEquals("Legacy", repo.findById("old").orElseThrow().getFlow().get("title").asText());
+    }
+
+    @Test
+    void findById_rejectsUnknownCodec() {
+        client.putItem(PutItemRequest.builder()
+                .tableName(tableName)
+                .item(Map.of("id", AttributeValue.builder().s("x").build(),
+                        "flow", AttributeValue.builder().b(SdkBytes.fromUtf8String("??")).build(),
+                        "flowCodec", AttributeValue.builder().s("zstd").build()))
+                .build());
+
+        assertThrows(IllegalStateException.class, () -> repo.findById("x"));
+    }
+
+    @Test
+    void save_chunksFlowLargerThanAnItem() {
+        Diagram d = makeDiagram("big", "Big", List.of("t"));
+        ObjectNode flow = incompressibleFlow(600_000);
+        d.setFlow(flow);
+
+        repo.save(d);
+
+        Map<String, AttributeValue> item = client.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("id", AttributeValue.builder().s("big").build()))
+                .build()).item();
+        assertFalse(item.containsKey("flow"));
+        assertEquals("2", item.get("flowChunks").n());
+        assertEquals(2, chunkRows("big"));
+        assertEquals(flow, repo.findById("big").orElseThrow().getFlow());
+        assertEquals(flow, repo.findAll(Optional.of("t"), Optional.empty()).get(0).getFlow());
+    }
+
+    @Test
+    void save_replacesAndDeletesChunks() {
+        Diagram d = makeDiagram("big", "Big", List.of());
+        d.setFlow(incompressibleFlow(600_000));
+        repo.save(d);
+        ObjectNode larger = incompressibleFlow(900_000);
+        d.setFlow(larger);
+        repo.save(d);
+
+        assertEquals(3, chunkRows("big"));
+        assertEquals(larger, repo.findById("big").orElseThrow().getFlow());
+
+        ObjectNode small = objectMapper.createObjectNode().put("title", "Small");
+        d.setFlow(small);
+        repo.save(d);
+
+        assertEquals(0, chunkRows("big"));
+        assertEquals(small, repo.findById("big").orElseThrow().getFlow());
+
+        d.setFlow(larger);
+        repo.save(d);
+        repo.deleteById("big");
+
+        assertEquals(0, chunkRows("big"));
+    }
+
+    @Test
+    void concurrentChunkedSaves_neitherOrphanChunksNorFailReaders() throws Exception {
+        Diagram first = makeDiagram("big", "Big", List.of());
+        first.setFlow(incompressibleFlow(600_000));
+        repo.save(first);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> saves = new ArrayList<>();
+            for (int writer = 0; writer < 2; writer++) {
+                int seed = writer;
+                saves.add(executor.submit(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        Diagram d = makeDiagram("big", "Big " + seed + "/" + i, List.of());
+                        d.setFlow(incompressibleFlow(600_000 + seed * 10 + i));
+                        repo.save(d);
+                    }
+                }));
+            }
+            Future<?> reads = executor.submit(() -> {
+                while (!saves.stream().allMatch(Future::isDone)) {
+                    assertTrue(repo.findById("big").isPresent());
+                }
+            });
+            for (Future<?> save : saves) {
+                save.get(2, TimeUnit.MINUTES);
+            }
+            reads.get(2, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, chunkRows("big"));
+        assertNotNull(repo.findById("big").orElseThrow().getFlow());
+    }
+
+    @Test
+    void save_rejectsFlowBeyondTransactionLimit() {
+        Diagram d = makeDiagram("huge", "Huge", List.of());
+        d.setFlow(incompressibleFlow(4_000_000));
+
+        assertThrows(IllegalArgumentException.class, () -> repo.save(d));
+        assertTrue(repo.findById("huge").isEmpty());
+    }
+
+    @Test
+    void asyncClient_savesAndReadsWithoutBlocking() throws Exception {
+        try (DynamoDbAsyncClient asyncClient = DynamoDbAsyncClient.builder()
+                .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("fakeKey", "fakeSecret")))
+                .build();
+             DynamoDiagramRepository async = new DynamoDiagramRepository(client, asyncClient, tableName, 1)) {
+            Diagram small = makeDiagram("1", "Small", List.of("a"));
+            small.setFlow(objectMapper.createObjectNode().put("title", "Small"));
+            Diagram big = makeDiagram("2", "Big", List.of("a", "b"));
+            big.setFlow(incompressibleFlow(600_000));
+            async.saveAsync(small).get();
+            async.saveAsync(big).get();
+            async.saveAsync(makeDiagram("3", "Other", List.of("b"))).get();
+
+            assertEquals(small.getFlow(), async.findByIdAsync("1").get().orElseThrow().getFlow());
+            assertEquals(big.getFlow(), async.findByIdAsync("2").get().orElseThrow().getFlow());
+            assertTrue(async.findByIdAsync("missing").get().isEmpty());
+            assertEquals(2, chunkRows("2"));
+
+            // Retagging through the async path maintains the tag table too
+            big.setTags(List.of("b"));
+            async.saveAsync(big).get();
+            assertEquals(List.of("1"), tagRows("a"));
+
+            Set<String> seen = new HashSet<>();
+            Optional<String> after = Optional.empty();
+            do {
+                Page<DiagramSummary> page = async.findSummaryPageAsync(Optional.empty(), Optional.empty(),
+                        Optional.empty(), after, 2).get();
+                page.items().forEach(s -> assertTrue(seen.add(s.id()), "duplicate " + s.id()));
+                after = Optional.ofNullable(page.next());
+            } while (after.isPresent());
+            assertEquals(Set.of("1", "2", "3"), seen);
+
+            Page<DiagramSummary> tagged = async.findSummaryPageAsync(Optional.of("b"), Optional.empty(),
+                    Optional.empty(), Optional.empty(), 10).get();
+            assertEquals(List.of("2", "3"), tagged.items().stream().map(DiagramSummary::id).toList());
+            assertNull(tagged.next());
+        }
+    }
+
+    @Test
+    void saveAll_batchesWritesAndMaintainsTags() {
+        Diagram big = makeDiagram("big", "Big", List.of("a"));
+        big.setFlow(incompressibleFlow(600_000));
+        repo.save(big);
+        repo.save(makeDiagram("d0", "Old", List.of("a")));
+
+        List<Diagram> diagrams = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Diagram d = makeDiagram("d" + i, "Diagram " + i, List.of("b"));
+            d.setFlow(objectMapper.createObjectNode().put("title", "Flow " + i));
+            diagrams.add(d);
+        }
+        ObjectNode larger = incompressibleFlow(900_000);
+        big.setFlow(larger);
+        diagrams.add(big);
+        Diagram shrunk = makeDiagram("shrunk", "Shrunk", List.of());
+        shrunk.setFlow(incompressibleFlow(600_000));
+        repo.save(shrunk);
+        shrunk.setFlow(objectMapper.createObjectNode().put("title", "Small now"));
+        diagrams.add(shrunk);
+
+        repo.saveAll(diagrams);
+
+        assertEquals(32, repo.findAll(Optional.empty(), Optional.empty()).size());
+        assertEquals("Diagram 0", repo.findById("d0").orElseThrow().getTitle());
+        assertEquals("Flow 29", repo.findById("d29").orElseThrow().getFlow().get("title").asText());
+        assertEquals(List.of("big"), tagRows("a"));
+        assertEquals(30, tagRows("b").size());
+        assertEquals(larger, repo.findById("big").orElseThrow().getFlow());
+        assertEquals(3, chunkRows("big"));
+        assertEquals(0, chunkRows("shrunk"));
+        assertEquals(shrunk.getFlow(), repo.findById("shrunk").orElseThrow().getFlow());
+    }
+
+    @Test
+    void update_writesChangesAndBumpsVersion() {
+        Diagram d = makeDiagram("1", "Original", List.of("a", "b"));
+        d.setDescription("Old");
+        d.setFlow(objectMapper.createObjectNode().put("title", "Old"));
+        repo.save(d);
+
+        ObjectNode flow = objectMapper.createObjectNode().put("title", "New");
+        Diagram updated = repo.update("1", new DiagramChanges("Renamed", null, List.of("b", "c"), flow,
+                Instant.now()), Optional.of(1)).orElseThrow();
+
+        assertEquals(2, updated.getVersion());
+        Diagram found = repo.findById("1").orElseThrow();
+        assertEquals("Renamed", found.getTitle());
+        assertNull(found.getDescription());
+        assertEquals(2, found.getVersion());
+        assertEquals(flow, found.getFlow());
+        assertEquals(d.getCreatedAt(), found.getCreatedAt());
+        assertEquals(List.of(), tagRows("a"));
+        assertEquals(List.of("1"), tagRows("c"));
+    }
+
+    @Test
+    void update_nullTagsKeepTags() {
+        repo.save(makeDiagram("1", "Original", List.of("a")));
+
+        Diagram updated = repo.update("1", new DiagramChanges("Renamed", null, null, null, Instant.now()),
+                Optional.empty()).orElseThrow();
+
+        assertEquals(List.of("a"), updated.getTags());
+        assertEquals(List.of("a"), repo.findById("1").orElseThrow().getTags());
+        assertEquals(List.of("1"), tagRows("a"));
+    }
+
+    @Test
+    void update_rejectsStaleVersion() {
+        repo.save(makeDiagram("1", "Original", List.of()));
+        repo.update("1", new DiagramChanges("First", null, null, null, Instant.now()), Optional.of(1));
+
+        VersionConflictException e = assertThrows(VersionConflictException.class, () -> repo.update("1",
+                new DiagramChanges("Second", null, null, null, Instant.now()), Optional.of(1)));
+
+        assertEquals(2, e.getCurrentVersion());
+        assertEquals("First", repo.findById("1").orElseThrow().getTitle());
+    }
+
+    @Test
+    void update_missingReturnsEmpty() {
+        assertTrue(repo.update("missing", new DiagramChanges("X", null, List.of("a"), null, Instant.now()),
+                Optional.empty()).isEmpty());
+        assertTrue(repo.findById("missing").isEmpty());
+    }
+
+    @Test
+    void update_chunkedFlowReplacesChunks() {
+        Diagram d = makeDiagram("big", "Big", List.of());
+        d.setFlow(incompressibleFlow(600_000));
+        repo.save(d);
+        ObjectNode larger = incompressibleFlow(900_000);
+
+        repo.update("big", new DiagramChanges("Bigger", null, null, larger, Instant.now()), Optional.of(1));
+
+        assertEquals(3, chunkRows("big"));
+        assertEquals(larger, repo.findById("big").orElseThrow().getFlow());
+        assertThrows(VersionConflictException.class, () -> repo.update("big",
+                new DiagramChanges("Stale", null, null, larger, Instant.now()), Optional.of(1)));
+        assertEquals(2, repo.findById("big").orElseThrow().getVersion());
+    }
+
+    @Test
+    void findAllById_readsInBatchesAndSkipsMissing() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            repo.save(makeDiagram("d" + i, "Diagram " + i, List.of()));
+            ids.add("d" + i);
+        }
+        Diagram big = makeDiagram("big", "Big", List.of());
+        big.setFlow(incompressibleFlow(600_000));
+        repo.save(big);
+        ids.add("big");
+        ids.add("missing");
+        ids.add("d0");
+
+        List<Diagram> found = repo.findAllById(ids);
+
+        assertEquals(121, found.size());
+        assertEquals(big.getFlow(), found.stream().filter(d -> d.getId().equals("big")).findFirst()
+                .orElseThrow().getFlow());
+
+        try (DynamoDbAsyncClient asyncClient = DynamoDbAsyncClient.builder()
+                .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("fakeKey", "fakeSecret")))
+                .build();
+             DynamoDiagramRepository async = new DynamoDiagramRepository(client, asyncClient, tableName, 1)) {
+            List<Diagram> foundAsync = async.findAllByIdAsync(ids).get();
+
+            assertEquals(121, foundAsync.size());
+            assertEquals(big.getFlow(), foundAsync.stream().filter(d -> d.getId().equals("big")).findFirst()
+                    .orElseThrow().getFlow());
+        }
+    }
+
     @Test
     void save_preservesTimestamps() {
         Instant now = Instant.parse("2025-01-15T10:30:00Z");
@@ -121,6 +668,34 @@ class DynamoDiagramRepositoryTest {
         assertEquals(now, found.get().getUpdatedAt());
     }
 
+    private List<String> tagRows(String tag) {
+        return client.query(QueryRequest.builder()
+                        .tableName(tableName + "-tags")
+                        .keyConditionExpression("#tag = :tag")
+                        .expressionAttributeNames(Map.of("#tag", "tag"))
+                        .expressionAttributeValues(Map.of(":tag", AttributeValue.builder().s(tag).build()))
+                        .build())
+                .items().stream()
+                .map(row -> row.get("id").s())
+                .toList();
+    }
+
+    private int chunkRows(String id) {
+        return client.query(QueryRequest.builder()
+                        .tableName(tableName + "-chunks")
+                        .keyConditionExpression("id = :id")
+                        .expressionAttributeValues(Map.of(":id", AttributeValue.builder().s(id).build()))
+                        .build())
+                .count();
+    }
+
+    // Random bytes barely compress, so the stored size tracks the input size
+    private ObjectNode incompressibleFlow(int randomBytes) {
+        byte[] bytes = new byte[randomBytes];
+        new Random(randomBytes).nextBytes(bytes);
+        return objectMapper.createObjectNode().put("notes", Base64.getEncoder().encodeToString(bytes));
+    }
+
     private Diagram makeDiagram(String id, String title, List<String> tags) {
         Diagram d = new Diagram();
         d.setId(id);
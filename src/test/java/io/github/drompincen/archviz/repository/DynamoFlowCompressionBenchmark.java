@@ -0,0 +1,130 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.LocalDynamoDbExtension;
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compression ratio of the bundled sample diagrams, and write/read latency of
+ * the legacy String flow attribute against the gzip Binary one, on DynamoDB
+ * Local. Not part of the test suite; run from the project root with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.drompincen.archviz.repository.DynamoFlowCompressionBenchmark
+ * </pre>
+ */
+public class DynamoFlowCompressionBenchmark {
+
+    private static final Path SAMPLES = Paths.get("src/main/resources/static/json");
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        FlowCodec codec = new FlowCodec(mapper);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(SAMPLES)) {
+            files = list.filter(p -> p.toString().endsWith(".json")).sorted().toList();
+        }
+
+        List<JsonNode> flows = new ArrayList<>();
+        long rawTotal = 0;
+        long gzipTotal = 0;
+        for (Path file : files) {
+            JsonNode flow = mapper.readTree(file.toFile());
+            int raw = mapper.writeValueAsBytes(flow).length;
+            int gzip = codec.compress(flow).length;
+            rawTotal += raw;
+            gzipTotal += gzip;
+            flows.add(flow);
+            System.out.printf("%-45s json=%,8d B  gzip=%,7d B  ratio=%4.1fx%n",
+                    file.getFileName(), raw, gzip, (double) raw / gzip);
+        }
+        System.out.printf("%-45s json=%,8d B  gzip=%,7d B  ratio=%4.1fx%n%n",
+                "total", rawTotal, gzipTotal, (double) rawTotal / gzipTotal);
+
+        try (LocalDynamoDbExtension dynamoDb = new LocalDynamoDbExtension().start();
+             DynamoDbClient client = DynamoDbClient.builder()
+                     .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                     .region(Region.US_EAST_1)
+                     .credentialsProvider(StaticCredentialsProvider.create(
+                             AwsBasicCredentials.create("fakeKey", "fakeSecret")))
+                     .build()) {
+            String table = "bench-flows";
+            DynamoDiagramRepository repo = new DynamoDiagramRepository(client, table);
+
+            // Warm up both paths
+            runLegacyWrites(client, table, mapper, flows, 20);
+            runGzipWrites(repo, flows, 20);
+
+            long start = System.nanoTime();
+            runLegacyWrites(client, table, mapper, flows, ROUNDS);
+            double legacyWrite = (System.nanoTime() - start) / 1e3 / (ROUNDS * flows.size());
+            start = System.nanoTime();
+            runGzipWrites(repo, flows, ROUNDS);
+            double gzipWrite = (System.nanoTime() - start) / 1e3 / (ROUNDS * flows.size());
+
+            start = System.nanoTime();
+            runReads(repo, "legacy-", flows.size(), ROUNDS);
+            double legacyRead = (System.nanoTime() - start) / 1e3 / (ROUNDS * flows.size());
+            start = System.nanoTime();
+            runReads(repo, "gzip-", flows.size(), ROUNDS);
+            double gzipRead = (System.nanoTime() - start) / 1e3 / (ROUNDS * flows.size());
+
+            System.out.printf("string flow: write=%7.1f us  read=%7.1f us%n", legacyWrite, legacyRead);
+            System.out.printf("gzip flow:   write=%7.1f us  read=%7.1f us%n", gzipWrite, gzipRead);
+        }
+    }
+
+    /** The pre-compression item layout: flow as a JSON String, no codec marker. */
+    private static void runLegacyWrites(DynamoDbClient client, String table, ObjectMapper mapper,
+                                        List<JsonNode> flows, int rounds) throws Exception {
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < flows.size(); i++) {
+                client.putItem(PutItemRequest.builder()
+                        .tableName(table)
+                        .item(Map.of(
+                                "id", AttributeValue.builder().s("legacy-" + i).build(),
+                                "version", AttributeValue.builder().n("1").build(),
+                                "flow", AttributeValue.builder().s(mapper.writeValueAsString(flows.get(i))).build()))
+                        .build());
+            }
+        }
+    }
+
+    private static void runGzipWrites(DynamoDiagramRepository repo, List<JsonNode> flows, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < flows.size(); i++) {
+                Diagram d = new Diagram();
+                d.setId("gzip-" + i);
+                d.setVersion(1);
+                d.setFlow(flows.get(i));
+                repo.save(d);
+            }
+        }
+    }
+
+    private static void runReads(DynamoDiagramRepository repo, String prefix, int count, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < count; i++) {
+                repo.findById(prefix + i).orElseThrow();
+            }
+        }
+    }
+}
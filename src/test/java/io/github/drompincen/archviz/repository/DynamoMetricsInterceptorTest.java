@@ -0,0 +1,109 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.LocalDynamoDbExtension;
+import io.github.drompincen.archviz.model.Diagram;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamoMetricsInterceptorTest {
+
+    @RegisterExtension
+    static LocalDynamoDbExtension dynamoDb = new LocalDynamoDbExtension();
+
+    private SimpleMeterRegistry meterRegistry;
+    private DynamoDbClient client;
+    private String tableName;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        client = DynamoDbClient.builder()
+                .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("fakeKey", "fakeSecret")))
+                .overrideConfiguration(c -> c.addExecutionInterceptor(new DynamoMetricsInterceptor(meterRegistry)))
+                .build();
+        tableName = "test-metrics-" + System.nanoTime();
+    }
+
+    @Test
+    void recordsLatencyAndScannedVersusReturned() {
+        DynamoDiagramRepository repo = new DynamoDiagramRepository(client, tableName);
+        repo.save(makeDiagram("1", "Alpha"));
+        repo.save(makeDiagram("2", "Beta"));
+        repo.save(makeDiagram("3", "Gamma"));
+        repo.findById("1");
+
+        assertEquals(1, repo.findAll(Optional.empty(), Optional.of("Alpha")).size());
+
+        assertEquals(3, meterRegistry.get("archviz.dynamodb.latency")
+                .tags("operation", "PutItem", "table", tableName, "outcome", "success")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("archviz.dynamodb.latency")
+                .tags("operation", "GetItem", "table", tableName, "outcome", "success")
+                .timer().count());
+        double scanned = meterRegistry.get("archviz.dynamodb.items")
+                .tags("operation", "Scan", "table", tableName, "kind", "scanned").counter().count();
+        double returned = meterRegistry.get("archviz.dynamodb.items")
+                .tags("operation", "Scan", "table", tableName, "kind", "returned").counter().count();
+        assertTrue(scanned >= 3, "scanned " + scanned);
+        assertTrue(returned <= scanned);
+    }
+
+    @Test
+    void recordsFailedCalls() {
+        assertThrows(ResourceNotFoundException.class, () -> client.getItem(GetItemRequest.builder()
+                .tableName("missing-table")
+                .key(Map.of("id", AttributeValue.builder().s("1").build()))
+                .build()));
+
+        assertEquals(1, meterRegistry.get("archviz.dynamodb.latency")
+                .tags("operation", "GetItem", "table", "missing-table", "outcome", "error")
+                .timer().count());
+    }
+
+    @Test
+    void withConsumedCapacity_keepsCallerChoice() {
+        ScanRequest plain = ScanRequest.builder().tableName("t").build();
+        ScanRequest none = ScanRequest.builder().tableName("t").returnConsumedCapacity(ReturnConsumedCapacity.NONE).build();
+        DescribeTableRequest describe = DescribeTableRequest.builder().tableName("t").build();
+
+        assertEquals(ReturnConsumedCapacity.TOTAL,
+                ((ScanRequest) DynamoMetricsInterceptor.withConsumedCapacity(plain)).returnConsumedCapacity());
+        assertSame(none, DynamoMetricsInterceptor.withConsumedCapacity(none));
+        assertSame(describe, DynamoMetricsInterceptor.withConsumedCapacity(describe));
+    }
+
+    private Diagram makeDiagram(String id, String title) {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle(title);
+        d.setTags(List.of());
+        d.setVersion(1);
+        d.setSource("db");
+        d.setCreatedAt(Instant.now());
+        d.setUpdatedAt(Instant.now());
+        return d;
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.LocalDynamoDbExtension;
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Wall-clock time of a full-table read against DynamoDB Local with 1, 2, 4
+ * and 8 scan segments. Not part of the test suite; run with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.drompincen.archviz.repository.DynamoParallelScanBenchmark \
+ *     [-Dexec.args=<diagrams>]
+ * </pre>
+ *
+ * The default of {@value #DIAGRAMS} diagrams loads in well under a minute;
+ * pass a larger count to see scaling on a bigger table.
+ *
+ * DynamoDB Local runs in-process on SQLite, so the scaling seen here is a
+ * floor; against the service each segment is served by separate partitions.
+ */
+public class DynamoParallelScanBenchmark {
+
+    private static final int DIAGRAMS = 1_000;
+    private static final int NODES_PER_DIAGRAM = 20;
+    private static final int ROUNDS = 3;
+    private static final int LOAD_BATCH = 100;
+
+    public static void main(String[] args) throws Exception {
+        int diagrams = args.length > 0 ? Integer.parseInt(args[0]) : DIAGRAMS;
+        try (LocalDynamoDbExtension dynamoDb = new LocalDynamoDbExtension().start();
+             DynamoDbClient client = DynamoDbClient.builder()
+                     .endpointOverride(URI.create(dynamoDb.getEndpoint()))
+                     .region(Region.US_EAST_1)
+                     .credentialsProvider(StaticCredentialsProvider.create(
+                             AwsBasicCredentials.create("fakeKey", "fakeSecret")))
+                     .build()) {
+            String table = "bench-diagrams";
+            DynamoDiagramRepository loader = new DynamoDiagramRepository(client, table);
+            ObjectMapper mapper = new ObjectMapper();
+            List<Diagram> batch = new ArrayList<>(LOAD_BATCH);
+            for (int i = 0; i < diagrams; i++) {
+                batch.add(diagram(mapper, i));
+                if (batch.size() == LOAD_BATCH || i == diagrams - 1) {
+                    loader.saveAll(batch);
+                    batch.clear();
+                }
+            }
+            System.out.printf("loaded %,d diagrams%n", diagrams);
+
+            double baseline = 0;
+            for (int segments : new int[]{1, 2, 4, 8}) {
+                try (DynamoDiagramRepository repo = new DynamoDiagramRepository(client, table, segments)) {
+                    int count = repo.findAll(Optional.empty(), Optional.empty()).size(); // warm-up
+                    long start = System.nanoTime();
+                    for (int r = 0; r < ROUNDS; r++) {
+                        count = repo.findAll(Optional.empty(), Optional.empty()).size();
+                    }
+                    double millis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+                    if (segments == 1) {
+                        baseline = millis;
+                    }
+                    System.out.printf("segments=%d  items=%,d  scan=%8.1f ms  speedup=%4.1fx%n",
+                            segments, count, millis, baseline / millis);
+                }
+            }
+        }
+    }
+
+    private static Diagram diagram(ObjectMapper mapper, int i) {
+        ObjectNode flow = mapper.createObjectNode();
+        ArrayNode nodes = flow.putArray("nodes");
+        ArrayNode connections = flow.putArray("connections");
+        for (int n = 0; n < NODES_PER_DIAGRAM; n++) {
+            nodes.addObject().put("id", "n" + n).put("type", n % 2 == 0 ? "service" : "database")
+                    .put("label", "Component " + n + " of diagram " + i);
+            if (n > 0) {
+                connections.addObject().put("from", "n" + (n - 1)).put("to", "n" + n);
+            }
+        }
+        Diagram d = new Diagram();
+        d.setId("d-" + i);
+        d.setTitle("Diagram " + i);
+        d.setTags(List.of("tag-" + i % 50));
+        d.setVersion(1);
+        d.setFlow(flow);
+        return d;
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.drompincen.archviz.repository;
 
+import io.github.drompincen.archviz.filter.DiagramFilter;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.Page;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -96,6 +99,95 @@ class InMemoryDiagramRepositoryTest {
         assertEquals("Updated", repo.findById("1").get().getTitle());
     }
 
+    @Test
+    void update_bumpsVersionAndRejectsStaleExpectation() {
+        repo.save(makeDiagram("1", "Original", List.of("a")));
+
+        Diagram updated = repo.update("1", new DiagramChanges("Renamed", null, null, null, Instant.now()),
+                Optional.of(1)).orElseThrow();
+        assertEquals(2, updated.getVersion());
+        assertEquals(List.of("a"), updated.getTags());
+        assertEquals("Renamed", repo.findById("1").orElseThrow().getTitle());
+
+        VersionConflictException e = assertThrows(VersionConflictException.class, () -> repo.update("1",
+                new DiagramChanges("Stale", null, null, null, Instant.now()), Optional.of(1)));
+        assertEquals(2, e.getCurrentVersion());
+        assertEquals("Renamed", repo.findById("1").orElseThrow().getTitle());
+        assertTrue(repo.update("missing", new DiagramChanges("X", null, null, null, Instant.now()),
+                Optional.empty()).isEmpty());
+    }
+
+    @Test
+    void findAll_filterByTag_afterRetag() {
+        repo.save(makeDiagram("1", "Alpha", List.of("java")));
+        repo.save(makeDiagram("1", "Alpha", List.of("kotlin")));
+
+        assertTrue(repo.findAll(Optional.of("java"), Optional.empty()).isEmpty());
+        assertEquals(1, repo.findAll(Optional.of("kotlin"), Optional.empty()).size());
+    }
+
+    @Test
+    void findAll_filterByTag_afterInPlaceMutation() {
+        Diagram d = makeDiagram("1", "Alpha", List.of("java"));
+        repo.save(d);
+        d.setTags(List.of("kotlin"));
+        repo.save(d);
+
+        assertTrue(repo.findAll(Optional.of("java"), Optional.empty()).isEmpty());
+        assertEquals(1, repo.findAll(Optional.of("kotlin"), Optional.empty()).size());
+    }
+
+    @Test
+    void findAll_filterByTag_afterDelete() {
+        repo.save(makeDiagram("1", "Alpha", List.of("java")));
+        repo.save(makeDiagram("2", "Beta", List.of("java")));
+        repo.deleteById("1");
+
+        List<Diagram> filtered = repo.findAll(Optional.of("java"), Optional.empty());
+        assertEquals(1, filtered.size());
+        assertEquals("2", filtered.get(0).getId());
+    }
+
+    @Test
+    void findAll_unknownTag() {
+        repo.save(makeDiagram("1", "Alpha", List.of("java")));
+
+        assertTrue(repo.findAll(Optional.of("rust"), Optional.empty()).isEmpty());
+    }
+
+    @Test
+    void findPage_walksInIdOrder() {
+        for (String id : List.of("c", "a", "e", "b", "d")) {
+            repo.save(makeDiagram(id, "Diagram " + id, List.of(id.equals("d") ? "skip" : "keep")));
+        }
+
+        Page<Diagram> first = repo.findPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 2);
+        assertEquals(List.of("a", "b"), first.items().stream().map(Diagram::getId).toList());
+        Page<Diagram> second = repo.findPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(first.next()), 3);
+        assertEquals(List.of("c", "d", "e"), second.items().stream().map(Diagram::getId).toList());
+        assertNull(second.next());
+
+        Page<Diagram> tagged = repo.findPage(Optional.of("keep"), Optional.empty(), Optional.empty(), Optional.of("b"), 2);
+        assertEquals(List.of("c", "e"), tagged.items().stream().map(Diagram::getId).toList());
+        assertNull(tagged.next());
+    }
+
+    @Test
+    void findPage_appliesFilterBeforeLimit() {
+        for (int i = 0; i < 50; i++) {
+            Diagram d = makeDiagram(String.format("d%02d", i), "Diagram " + i, List.of());
+            d.setVersion(i % 10 == 0 ? 2 : 1);
+            repo.save(d);
+        }
+        Optional<DiagramFilter> filter = Optional.of(DiagramFilter.parse("version == 2 AND source == db"));
+
+        Page<Diagram> first = repo.findPage(Optional.empty(), Optional.empty(), filter, Optional.empty(), 3);
+        assertEquals(List.of("d00", "d10", "d20"), first.items().stream().map(Diagram::getId).toList());
+        Page<Diagram> second = repo.findPage(Optional.empty(), Optional.empty(), filter, Optional.of(first.next()), 3);
+        assertEquals(List.of("d30", "d40"), second.items().stream().map(Diagram::getId).toList());
+        assertNull(second.next());
+    }
+
     private Diagram makeDiagram(String id, String title, List<String> tags) {
         Diagram d = new Diagram();
         d.setId(id);
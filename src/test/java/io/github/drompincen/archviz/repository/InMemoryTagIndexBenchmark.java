@@ -0,0 +1,84 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.model.Diagram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares tag-filtered listing through the inverted index with the previous
+ * linear scan. Not part of the test suite; run with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.drompincen.archviz.repository.InMemoryTagIndexBenchmark
+ * </pre>
+ */
+public class InMemoryTagIndexBenchmark {
+
+    private static final int TAG_VOCABULARY = 500;
+    private static final int TAGS_PER_DIAGRAM = 3;
+    private static final int QUERIES = 2_000;
+
+    public static void main(String[] args) {
+        for (int size : new int[]{1_000, 10_000, 50_000}) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Random random = new Random(42);
+        InMemoryDiagramRepository repo = new InMemoryDiagramRepository();
+        List<Diagram> all = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<String> tags = new ArrayList<>();
+            for (int t = 0; t < TAGS_PER_DIAGRAM; t++) {
+                tags.add("tag-" + random.nextInt(TAG_VOCABULARY));
+            }
+            Diagram d = new Diagram();
+            d.setId("d-" + i);
+            d.setTitle("Diagram " + i);
+            d.setTags(tags);
+            repo.save(d);
+            all.add(d);
+        }
+
+        String[] queryTags = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queryTags[i] = "tag-" + random.nextInt(TAG_VOCABULARY);
+        }
+
+        // Warm up both paths before measuring
+        long sink = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            sink += scan(all, queryTags[i]).size();
+            sink += repo.findAll(Optional.of(queryTags[i]), Optional.empty()).size();
+        }
+
+        long start = System.nanoTime();
+        for (String tag : queryTags) {
+            sink += scan(all, tag).size();
+        }
+        long scanNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String tag : queryTags) {
+            sink += repo.findAll(Optional.of(tag), Optional.empty()).size();
+        }
+        long indexNanos = System.nanoTime() - start;
+
+        System.out.printf("diagrams=%,7d  scan=%9.1f us/query  index=%7.1f us/query  speedup=%6.1fx  (%d)%n",
+                size, scanNanos / 1e3 / QUERIES, indexNanos / 1e3 / QUERIES,
+                (double) scanNanos / indexNanos, sink);
+    }
+
+    /** The pre-index implementation: stream every diagram and check its tag list. */
+    private static List<Diagram> scan(List<Diagram> all, String tag) {
+        return all.stream()
+                .filter(d -> d.getTags() != null && d.getTags().contains(tag))
+                .collect(Collectors.toList());
+    }
+}
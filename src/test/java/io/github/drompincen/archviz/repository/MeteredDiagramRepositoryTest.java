@@ -0,0 +1,55 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeteredDiagramRepositoryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MeteredDiagramRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        repo = new MeteredDiagramRepository(new InMemoryDiagramRepository(), meterRegistry);
+    }
+
+    @Test
+    void timesCallsByMethodAndOutcome() {
+        repo.save(makeDiagram("1"));
+        repo.findById("1");
+        repo.findByIdAsync("1").join();
+        assertThrows(CompletionException.class, () -> repo.updateAsync("1",
+                new DiagramChanges("Stale", null, null, null, Instant.now()), Optional.of(5)).join());
+
+        assertEquals(1, timerCount("save", "success"));
+        assertEquals(2, timerCount("findById", "success"));
+        assertEquals(1, timerCount("update", "error"));
+    }
+
+    private long timerCount(String method, String outcome) {
+        return meterRegistry.get("archviz.repository").tags("method", method, "outcome", outcome).timer().count();
+    }
+
+    private Diagram makeDiagram(String id) {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle("Diagram " + id);
+        d.setTags(List.of());
+        d.setVersion(1);
+        d.setSource("db");
+        d.setCreatedAt(Instant.now());
+        d.setUpdatedAt(Instant.now());
+        return d;
+    }
+}
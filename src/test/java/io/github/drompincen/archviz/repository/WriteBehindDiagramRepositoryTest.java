@@ -0,0 +1,214 @@
+package io.github.drompincen.archviz.repository;
+
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindDiagramRepositoryTest {
+
+    private RecordingRepository store;
+    private SimpleMeterRegistry meterRegistry;
+    private WriteBehindDiagramRepository repo;
+
+    @BeforeEach
+    void setUp() {
+        store = new RecordingRepository();
+        meterRegistry = new SimpleMeterRegistry();
+        // Long enough that nothing is written in the background during a test
+        repo = new WriteBehindDiagramRepository(store, Duration.ofMinutes(10), 100, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repo.close();
+    }
+
+    @Test
+    void save_isReadableBeforeItIsWritten() {
+        repo.save(makeDiagram("1", "Queued"));
+
+        assertTrue(store.findById("1").isEmpty());
+        assertEquals("Queued", repo.findById("1").orElseThrow().getTitle());
+        assertEquals("Queued", repo.findByIdAsync("1").join().orElseThrow().getTitle());
+    }
+
+    @Test
+    void flush_coalescesSavesAndWritesInGroups() {
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 30; i++) {
+                repo.save(makeDiagram("d" + i, "Round " + round));
+            }
+        }
+
+        repo.flush();
+
+        assertEquals(List.of(25, 5), store.groupSizes);
+        assertEquals("Round 2", store.findById("d29").orElseThrow().getTitle());
+        assertEquals(90, meterRegistry.get("archviz.writebehind.saves").counter().count());
+        assertEquals(30, meterRegistry.get("archviz.writebehind.writes").counter().count());
+        assertEquals(3.0, meterRegistry.get("archviz.writebehind.coalesce.ratio").gauge().value());
+        assertEquals(2, meterRegistry.get("archviz.writebehind.flush").timer().count());
+    }
+
+    @Test
+    void listing_flushesFirst() {
+        repo.save(makeDiagram("1", "A"));
+        repo.save(makeDiagram("2", "B"));
+
+        assertEquals(2, repo.findAll(Optional.empty(), Optional.empty()).size());
+        assertEquals(List.of(2), store.groupSizes);
+    }
+
+    @Test
+    void deleteById_dropsQueuedSave() {
+        repo.save(makeDiagram("1", "A"));
+        repo.deleteById("1");
+        repo.flush();
+
+        assertTrue(repo.findById("1").isEmpty());
+        assertTrue(store.groupSizes.isEmpty());
+    }
+
+    @Test
+    void failedGroup_isWrittenOneAtATime() {
+        store.failNext = true;
+        repo.save(makeDiagram("1", "A"));
+        repo.save(makeDiagram("2", "B"));
+
+        repo.flush();
+
+        assertEquals(1, meterRegistry.get("archviz.writebehind.failures").counter().count());
+        assertEquals("A", store.findById("1").orElseThrow().getTitle());
+        assertEquals("B", store.findById("2").orElseThrow().getTitle());
+        assertTrue(repo.deadLetters().isEmpty());
+    }
+
+    @Test
+    void failingSave_isDeadLetteredAfterMaxAttempts() {
+        store.save(makeDiagram("bad", "Stored"));
+        store.rejected.add("bad");
+        repo.save(makeDiagram("bad", "Queued"));
+        repo.save(makeDiagram("good", "Good"));
+
+        // Listings neither see the failure nor stop serving the queued save until it is given up on
+        for (int i = 1; i < WriteBehindDiagramRepository.MAX_ATTEMPTS; i++) {
+            assertEquals(2, repo.findAll(Optional.empty(), Optional.empty()).size());
+            assertEquals("Queued", repo.findById("bad").orElseThrow().getTitle());
+        }
+        repo.flush();
+
+        assertEquals("Good", store.findById("good").orElseThrow().getTitle());
+        assertEquals("Stored", repo.findById("bad").orElseThrow().getTitle());
+        assertEquals(List.of("Queued"), repo.deadLetters().stream().map(Diagram::getTitle).toList());
+        assertEquals(1, meterRegistry.get("archviz.writebehind.dead.letters").counter().count());
+    }
+
+    @Test
+    void newerSave_resetsAttempts() {
+        store.rejected.add("1");
+        repo.save(makeDiagram("1", "A"));
+        for (int i = 1; i < WriteBehindDiagramRepository.MAX_ATTEMPTS; i++) {
+            repo.flush();
+        }
+        store.rejected.clear();
+        repo.save(makeDiagram("1", "B"));
+        repo.flush();
+
+        assertEquals("B", store.findById("1").orElseThrow().getTitle());
+        assertTrue(repo.deadLetters().isEmpty());
+    }
+
+    @Test
+    void update_ofQueuedSaveIsAppliedInTheQueue() {
+        repo.save(makeDiagram("1", "A"));
+        DiagramChanges changes = new DiagramChanges("B", null, null, null, Instant.now());
+
+        assertThrows(VersionConflictException.class, () -> repo.update("1", changes, Optional.of(5)));
+        Diagram updated = repo.update("1", changes, Optional.of(1)).orElseThrow();
+
+        assertEquals(2, updated.getVersion());
+        assertTrue(store.findById("1").isEmpty());
+        assertEquals("B", repo.findById("1").orElseThrow().getTitle());
+        repo.flush();
+        assertEquals("B", store.findById("1").orElseThrow().getTitle());
+    }
+
+    @Test
+    void fullQueue_blocksSaveUntilFlushed() throws Exception {
+        repo.close();
+        repo = new WriteBehindDiagramRepository(store, Duration.ofMinutes(10), 2, meterRegistry);
+        repo.save(makeDiagram("1", "A"));
+        repo.save(makeDiagram("1", "A again"));
+
+        // A full queue is flushed without waiting out the window
+        repo.save(makeDiagram("2", "B"));
+        CompletableFuture<Diagram> third = CompletableFuture.supplyAsync(() -> repo.save(makeDiagram("3", "C")));
+
+        assertEquals("C", third.get(10, TimeUnit.SECONDS).getTitle());
+        assertEquals("A again", repo.findById("1").orElseThrow().getTitle());
+    }
+
+    @Test
+    void close_flushesQueuedSaves() {
+        repo.save(makeDiagram("1", "A"));
+        repo.close();
+
+        assertEquals("A", store.findById("1").orElseThrow().getTitle());
+        assertThrows(IllegalStateException.class, () -> repo.save(makeDiagram("2", "B")));
+    }
+
+    private static class RecordingRepository extends InMemoryDiagramRepository {
+
+        final List<Integer> groupSizes = new ArrayList<>();
+        final Set<String> rejected = ConcurrentHashMap.newKeySet();
+        volatile boolean failNext;
+
+        @Override
+        public void saveAll(Collection<Diagram> diagrams) {
+            if (failNext || diagrams.stream().anyMatch(d -> rejected.contains(d.getId()))) {
+                failNext = false;
+                throw new IllegalStateException("Store unavailable");
+            }
+            synchronized (groupSizes) {
+                groupSizes.add(diagrams.size());
+            }
+            super.saveAll(diagrams);
+        }
+
+        @Override
+        public Diagram save(Diagram diagram) {
+            if (rejected.contains(diagram.getId())) {
+                throw new IllegalArgumentException("Diagram " + diagram.getId() + " rejected");
+            }
+            return super.save(diagram);
+        }
+    }
+
+    private Diagram makeDiagram(String id, String title) {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle(title);
+        d.setTags(List.of());
+        d.setVersion(1);
+        d.setSource("db");
+        d.setCreatedAt(Instant.now());
+        d.setUpdatedAt(Instant.now());
+        return d;
+    }
+}
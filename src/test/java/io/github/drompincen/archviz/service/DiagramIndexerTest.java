@@ -0,0 +1,103 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.index.DiagramIndex;
+import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramManifest;
+import io.github.drompincen.archviz.model.DiagramManifestEntry;
+import io.github.drompincen.archviz.repository.DiagramRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DiagramIndexerTest {
+
+    @Mock
+    private DiagramIndex index;
+
+    @Mock
+    private DiagramRepository repository;
+
+    @Mock
+    private StaticFileService staticFileService;
+
+    private DiagramIndexer indexer;
+
+    @BeforeEach
+    void setUp() {
+        indexer = new DiagramIndexer(List.of(index), repository, staticFileService);
+    }
+
+    @Test
+    void reindexAll_indexesStoredAndStaticDiagrams() {
+        Diagram stored = diagram("db-1");
+        Diagram file = diagram("file-a");
+        when(repository.streamAll(Optional.empty(), Optional.empty(), Optional.empty())).thenReturn(Stream.of(stored));
+        when(staticFileService.manifest()).thenReturn(manifest(entry("file-a", "sha1")));
+        when(staticFileService.staticDiagramById("file-a")).thenReturn(Optional.of(file));
+
+        indexer.reindexAll();
+
+        verify(index).index(stored);
+        verify(index).index(file);
+        assertEquals("db", stored.getSource());
+    }
+
+    @Test
+    void reindexAll_indexesBundledDiagramsFromPrecompiledViews() {
+        Diagram view = diagram("file-a");
+        when(repository.streamAll(Optional.empty(), Optional.empty(), Optional.empty())).thenReturn(Stream.empty());
+        when(staticFileService.manifest()).thenReturn(manifest(entry("file-a", "sha1"), entry("file-b", "sha1")));
+        when(staticFileService.loadIndexViews()).thenReturn(Map.of("file-a", view));
+        when(staticFileService.staticDiagramById("file-b")).thenReturn(Optional.of(diagram("file-b")));
+
+        indexer.reindexAll();
+
+        verify(index).index(view);
+        verify(staticFileService, never()).staticDiagramById("file-a");
+        verify(staticFileService).staticDiagramById("file-b");
+    }
+
+    @Test
+    void staticReload_reindexesOnlyChangedFilesAndDropsRemovedOnes() {
+        when(repository.streamAll(Optional.empty(), Optional.empty(), Optional.empty())).thenReturn(Stream.empty());
+        when(staticFileService.manifest()).thenReturn(manifest(entry("file-a", "sha1"), entry("file-b", "sha1")));
+        when(staticFileService.staticDiagramById("file-a")).thenReturn(Optional.of(diagram("file-a")));
+        when(staticFileService.staticDiagramById("file-b")).thenReturn(Optional.of(diagram("file-b")));
+        indexer.reindexAll();
+        clearInvocations(index, staticFileService);
+
+        indexer.onStaticCatalogReloaded(new StaticCatalogReloadedEvent("watch", manifest(entry("file-a", "sha2"))));
+
+        verify(staticFileService).staticDiagramById("file-a");
+        verify(staticFileService, never()).staticDiagramById("file-b");
+        verify(index).remove("file-b");
+        verify(index).index(any());
+    }
+
+    private static Diagram diagram(String id) {
+        Diagram d = new Diagram();
+        d.setId(id);
+        d.setTitle(id);
+        return d;
+    }
+
+    private static DiagramManifestEntry entry(String id, String sha) {
+        return new DiagramManifestEntry(id, id + ".json", true, id, 10, 0, 0, 0, 0, null, sha);
+    }
+
+    private static DiagramManifest manifest(DiagramManifestEntry... files) {
+        return new DiagramManifest("etag", Instant.now(), List.of(files));
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.drompincen.archviz.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagramJsonScannerTest {
+
+    private final JsonFactory factory = new JsonFactory();
+
+    @Test
+    void scan_extractsTitleAndCounts() throws IOException {
+        String json = "{\"notes\":\"n\",\"nodes\":[{\"id\":\"a\",\"meta\":[1,2]},{\"id\":\"b\"}],"
+                + "\"connections\":[{\"from\":\"a\",\"to\":\"b\"}],"
+                + "\"phases\":[{\"id\":\"p1\"},{\"id\":\"p2\"},{\"id\":\"p3\"}],"
+                + "\"flows\":[{\"id\":\"f\",\"sequence\":[{},{}]}],"
+                + "\"sequence\":[],\"title\":\"Late Title\"}";
+
+        DiagramJsonScanner.Header header = scan(json);
+
+        assertEquals("Late Title", header.title());
+        assertEquals(2, header.nodeCount());
+        assertEquals(1, header.connectionCount());
+        assertEquals(3, header.phaseCount());
+        assertEquals(1, header.flowCount());
+        assertEquals(0, header.sequenceCount());
+    }
+
+    @Test
+    void scan_missingFieldsDefault() throws IOException {
+        DiagramJsonScanner.Header header = scan("{\"title\":{\"nested\":true},\"nodes\":\"oops\"}");
+
+        assertNull(header.title());
+        assertEquals(0, header.nodeCount());
+    }
+
+    @Test
+    void scan_rejectsTruncatedJson() {
+        assertThrows(JsonProcessingException.class, () -> scan("{\"title\":\"x\",\"nodes\":[{}"));
+    }
+
+    @Test
+    void scan_rejectsNonObjectRoot() {
+        assertThrows(JsonProcessingException.class, () -> scan("[{\"title\":\"x\"}]"));
+    }
+
+    @Test
+    void scan_rejectsTrailingContent() {
+        assertThrows(JsonProcessingException.class, () -> scan("{\"title\":\"x\"} {}"));
+    }
+
+    private DiagramJsonScanner.Header scan(String json) throws IOException {
+        return DiagramJsonScanner.scan(factory, json.getBytes(StandardCharsets.UTF_8));
+    }
+}
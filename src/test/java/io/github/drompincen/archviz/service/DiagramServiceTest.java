@@ -1,10 +1,24 @@
 package io.github.drompincen.archviz.service;
 
+import io.github.drompincen.archviz.dto.DiagramBatchOperation;
+import io.github.drompincen.archviz.dto.DiagramBatchResult;
 import io.github.drompincen.archviz.dto.DiagramCreateRequest;
 import io.github.drompincen.archviz.dto.DiagramUpdateRequest;
+import io.github.drompincen.archviz.filter.FilterParseException;
+import io.github.drompincen.archviz.index.CompletionIndex;
+import io.github.drompincen.archviz.index.ComponentIndex;
+import io.github.drompincen.archviz.index.FullTextIndex;
+import io.github.drompincen.archviz.index.GraphIndex;
+import io.github.drompincen.archviz.index.SimilarityIndex;
+import io.github.drompincen.archviz.index.StatsIndex;
 import io.github.drompincen.archviz.model.Diagram;
+import io.github.drompincen.archviz.model.DiagramChanges;
+import io.github.drompincen.archviz.model.DiagramFacets;
+import io.github.drompincen.archviz.model.DiagramStats;
 import io.github.drompincen.archviz.model.DiagramSummary;
+import io.github.drompincen.archviz.model.Page;
 import io.github.drompincen.archviz.repository.DiagramRepository;
+import io.github.drompincen.archviz.repository.VersionConflictException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,12 +28,19 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,22 +52,44 @@ class DiagramServiceTest {
     @Mock
     private StaticFileService staticFileService;
 
+    @Mock
+    private DiagramIndexer indexer;
+
+    @Mock
+    private FullTextIndex fullTextIndex;
+
+    @Mock
+    private CompletionIndex completionIndex;
+
+    @Mock
+    private StatsIndex statsIndex;
+
+    @Mock
+    private GraphIndex graphIndex;
+
+    @Mock
+    private ComponentIndex componentIndex;
+
+    @Mock
+    private SimilarityIndex similarityIndex;
+
     private DiagramService service;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @BeforeEach
     void setUp() {
-        service = new DiagramService(repository, staticFileService);
+        service = new DiagramService(repository, staticFileService, indexer, fullTextIndex, completionIndex, statsIndex, graphIndex, componentIndex, similarityIndex,
+                Runnable::run);
     }
 
     @Test
     void listAll_mergesDbAndStaticDiagrams() {
-        Diagram dbDiagram = makeDiagram("db-1", "DB Diagram", "db");
-        Diagram fileDiagram = makeDiagram("file-test", "File Diagram", "file");
+        DiagramSummary dbDiagram = makeDbSummary("db-1", "DB Diagram", null);
+        DiagramSummary fileDiagram = makeFileSummary("file-test", "File Diagram");
 
-        when(repository.findAll(Optional.empty(), Optional.empty()))
+        when(repository.findSummaries(Optional.empty(), Optional.empty(), Optional.empty()))
                 .thenReturn(List.of(dbDiagram));
-        when(staticFileService.loadStaticDiagrams())
+        when(staticFileService.listStaticSummaries())
                 .thenReturn(List.of(fileDiagram));
 
         List<DiagramSummary> result = service.listAll(Optional.empty(), Optional.empty());
@@ -55,12 +98,11 @@ class DiagramServiceTest {
 
     @Test
     void listAll_filtersStaticByTag() {
-        Diagram fileDiagram = makeDiagram("file-test", "File Diagram", "file");
-        fileDiagram.setTags(List.of("java"));
+        DiagramSummary fileDiagram = new DiagramSummary("file-test", "File Diagram", null, List.of("java"), 0, "file", null);
 
-        when(repository.findAll(Optional.of("python"), Optional.empty()))
+        when(repository.findSummaries(Optional.of("python"), Optional.empty(), Optional.empty()))
                 .thenReturn(Collections.emptyList());
-        when(staticFileService.loadStaticDiagrams())
+        when(staticFileService.listStaticSummaries())
                 .thenReturn(List.of(fileDiagram));
 
         List<DiagramSummary> result = service.listAll(Optional.of("python"), Optional.empty());
@@ -69,23 +111,25 @@ class DiagramServiceTest {
 
     @Test
     void listAll_filtersStaticByQuery() {
-        Diagram fileDiagram = makeDiagram("file-test", "Microservice Flow", "file");
+        DiagramSummary fileDiagram = makeFileSummary("file-event", "Event Flow");
 
-        when(repository.findAll(Optional.empty(), Optional.of("event")))
+        when(repository.findSummaries(Optional.empty(), Optional.of("event"), Optional.empty()))
                 .thenReturn(Collections.emptyList());
-        when(staticFileService.loadStaticDiagrams())
+        when(staticFileService.searchStaticSummaries("event"))
                 .thenReturn(List.of(fileDiagram));
 
         List<DiagramSummary> result = service.listAll(Optional.empty(), Optional.of("event"));
-        assertEquals(0, result.size());
+        assertEquals(1, result.size());
+        assertEquals("file-event", result.get(0).id());
+        verify(staticFileService, never()).listStaticSummaries();
     }
 
     @Test
     void getById_returnsDbResult() {
         Diagram dbDiagram = makeDiagram("1", "DB Diagram", "db");
-        when(repository.findById("1")).thenReturn(Optional.of(dbDiagram));
+        when(repository.findByIdAsync("1")).thenReturn(CompletableFuture.completedFuture(Optional.of(dbDiagram)));
 
-        Optional<Diagram> result = service.getById("1");
+        Optional<Diagram> result = service.getById("1").join();
         assertTrue(result.isPresent());
         assertEquals("db", result.get().getSource());
         verify(staticFileService, never()).loadStaticDiagramById(any());
@@ -94,20 +138,164 @@ class DiagramServiceTest {
     @Test
     void getById_fallsBackToStaticFile() {
         Diagram fileDiagram = makeDiagram("file-test", "File Diagram", "file");
-        when(repository.findById("file-test")).thenReturn(Optional.empty());
+        when(repository.findByIdAsync("file-test")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
         when(staticFileService.loadStaticDiagramById("file-test")).thenReturn(Optional.of(fileDiagram));
 
-        Optional<Diagram> result = service.getById("file-test");
+        Optional<Diagram> result = service.getById("file-test").join();
         assertTrue(result.isPresent());
         assertEquals("file", result.get().getSource());
     }
 
+    @Test
+    void getById_readsStaticFileOnTheExecutor() {
+        List<Runnable> tasks = new ArrayList<>();
+        service = new DiagramService(repository, staticFileService, indexer, fullTextIndex, completionIndex, statsIndex,
+                graphIndex, componentIndex, similarityIndex, tasks::add);
+        when(repository.findByIdAsync("file-test")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(staticFileService.loadStaticDiagramById("file-test"))
+                .thenReturn(Optional.of(makeDiagram("file-test", "File Diagram", "file")));
+
+        CompletableFuture<Optional<Diagram>> result = service.getById("file-test");
+        verify(staticFileService, never()).loadStaticDiagramById(any());
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        assertEquals("file-test", result.join().orElseThrow().getId());
+    }
+
     @Test
     void getById_notFound() {
-        when(repository.findById("missing")).thenReturn(Optional.empty());
+        when(repository.findByIdAsync("missing")).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
         when(staticFileService.loadStaticDiagramById("missing")).thenReturn(Optional.empty());
 
-        assertTrue(service.getById("missing").isEmpty());
+        assertTrue(service.getById("missing").join().isEmpty());
+    }
+
+    @Test
+    void listAll_attachesPrecomputedStats() {
+        DiagramStats stats = new DiagramStats(3, Map.of("service", 3), 2, 0, 1, List.of(), true);
+        when(repository.findSummaries(Optional.empty(), Optional.empty(), Optional.empty())).thenReturn(List.of());
+        when(staticFileService.listStaticSummaries()).thenReturn(List.of(makeFileSummary("file-a", "A")));
+        when(statsIndex.stats("file-a")).thenReturn(stats);
+
+        List<DiagramSummary> result = service.listAll(Optional.empty(), Optional.empty());
+        assertSame(stats, result.get(0).stats());
+    }
+
+    @Test
+    void facets_unfilteredUsesRunningTotals() {
+        DiagramFacets totals = new DiagramFacets(2, Map.of(), Map.of(), Map.of(), 0);
+        when(statsIndex.facets()).thenReturn(totals);
+
+        assertSame(totals, service.facets(Optional.empty(), Optional.empty(), Optional.empty()));
+        verifyNoInteractions(repository, staticFileService);
+    }
+
+    @Test
+    void facets_filteredAggregatesMatchingIds() {
+        DiagramFacets filtered = new DiagramFacets(1, Map.of("java", 1), Map.of(), Map.of(), 0);
+        when(repository.findSummaries(Optional.of("java"), Optional.empty(), Optional.empty())).thenReturn(List.of(makeDbSummary("db-1", "DB", null)));
+        when(staticFileService.listStaticSummaries()).thenReturn(List.of(makeFileSummary("file-a", "A")));
+        when(statsIndex.facets(List.of("db-1"))).thenReturn(filtered);
+
+        assertSame(filtered, service.facets(Optional.of("java"), Optional.empty(), Optional.empty()));
+    }
+
+    @Test
+    void listAll_appliesCompiledFilterToDbAndStatic() {
+        // Stored stats stand in for diagrams this instance has not indexed
+        DiagramSummary big = makeDbSummary("db-1", "Big", phases(3));
+        DiagramSummary small = makeDbSummary("db-2", "Small", phases(0));
+        DiagramSummary file = makeFileSummary("file-a", "A");
+        when(repository.findSummaries(eq(Optional.empty()), eq(Optional.empty()), any())).thenReturn(List.of(big, small));
+        when(staticFileService.listStaticSummaries()).thenReturn(List.of(file));
+        DiagramStats fileStats = new DiagramStats(0, Map.of(), 0, 5, 0, List.of(), false);
+        when(statsIndex.stats(any())).thenAnswer(inv -> "file-a".equals(inv.getArgument(0)) ? fileStats : null);
+
+        List<DiagramSummary> result = service.listAll(Optional.empty(), Optional.empty(), Optional.of("phases >= 3"));
+
+        assertEquals(List.of("db-1", "file-a"), result.stream().map(DiagramSummary::id).toList());
+    }
+
+    @Test
+    void listAll_rejectsInvalidFilter() {
+        assertThrows(FilterParseException.class,
+                () -> service.listAll(Optional.empty(), Optional.empty(), Optional.of("phases >= many")));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void listPage_continuesFromStoredIntoStatic() {
+        when(repository.findSummaryPageAsync(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 2))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(List.of(makeDbSummary("db-1", "DB", null)), null)));
+        when(staticFileService.listStaticSummaries())
+                .thenReturn(List.of(makeFileSummary("file-a", "A"), makeFileSummary("file-b", "B")));
+
+        Page<DiagramSummary> first = service.listPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 2).join();
+        assertEquals(List.of("db-1", "file-a"), first.items().stream().map(DiagramSummary::id).toList());
+        assertNotNull(first.next());
+
+        Page<DiagramSummary> second = service.listPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(first.next()), 2).join();
+        assertEquals(List.of("file-b"), second.items().stream().map(DiagramSummary::id).toList());
+        assertNull(second.next());
+        verify(repository, times(1)).findSummaryPageAsync(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void listPage_refillsWhenFilterDropsStoredItems() {
+        DiagramSummary small = makeDbSummary("db-1", "Small", phases(1));
+        DiagramSummary big = makeDbSummary("db-2", "Big", phases(3));
+        DiagramSummary bigger = makeDbSummary("db-3", "Bigger", phases(4));
+        when(repository.findSummaryPageAsync(eq(Optional.empty()), eq(Optional.empty()), any(), eq(Optional.empty()), eq(2)))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(List.of(small, big), "db-2")));
+        when(repository.findSummaryPageAsync(eq(Optional.empty()), eq(Optional.empty()), any(), eq(Optional.of("db-2")), eq(1)))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(List.of(bigger), "db-3")));
+
+        Page<DiagramSummary> page = service.listPage(Optional.empty(), Optional.empty(), Optional.of("phases >= 3"), Optional.empty(), 2).join();
+
+        assertEquals(List.of("db-2", "db-3"), page.items().stream().map(DiagramSummary::id).toList());
+        assertNotNull(page.next());
+        verify(staticFileService, never()).listStaticSummaries();
+    }
+
+    @Test
+    void listPage_selectiveFilterOverManyCompletedPagesDoesNotRecurse() {
+        int stored = 5_000;
+        when(repository.findSummaryPageAsync(any(), any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            Optional<String> after = inv.getArgument(3);
+            int i = after.map(a -> Integer.parseInt(a) + 1).orElse(0);
+            DiagramSummary s = new DiagramSummary(String.valueOf(i), "D" + i, null, List.of(),
+                    i == stored - 1 ? 99 : 1, "db", null);
+            return CompletableFuture.completedFuture(new Page<>(List.of(s), i < stored - 1 ? String.valueOf(i) : null));
+        });
+
+        Page<DiagramSummary> page = service.listPage(Optional.empty(), Optional.empty(), Optional.of("version == 99"),
+                Optional.empty(), 1).join();
+
+        assertEquals(List.of(String.valueOf(stored - 1)), page.items().stream().map(DiagramSummary::id).toList());
+        verify(repository, times(stored)).findSummaryPageAsync(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void listPage_waitsForAPageStillInFlight() {
+        CompletableFuture<Page<DiagramSummary>> inFlight = new CompletableFuture<>();
+        when(repository.findSummaryPageAsync(any(), any(), any(), eq(Optional.empty()), anyInt())).thenReturn(inFlight);
+        when(repository.findSummaryPageAsync(any(), any(), any(), eq(Optional.of("db-1")), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(new Page<>(List.of(makeDbSummary("db-2", "B", null)), "db-2")));
+
+        CompletableFuture<Page<DiagramSummary>> result = service.listPage(Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty(), 2);
+        assertFalse(result.isDone());
+        inFlight.complete(new Page<>(List.of(makeDbSummary("db-1", "A", null)), "db-1"));
+
+        assertEquals(List.of("db-1", "db-2"), result.join().items().stream().map(DiagramSummary::id).toList());
+    }
+
+    @Test
+    void listPage_rejectsForeignCursor() {
+        assertThrows(InvalidCursorException.class,
+                () -> service.listPage(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("not-a-cursor"), 10));
+        verifyNoInteractions(repository);
     }
 
     @Test
@@ -116,9 +304,9 @@ class DiagramServiceTest {
         flow.put("title", "Test");
         DiagramCreateRequest request = new DiagramCreateRequest("New Diagram", "Desc", List.of("tag1"), flow);
 
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.saveAsync(any())).thenAnswer(inv -> CompletableFuture.completedFuture(inv.getArgument(0)));
 
-        Diagram created = service.create(request);
+        Diagram created = service.create(request).join();
         assertNotNull(created.getId());
         assertEquals("New Diagram", created.getTitle());
         assertEquals("Desc", created.getDescription());
@@ -127,14 +315,15 @@ class DiagramServiceTest {
         assertEquals("db", created.getSource());
         assertNotNull(created.getCreatedAt());
         assertNotNull(created.getUpdatedAt());
+        verify(indexer).onSaved(created);
     }
 
     @Test
     void create_nullTags_defaultsToEmptyList() {
         DiagramCreateRequest request = new DiagramCreateRequest("No Tags", null, null, null);
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.saveAsync(any())).thenAnswer(inv -> CompletableFuture.completedFuture(inv.getArgument(0)));
 
-        Diagram created = service.create(request);
+        Diagram created = service.create(request).join();
         assertEquals(Collections.emptyList(), created.getTags());
     }
 
@@ -142,24 +331,89 @@ class DiagramServiceTest {
     void update_existingDiagram() {
         Diagram existing = makeDiagram("1", "Old Title", "db");
         existing.setVersion(1);
-        when(repository.findById("1")).thenReturn(Optional.of(existing));
-        when(repository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.updateAsync(eq("1"), any(), eq(Optional.empty()))).thenAnswer(inv -> CompletableFuture.completedFuture(
+                Optional.of(inv.<DiagramChanges>getArgument(1).applyTo(existing))));
 
         DiagramUpdateRequest request = new DiagramUpdateRequest("New Title", "New Desc", List.of("updated"), null);
-        Optional<Diagram> updated = service.update("1", request);
+        Optional<Diagram> updated = service.update("1", request).join();
 
         assertTrue(updated.isPresent());
         assertEquals("New Title", updated.get().getTitle());
         assertEquals(2, updated.get().getVersion());
+        assertEquals("db", updated.get().getSource());
+        verify(indexer).onSaved(updated.get());
+    }
+
+    @Test
+    void update_passesExpectedVersion() {
+        when(repository.updateAsync(eq("1"), any(), eq(Optional.of(3))))
+                .thenReturn(CompletableFuture.failedFuture(new VersionConflictException("1", 3, 4)));
+
+        DiagramUpdateRequest request = new DiagramUpdateRequest("Title", null, null, null, 3);
+        CompletionException e = assertThrows(CompletionException.class, () -> service.update("1", request).join());
+        assertInstanceOf(VersionConflictException.class, e.getCause());
+        verifyNoInteractions(indexer);
     }
 
     @Test
     void update_notFound() {
-        when(repository.findById("missing")).thenReturn(Optional.empty());
+        when(repository.updateAsync(eq("missing"), any(), eq(Optional.empty())))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
 
         DiagramUpdateRequest request = new DiagramUpdateRequest("Title", null, null, null);
-        assertTrue(service.update("missing", request).isEmpty());
-        verify(repository, never()).save(any());
+        assertTrue(service.update("missing", request).join().isEmpty());
+        verifyNoInteractions(indexer);
+    }
+
+    @Test
+    void batch_answersEachOperationInOrder() {
+        when(repository.findAllByIdAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(List.of(makeDiagram("1", "Stored", null))));
+        when(staticFileService.loadStaticDiagramById("file")).thenReturn(Optional.of(makeDiagram("file", "File", "file")));
+        when(staticFileService.loadStaticDiagramById("missing")).thenReturn(Optional.empty());
+        when(repository.updateAsync(eq("2"), any(), eq(Optional.of(4))))
+                .thenReturn(CompletableFuture.failedFuture(new VersionConflictException("2", 4, 5)));
+        when(repository.saveAsync(any())).thenAnswer(inv -> CompletableFuture.completedFuture(inv.getArgument(0)));
+
+        List<DiagramBatchResult> results = service.batch(List.of(
+                new DiagramBatchOperation("get", "1", null, null, null, null, null),
+                new DiagramBatchOperation("create", null, "New", null, List.of("x"), null, null),
+                new DiagramBatchOperation("update", "2", "Renamed", null, null, null, 4),
+                new DiagramBatchOperation("get", "file", null, null, null, null, null),
+                new DiagramBatchOperation("get", "missing", null, null, null, null, null),
+                new DiagramBatchOperation("delete", "1", null, null, null, null, null),
+                new DiagramBatchOperation("get", null, null, null, null, null, null))).join();
+
+        assertEquals(List.of(200, 201, 409, 200, 404, 400, 400),
+                results.stream().map(DiagramBatchResult::status).toList());
+        assertEquals("db", results.get(0).diagram().getSource());
+        assertEquals("file", results.get(3).diagram().getSource());
+        Diagram created = results.get(1).diagram();
+        assertEquals("New", created.getTitle());
+        assertEquals(1, created.getVersion());
+        verify(repository).saveAsync(created);
+        verify(repository, never()).saveAll(any());
+        verify(repository).findAllByIdAsync(argThat(ids -> List.copyOf(ids).equals(List.of("1", "file", "missing"))));
+        verify(indexer).onSaved(created);
+        assertEquals("Diagram 2 is at version 5, not 4", results.get(2).error());
+    }
+
+    @Test
+    void batch_storeFailureFailsOnlyItsEntries() {
+        when(repository.findAllByIdAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Read failed")));
+        when(repository.saveAsync(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Write failed")));
+
+        List<DiagramBatchResult> results = service.batch(List.of(
+                new DiagramBatchOperation("get", "1", null, null, null, null, null),
+                new DiagramBatchOperation("create", null, "New", null, null, null, null))).join();
+
+        assertEquals(500, results.get(0).status());
+        assertEquals("Internal error", results.get(0).error());
+        assertEquals(500, results.get(1).status());
+        assertEquals("Internal error", results.get(1).error());
+        verifyNoInteractions(indexer);
     }
 
     private Diagram makeDiagram(String id, String title, String source) {
@@ -173,4 +427,16 @@ class DiagramServiceTest {
         d.setUpdatedAt(Instant.now());
         return d;
     }
+
+    private DiagramSummary makeDbSummary(String id, String title, DiagramStats stats) {
+        return new DiagramSummary(id, title, null, Collections.emptyList(), 1, "db", stats);
+    }
+
+    private static DiagramStats phases(int phases) {
+        return new DiagramStats(0, Map.of(), 0, phases, 0, List.of(), false);
+    }
+
+    private DiagramSummary makeFileSummary(String id, String title) {
+        return new DiagramSummary(id, title, null, Collections.emptyList(), 0, "file", null);
+    }
 }
@@ -0,0 +1,54 @@
+package io.github.drompincen.archviz.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowCacheTest {
+
+    private final JsonNode flow = JsonNodeFactory.instance.objectNode();
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverBudget() {
+        FlowCache cache = new FlowCache(100);
+        StaticEntry a = entry("a", 40);
+        StaticEntry b = entry("b", 40);
+        StaticEntry c = entry("c", 40);
+
+        cache.put(a, flow);
+        cache.put(b, flow);
+        cache.get(a);
+        cache.put(c, flow);
+
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+        assertEquals(80, cache.sizeBytes());
+    }
+
+    @Test
+    void skipsEntriesLargerThanBudget() {
+        FlowCache cache = new FlowCache(100);
+        StaticEntry big = entry("big", 101);
+
+        cache.put(big, flow);
+
+        assertNull(cache.get(big));
+        assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    void ignoresFlowsFromReplacedEntry() {
+        FlowCache cache = new FlowCache(100);
+        cache.put(entry("a", 10), flow);
+
+        assertNull(cache.get(entry("a", 10)), "A rescanned entry must not see the old tree");
+    }
+
+    private static StaticEntry entry(String name, long bytes) {
+        return StaticEntry.of(name + ".json", name, null, false, true, bytes, name, null,
+                new DiagramJsonScanner.Header(name, 0, 0, 0, 0, 0));
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.drompincen.archviz.service;
+
+import io.github.drompincen.archviz.model.Diagram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticFileServiceExternalDirTest {
+
+    @TempDir
+    Path dir;
+
+    private StaticFileService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void loadsJsonFromNestedExternalDirectories() throws IOException {
+        Files.createDirectories(dir.resolve("team-a"));
+        Files.writeString(dir.resolve("external-one.json"), "{\"title\":\"External One\",\"nodes\":[]}");
+        Files.writeString(dir.resolve("team-a/external-two.json"), "{\"title\":\"External Two\"}");
+        Files.writeString(dir.resolve("readme.txt"), "not a diagram");
+
+        service = start(1024 * 1024);
+
+        assertTrue(service.loadStaticDiagramById("file-external-one").isPresent());
+        Diagram two = service.loadStaticDiagramById("file-external-two").orElseThrow();
+        assertEquals("External Two", two.getTitle());
+        assertEquals("file", two.getSource());
+        assertTrue(service.getLoadErrors().isEmpty());
+    }
+
+    @Test
+    void reportsMalformedAndOversizedFiles() throws IOException {
+        Files.writeString(dir.resolve("broken.json"), "{\"title\": ");
+        Files.writeString(dir.resolve("huge.json"), "{\"title\":\"" + "x".repeat(200) + "\"}");
+        Files.writeString(dir.resolve("fine.json"), "{\"title\":\"Fine\"}");
+
+        service = start(100);
+
+        List<StaticLoadError> errors = service.getLoadErrors().stream()
+                .filter(e -> e.location().startsWith(dir.toString()))
+                .toList();
+        assertEquals(2, errors.size());
+        assertTrue(errors.stream().anyMatch(e -> e.location().endsWith("broken.json")
+                && e.message().startsWith("Malformed JSON")));
+        assertTrue(errors.stream().anyMatch(e -> e.location().endsWith("huge.json")
+                && e.message().contains("max-file-bytes")));
+        assertTrue(service.loadStaticDiagramById("file-fine").isPresent());
+    }
+
+    @Test
+    void reportsDuplicateIds() throws IOException {
+        Files.createDirectories(dir.resolve("a"));
+        Files.createDirectories(dir.resolve("b"));
+        Files.writeString(dir.resolve("a/same.json"), "{\"title\":\"First\"}");
+        Files.writeString(dir.resolve("b/same.json"), "{\"title\":\"Second\"}");
+
+        service = start(1024);
+
+        assertEquals("First", service.loadStaticDiagramById("file-same").orElseThrow().getTitle());
+        assertTrue(service.getLoadErrors().stream().anyMatch(e -> e.message().startsWith("Duplicate id")));
+    }
+
+    @Test
+    void missingDirectoryIsReported() {
+        service = new StaticFileService(new ObjectMapper(), new SimpleMeterRegistry(), event -> {}, false,
+                List.of(dir.resolve("does-not-exist").toString()), 2, 1024, 1024);
+        service.start();
+
+        assertTrue(service.getLoadErrors().stream().anyMatch(e -> e.message().equals("Not a directory")));
+    }
+
+    @Test
+    void watchPicksUpSubdirectoriesCreatedAfterStart() throws Exception {
+        service = new StaticFileService(new ObjectMapper(), new SimpleMeterRegistry(), event -> {}, true,
+                List.of(dir.toString()), 2, 1024, 1024 * 1024);
+        service.start();
+        assertTrue(service.loadStaticDiagramById("file-late").isEmpty());
+
+        Files.createDirectories(dir.resolve("team-b/nested"));
+        Files.writeString(dir.resolve("team-b/nested/late.json"), "{\"title\":\"Late\"}");
+        awaitDiagram("file-late");
+
+        Files.writeString(dir.resolve("team-b/later.json"), "{\"title\":\"Later\"}");
+        awaitDiagram("file-later");
+    }
+
+    private void awaitDiagram(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (service.loadStaticDiagramById(id).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, id + " was not picked up");
+            Thread.sleep(50);
+        }
+    }
+
+    private StaticFileService start(long maxFileBytes) {
+        StaticFileService s = new StaticFileService(new ObjectMapper(), new SimpleMeterRegistry(), event -> {}, false,
+                List.of(dir.toString()), 2, maxFileBytes, 1024 * 1024);
+        s.start();
+        return s;
+    }
+}
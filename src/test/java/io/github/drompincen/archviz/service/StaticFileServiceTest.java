@@ -1,7 +1,9 @@
 package io.github.drompincen.archviz.service;
 
 import io.github.drompincen.archviz.model.Diagram;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.drompincen.archviz.model.DiagramManifest;
+import io.github.drompincen.archviz.model.DiagramSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -17,6 +19,9 @@ class StaticFileServiceTest {
     @Autowired
     private StaticFileService staticFileService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void loadStaticDiagrams_returnsNonEmptyList() {
         List<Diagram> diagrams = staticFileService.loadStaticDiagrams();
@@ -58,4 +63,102 @@ class StaticFileServiceTest {
         Optional<Diagram> found = staticFileService.loadStaticDiagramById("file-nonexistent");
         assertTrue(found.isEmpty());
     }
+
+    @Test
+    void listStaticSummaries_servedFromSnapshot() {
+        List<DiagramSummary> first = staticFileService.listStaticSummaries();
+        List<DiagramSummary> second = staticFileService.listStaticSummaries();
+        assertSame(first, second, "Repeated reads should not rescan the classpath");
+    }
+
+    @Test
+    void listStaticSummaries_matchesLoadedDiagrams() {
+        List<DiagramSummary> summaries = staticFileService.listStaticSummaries();
+        List<Diagram> diagrams = staticFileService.loadStaticDiagrams();
+        assertEquals(diagrams.size(), summaries.size());
+        for (int i = 0; i < summaries.size(); i++) {
+            assertEquals(diagrams.get(i).getId(), summaries.get(i).id());
+            assertEquals(diagrams.get(i).getTitle(), summaries.get(i).title());
+        }
+    }
+
+    @Test
+    void loadStaticDiagramById_reusesCachedFlow() {
+        String id = staticFileService.listStaticSummaries().get(0).id();
+        Diagram first = staticFileService.loadStaticDiagramById(id).orElseThrow();
+        Diagram second = staticFileService.loadStaticDiagramById(id).orElseThrow();
+        assertSame(first.getFlow(), second.getFlow());
+        assertTrue(meterRegistry.get("archviz.static.flow.cache").tag("result", "hit").counter().count() >= 1);
+    }
+
+    @Test
+    void reload_swapsInNewSnapshot() {
+        List<DiagramSummary> before = staticFileService.listStaticSummaries();
+        staticFileService.reload();
+        List<DiagramSummary> after = staticFileService.listStaticSummaries();
+
+        assertNotSame(before, after);
+        assertEquals(before, after);
+    }
+
+    @Test
+    void reload_recordsScanTiming() {
+        staticFileService.reload();
+        assertTrue(meterRegistry.get("archviz.static.catalog.scan").tag("trigger", "manual").timer().count() >= 1);
+    }
+
+    @Test
+    void listStaticSummaries_countsHits() {
+        double before = meterRegistry.get("archviz.static.catalog.hits").counter().count();
+        staticFileService.listStaticSummaries();
+        assertEquals(before + 1, meterRegistry.get("archviz.static.catalog.hits").counter().count());
+    }
+
+    @Test
+    void internalReads_areNotCountedAsHits() {
+        String id = staticFileService.listStaticSummaries().get(0).id();
+        double before = meterRegistry.get("archviz.static.catalog.hits").counter().count();
+
+        staticFileService.manifest();
+        assertTrue(staticFileService.staticDiagramById(id).isPresent());
+
+        assertEquals(before, meterRegistry.get("archviz.static.catalog.hits").counter().count());
+    }
+
+    @Test
+    void getManifest_describesEveryStaticFile() {
+        DiagramManifest manifest = staticFileService.getManifest();
+        assertEquals(staticFileService.listStaticSummaries().size(), manifest.files().size());
+        assertNotNull(manifest.etag());
+        manifest.files().forEach(f -> {
+            assertTrue(f.bytes() > 0, "Size should be recorded for " + f.file());
+            assertEquals(64, f.sha256().length(), "SHA-256 hex expected for " + f.file());
+            assertTrue(f.nodes() > 0, "Node count should be extracted for " + f.file());
+            assertTrue(f.bundled());
+        });
+    }
+
+    @Test
+    void getManifest_etagStableAcrossIdenticalRescans() {
+        String before = staticFileService.getManifest().etag();
+        staticFileService.reload();
+        assertEquals(before, staticFileService.getManifest().etag());
+    }
+
+    @Test
+    void searchStaticSummaries_matchesTitleSubstringIgnoringCase() {
+        List<DiagramSummary> hits = staticFileService.searchStaticSummaries("PIPELINE");
+        assertFalse(hits.isEmpty());
+        hits.forEach(h -> assertTrue(h.title().toLowerCase().contains("pipeline"), h.title()));
+
+        long expected = staticFileService.listStaticSummaries().stream()
+                .filter(s -> s.title().toLowerCase().contains("pipeline"))
+                .count();
+        assertEquals(expected, hits.size());
+    }
+
+    @Test
+    void searchStaticSummaries_noMatch() {
+        assertTrue(staticFileService.searchStaticSummaries("zzz-no-such-title").isEmpty());
+    }
 }
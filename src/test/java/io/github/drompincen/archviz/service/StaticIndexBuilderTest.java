@@ -0,0 +1,98 @@
+package io.github.drompincen.archviz.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticIndexBuilderTest {
+
+    @TempDir
+    Path source;
+
+    @TempDir
+    Path output;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void build_writesIndexAndMinifiedBodies() throws IOException {
+        Files.writeString(source.resolve("b-diagram.json"), "{\n  \"title\": \"B\",\n  \"nodes\": [ {\"id\": \"n1\"} ]\n}");
+        Files.writeString(source.resolve("a-diagram.json"), "{ \"title\": \"A\" }");
+        Files.writeString(source.resolve("notes.txt"), "ignored");
+
+        StaticIndexBuilder.build(source, output);
+
+        StaticIndex index = objectMapper.readValue(output.resolve("index.json").toFile(), StaticIndex.class);
+        assertEquals(StaticIndex.FORMAT, index.format());
+        assertEquals(2, index.files().size());
+        StaticIndex.Entry b = index.files().get(1);
+        assertEquals("b-diagram.json", b.file());
+        assertEquals("B", b.header().title());
+        assertEquals(1, b.header().nodeCount());
+        assertEquals(64, b.sha256().length());
+
+        try (InputStream is = new GZIPInputStream(Files.newInputStream(output.resolve(b.body())))) {
+            String body = new String(is.readAllBytes());
+            assertFalse(body.contains("\n"), "Body should be minified");
+            JsonNode flow = objectMapper.readTree(body);
+            assertEquals("n1", flow.get("nodes").get(0).get("id").asText());
+        }
+
+        JsonNode views = objectMapper.readTree(output.resolve(StaticIndex.VIEWS).toFile());
+        assertEquals(2, views.size());
+        assertEquals("b-diagram.json", views.get(1).get("file").asText());
+        assertEquals(b.sha256(), views.get(1).get("sha256").asText());
+        assertEquals("n1", views.get(1).get("flow").get("nodes").get(0).get("id").asText());
+        assertFalse(views.get(1).get("flow").has("title"), "Views keep only what the indexes read");
+    }
+
+    @Test
+    void staleness_catchesAnEditThatKeepsTheSize() throws IOException {
+        Path a = source.resolve("a.json");
+        Files.writeString(a, "{\"title\": \"A\"}");
+        StaticIndex index = StaticIndexBuilder.build(source, output);
+        Resource[] bundled = {new FileSystemResource(a)};
+        assertNull(StaticFileService.staleness(index, bundled));
+
+        Files.writeString(a, "{\"title\": \"B\"}");
+
+        assertEquals("a.json changed since it was indexed", StaticFileService.staleness(index, bundled));
+        Files.writeString(source.resolve("new.json"), "{}");
+        assertEquals("new.json is not indexed", StaticFileService.staleness(index,
+                new Resource[]{new FileSystemResource(source.resolve("new.json"))}));
+    }
+
+    @Test
+    void build_failsOnMalformedJson() throws IOException {
+        Files.writeString(source.resolve("good.json"), "{\"title\":\"ok\"}");
+        Files.writeString(source.resolve("bad.json"), "{\"title\": ");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> StaticIndexBuilder.build(source, output));
+        assertTrue(e.getMessage().contains("bad.json"));
+        assertFalse(Files.exists(output.resolve("index.json")));
+    }
+
+    @Test
+    void build_removesStaleBodies() throws IOException {
+        Files.createDirectories(output.resolve("bodies"));
+        Files.writeString(output.resolve("bodies/removed.json.gz"), "stale");
+        Files.writeString(source.resolve("kept.json"), "{\"title\":\"kept\"}");
+
+        StaticIndexBuilder.build(source, output);
+
+        assertFalse(Files.exists(output.resolve("bodies/removed.json.gz")));
+        assertTrue(Files.exists(output.resolve("bodies/kept.json.gz")));
+    }
+}